@@ -10,9 +10,13 @@ import android.renderscript.Float2;
 
 public class Animation {
     public boolean animating;
+
+    // set while this animation is on loan from an AnimationPool
+    AnimationPool p_pool;
     
     public Animation() {
         animating = false;
+        p_pool = null;
     }
     
     // The following methods do nothing but return the original unless overridden.
@@ -52,6 +56,34 @@ public class Animation {
 	public Paint adjustColor(Paint original) {
 		return original;
 	}
+
+    /**
+     * isParallelSafe() Whether the engine may run this animation on a worker
+     * thread (see PBGEngine.setParallelAnimation()).  Return true only if
+     * the adjust*() methods touch nothing but this animation's own fields
+     * and the values passed in: no static fields, no objects shared with
+     * other sprites' animations, no engine or game state.  The Float2s
+     * passed in are the sprite's own; Sprite copies vectors set on it and
+     * keeps a sprite whose position field points elsewhere on the game
+     * thread, so writing them in place is safe.  Animations of
+     * different sprites then run at the same time; the animations of one
+     * sprite always run in order on one thread.  Defaults to false, which
+     * keeps the sprite on the game thread.
+     */
+    public boolean isParallelSafe() {
+        return false;
+    }
+
+    /**
+     * isCosmetic() Whether this animation only changes how the sprite looks
+     * (frame, transparency, scale, rotation, color) and never where it is,
+     * its velocity or whether it is active.  With PBGEngine.ANIMATE_VISIBLE
+     * a cosmetic animation is paused while its sprite is off screen; the
+     * others keep running.  Defaults to false.
+     */
+    public boolean isCosmetic() {
+        return false;
+    }
 }
 
 
@@ -0,0 +1,166 @@
+/** 
+ * AnimationPool Class
+ * @author PistolBear
+ * 
+ * Pools for the stock animations and behaviors.  An animation obtained here
+ * belongs to the sprite it is added to: it is freed when it stops animating,
+ * when the sprite's animations are removed, or when the sprite is reset.
+ * The engine keeps one of these, see PBGEngine.getAnimationPool().  It is
+ * synchronized, since parallel animation frees finished animations from
+ * worker threads.
+ */
+package pbgames.pbgengine;
+
+import android.graphics.Point;
+import android.graphics.RectF;
+import android.renderscript.Float2;
+
+public class AnimationPool {
+	private Pool<VelocityBehavior> p_velocity;
+	private Pool<SpinAnimation> p_spin;
+	private Pool<FrameAnimation> p_frame;
+	private Pool<PulseAnimation> p_pulse;
+	private Pool<Transparency2DAnim> p_transparency;
+	private Pool<OrbitBehavior> p_orbit;
+	private Pool<BounceBehavior> p_bounce;
+
+	public AnimationPool() {
+		p_velocity = new Pool<VelocityBehavior>() {
+			@Override
+			protected VelocityBehavior newObject() {
+				return new VelocityBehavior(0, 0, 0);
+			}
+		};
+		p_spin = new Pool<SpinAnimation>() {
+			@Override
+			protected SpinAnimation newObject() {
+				return new SpinAnimation(0);
+			}
+		};
+		p_frame = new Pool<FrameAnimation>() {
+			@Override
+			protected FrameAnimation newObject() {
+				return new FrameAnimation(0, 0, 0);
+			}
+		};
+		p_pulse = new Pool<PulseAnimation>() {
+			@Override
+			protected PulseAnimation newObject() {
+				return new PulseAnimation(1, 1, 0);
+			}
+		};
+		p_transparency = new Pool<Transparency2DAnim>() {
+			@Override
+			protected Transparency2DAnim newObject() {
+				return new Transparency2DAnim(0, 255, 0);
+			}
+		};
+		p_orbit = new Pool<OrbitBehavior>() {
+			@Override
+			protected OrbitBehavior newObject() {
+				return new OrbitBehavior(0, 0, 0, 0, 0);
+			}
+		};
+		p_bounce = new Pool<BounceBehavior>() {
+			@Override
+			protected BounceBehavior newObject() {
+				return new BounceBehavior(null, null, null);
+			}
+
+			@Override
+			protected void reset(BounceBehavior anim) {
+				// do not hold on to the caller's objects
+				anim.reset(null, null, null);
+			}
+		};
+	}
+
+	public synchronized VelocityBehavior obtainVelocity(double angleDegrees,
+			float speedMultiplier, int lifetime) {
+		VelocityBehavior anim = p_velocity.obtain();
+		anim.reset(angleDegrees, speedMultiplier, lifetime);
+		anim.p_pool = this;
+		return anim;
+	}
+
+	public synchronized SpinAnimation obtainSpin(float velocity) {
+		SpinAnimation anim = p_spin.obtain();
+		anim.reset(velocity);
+		anim.p_pool = this;
+		return anim;
+	}
+
+	public synchronized FrameAnimation obtainFrame(int firstFrame,
+			int lastFrame, int direction) {
+		FrameAnimation anim = p_frame.obtain();
+		anim.reset(firstFrame, lastFrame, direction);
+		anim.p_pool = this;
+		return anim;
+	}
+
+	public synchronized PulseAnimation obtainPulse(float startScale,
+			float endScale, float speed, boolean repeat) {
+		PulseAnimation anim = p_pulse.obtain();
+		anim.reset(startScale, endScale, speed, repeat);
+		anim.p_pool = this;
+		return anim;
+	}
+
+	public synchronized Transparency2DAnim obtainTransparency(int minAlpha,
+			int maxAlpha, int change) {
+		Transparency2DAnim anim = p_transparency.obtain();
+		anim.reset(minAlpha, maxAlpha, change);
+		anim.p_pool = this;
+		return anim;
+	}
+
+	public synchronized OrbitBehavior obtainOrbit(int centerx, int centery,
+			int radius, double angle, float velocity) {
+		OrbitBehavior anim = p_orbit.obtain();
+		anim.reset(centerx, centery, radius, angle, velocity);
+		anim.p_pool = this;
+		return anim;
+	}
+
+	public synchronized BounceBehavior obtainBounce(RectF bounds, Point size,
+			Float2 velocity) {
+		BounceBehavior anim = p_bounce.obtain();
+		anim.reset(bounds, size, velocity);
+		anim.p_pool = this;
+		return anim;
+	}
+
+	/**
+	 * free() Return an animation obtained from this pool. Anything else,
+	 * or an animation already freed, is ignored.
+	 */
+	public synchronized void free(Animation anim) {
+		if (anim == null || anim.p_pool != this)
+			return;
+		anim.p_pool = null;
+		if (anim instanceof VelocityBehavior)
+			p_velocity.free((VelocityBehavior) anim);
+		else if (anim instanceof SpinAnimation)
+			p_spin.free((SpinAnimation) anim);
+		else if (anim instanceof FrameAnimation)
+			p_frame.free((FrameAnimation) anim);
+		else if (anim instanceof PulseAnimation)
+			p_pulse.free((PulseAnimation) anim);
+		else if (anim instanceof Transparency2DAnim)
+			p_transparency.free((Transparency2DAnim) anim);
+		else if (anim instanceof OrbitBehavior)
+			p_orbit.free((OrbitBehavior) anim);
+		else if (anim instanceof BounceBehavior)
+			p_bounce.free((BounceBehavior) anim);
+	}
+
+	public void clear() {
+		p_velocity.clear();
+		p_spin.clear();
+		p_frame.clear();
+		p_pulse.clear();
+		p_transparency.clear();
+		p_orbit.clear();
+		p_bounce.clear();
+	}
+}
@@ -0,0 +1,153 @@
+/** 
+ * AssetLoader Class
+ * @author PistolBear
+ * 
+ * Decodes textures on a small pool of worker threads so load() does not have
+ * to block on every PNG.  Each request returns a Future; overall progress is
+ * available from getProgress() or a ProgressListener.  PBGEngine keeps the
+ * game thread on its loading screen until isComplete() is true.
+ */
+package pbgames.pbgengine;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.util.Log;
+
+public class AssetLoader {
+
+	/**
+	 * ProgressListener
+	 * Called from the worker threads; do not touch views or the canvas here.
+	 */
+	public interface ProgressListener {
+		public void onProgress(int finished, int total);
+	}
+
+	private TextureCache p_cache;
+	private ExecutorService p_executor;
+	private AtomicInteger p_total, p_finished, p_failed;
+	private volatile ProgressListener p_listener;
+
+	/**
+	 * AssetLoader with one worker per spare core, between 1 and 4
+	 */
+	public AssetLoader(TextureCache cache) {
+		this(cache, Math.max(1, Math.min(4, Runtime.getRuntime()
+				.availableProcessors() - 1)));
+	}
+
+	/**
+	 * AssetLoader
+	 * @param cache : decoded textures are shared through this cache
+	 * @param threads : number of decode workers
+	 */
+	public AssetLoader(TextureCache cache, int threads) {
+		p_cache = cache;
+		p_total = new AtomicInteger(0);
+		p_finished = new AtomicInteger(0);
+		p_failed = new AtomicInteger(0);
+		p_listener = null;
+		p_executor = new ThreadPoolExecutor(threads, threads, 1,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					private int p_count = 0;
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "PBGEngine-loader-"
+								+ (p_count++));
+						t.setDaemon(true);
+						t.setPriority(Thread.NORM_PRIORITY - 1);
+						return t;
+					}
+				});
+	}
+
+	/**
+	 * loadTexture() Queue a texture decode. The Future yields the shared
+	 * Texture from the cache, or null if it failed; either way the caller
+	 * owns one cache reference on success.
+	 */
+	public Future<Texture> loadTexture(String path) {
+		return loadTexture(path, null);
+	}
+
+	/**
+	 * loadTexture() with decode options, see TextureCache.acquire()
+	 */
+	public Future<Texture> loadTexture(final String path,
+			final TextureOptions options) {
+		p_total.incrementAndGet();
+		return p_executor.submit(new Callable<Texture>() {
+			@Override
+			public Texture call() {
+				Texture texture = null;
+				try {
+					texture = p_cache.acquire(path, options);
+				} finally {
+					finished(path, texture != null);
+				}
+				return texture;
+			}
+		});
+	}
+
+	private void finished(String path, boolean ok) {
+		if (!ok) {
+			p_failed.incrementAndGet();
+			Log.e("AssetLoader", "could not load " + path);
+		}
+		int done = p_finished.incrementAndGet();
+		ProgressListener listener = p_listener;
+		if (listener != null)
+			listener.onProgress(done, p_total.get());
+	}
+
+	/**
+	 * isComplete() True once every queued request has finished, successfully
+	 * or not. Textures are safe to use from the calling thread afterwards.
+	 */
+	public boolean isComplete() {
+		return p_finished.get() == p_total.get();
+	}
+
+	/**
+	 * getProgress() 0.0 to 1.0, 1.0 when nothing is queued
+	 */
+	public float getProgress() {
+		int total = p_total.get();
+		if (total == 0)
+			return 1.0f;
+		return (float) p_finished.get() / total;
+	}
+
+	public int getTotal() {
+		return p_total.get();
+	}
+
+	public int getFinished() {
+		return p_finished.get();
+	}
+
+	public int getFailed() {
+		return p_failed.get();
+	}
+
+	public void setProgressListener(ProgressListener listener) {
+		p_listener = listener;
+	}
+
+	/**
+	 * shutdown() Stop the workers; queued decodes are abandoned.
+	 */
+	public void shutdown() {
+		p_executor.shutdownNow();
+	}
+}
@@ -9,11 +9,25 @@ public class BounceBehavior extends Animation {
     private Point p_size;
     
     public BounceBehavior(RectF bounds, Point size, Float2 velocity) {
+        p_velocity = new Float2(0, 0);
+        reset(bounds, size, velocity);
+    }
+    
+    // reuse as if newly constructed; the velocity is copied, so one Float2
+    // can start many sprites and each bounces on its own
+    public void reset(RectF bounds, Point size, Float2 velocity) {
         animating = true;
         p_bounds = bounds;
-        p_velocity = velocity;
+        if (velocity != null) {
+            p_velocity.x = velocity.x;
+            p_velocity.y = velocity.y;
+        }
         p_size = size;
     }
+
+    public Float2 getVelocity() {
+        return p_velocity;
+    }
     
     @Override
     public Float2 adjustPosition(Float2 original) {
@@ -34,4 +48,11 @@ public class BounceBehavior extends Animation {
         return modified;
     }
 
+    // bounds and size are only read; writes its own velocity and the
+    // sprite's own position
+    @Override
+    public boolean isParallelSafe() {
+        return true;
+    }
+
 }
\ No newline at end of file
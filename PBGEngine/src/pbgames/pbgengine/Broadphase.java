@@ -0,0 +1,30 @@
+/** 
+ * Broadphase Interface
+ * @author PistolBear
+ * 
+ * Plugs into the collision pass of PBGEngine.run().  A Broadphase is handed
+ * the sprite group once per frame and reports candidate pairs that might be
+ * touching; the engine runs the narrowphase (collisionCheckRectF) on each.
+ * Every candidate pair must be reported exactly once per frame, not just the
+ * first one found for a sprite.
+ */
+package pbgames.pbgengine;
+
+public interface Broadphase {
+
+	/**
+	 * PairHandler
+	 * Receives every candidate pair found by a Broadphase.  Inactive and
+	 * non-collidable sprites are never reported.
+	 */
+	public interface PairHandler {
+		public void pair(Sprite sprA, Sprite sprB);
+	}
+
+	/**
+	 * findPairs
+	 * @param group : the engine's sprite group
+	 * @param handler : called once per candidate pair
+	 */
+	public void findPairs(EntityGroup group, PairHandler handler);
+}
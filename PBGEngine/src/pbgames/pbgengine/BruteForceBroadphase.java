@@ -0,0 +1,35 @@
+/** 
+ * BruteForceBroadphase Class
+ * @author PistolBear
+ * 
+ * The original O(n^2) collision pass: every active, collidable sprite is
+ * paired with every other one.  Kept so results can be compared against the
+ * faster broadphases.
+ */
+package pbgames.pbgengine;
+
+public class BruteForceBroadphase implements Broadphase {
+
+	@Override
+	public void findPairs(EntityGroup group, PairHandler handler) {
+		int size = group.size();
+		for (int i = 0; i < size; i++) {
+			Sprite sprA = group.get(i);
+			if (!sprA.getActive())
+				continue;
+			if (!sprA.getCollidable())
+				continue;
+
+			// only pair with sprites further down the list, every pair once
+			for (int j = i + 1; j < size; j++) {
+				Sprite sprB = group.get(j);
+				if (!sprB.getActive())
+					continue;
+				if (!sprB.getCollidable())
+					continue;
+
+				handler.pair(sprA, sprB);
+			}
+		}
+	}
+}
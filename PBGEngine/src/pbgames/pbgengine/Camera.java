@@ -0,0 +1,156 @@
+/**
+ * Camera Class
+ * @author PistolBear
+ *
+ * World-to-screen view shared by the engine's layers.  Sprites keep their
+ * positions in world space; scrolling or zooming only changes the one
+ * matrix each layer is drawn through.  A layer's parallax factor scales
+ * how far it follows the camera: 1 moves with the world, 0 stays fixed on
+ * screen (HUDs), values in between scroll slower (backgrounds).
+ * Move the camera from update(); like the sprites, it is interpolated
+ * between simulation steps when drawn.
+ */
+package pbgames.pbgengine;
+
+import android.graphics.Matrix;
+import android.graphics.PointF;
+import android.graphics.RectF;
+
+public class Camera {
+	private float p_x, p_y, p_zoom;
+	private float p_prevX, p_prevY, p_prevZoom;
+	private int p_width, p_height;
+
+	public Camera() {
+		p_x = p_y = 0;
+		p_zoom = 1.0f;
+		p_width = p_height = 0;
+		resetInterpolation();
+	}
+
+	/**
+	 * setPosition() World point shown at the top left of the screen
+	 */
+	public void setPosition(float x, float y) {
+		p_x = x;
+		p_y = y;
+	}
+
+	public void move(float dx, float dy) {
+		p_x += dx;
+		p_y += dy;
+	}
+
+	/**
+	 * centerOn() Scroll so that a world point is in the middle of the screen
+	 */
+	public void centerOn(float x, float y) {
+		p_x = x - p_width / (2.0f * p_zoom);
+		p_y = y - p_height / (2.0f * p_zoom);
+	}
+
+	public float getX() {
+		return p_x;
+	}
+
+	public float getY() {
+		return p_y;
+	}
+
+	/**
+	 * setZoom() Screen pixels per world unit, about the top left corner.
+	 * Layers zoom in proportion to their parallax, so a parallax 0 HUD keeps
+	 * its size.
+	 */
+	public void setZoom(float zoom) {
+		if (zoom > 0)
+			p_zoom = zoom;
+	}
+
+	public float getZoom() {
+		return p_zoom;
+	}
+
+	/**
+	 * Screen size, kept up to date by the engine
+	 */
+	void setSize(int width, int height) {
+		p_width = width;
+		p_height = height;
+	}
+
+	public int getWidth() {
+		return p_width;
+	}
+
+	public int getHeight() {
+		return p_height;
+	}
+
+	/**
+	 * savePrevious() Called by the engine at the start of every simulation
+	 * step.
+	 */
+	void savePrevious() {
+		p_prevX = p_x;
+		p_prevY = p_y;
+		p_prevZoom = p_zoom;
+	}
+
+	/**
+	 * resetInterpolation() Jump straight to the current position on the next
+	 * frame instead of sliding there, e.g. after a level change.
+	 */
+	public void resetInterpolation() {
+		savePrevious();
+	}
+
+	/**
+	 * getMatrix() Transform from a layer's world space to the screen
+	 * @param parallax : the layer's parallax factor
+	 * @param t : interpolation between the previous and the current step
+	 * @param out : receives the transform
+	 */
+	public void getMatrix(float parallax, float t, Matrix out) {
+		float zoom = layerZoom(parallax, t);
+		out.setTranslate(-offsetX(parallax, t), -offsetY(parallax, t));
+		out.postScale(zoom, zoom);
+	}
+
+	/**
+	 * getVisibleArea() The part of a layer's world that a screen area shows
+	 * @param screen : area in screen pixels, usually the whole screen
+	 * @param out : receives the area in world space
+	 */
+	public void getVisibleArea(float parallax, float t, RectF screen, RectF out) {
+		float zoom = layerZoom(parallax, t);
+		float x = offsetX(parallax, t);
+		float y = offsetY(parallax, t);
+		out.set(screen.left / zoom + x, screen.top / zoom + y, screen.right
+				/ zoom + x, screen.bottom / zoom + y);
+	}
+
+	/**
+	 * screenToWorld() Where a screen point (a touch, say) lands in a layer,
+	 * at the current step
+	 */
+	public void screenToWorld(float x, float y, float parallax, PointF out) {
+		float zoom = layerZoom(parallax, 1.0f);
+		out.set(x / zoom + offsetX(parallax, 1.0f), y / zoom
+				+ offsetY(parallax, 1.0f));
+	}
+
+	private float offsetX(float parallax, float t) {
+		return (p_prevX + (p_x - p_prevX) * t) * parallax;
+	}
+
+	private float offsetY(float parallax, float t) {
+		return (p_prevY + (p_y - p_prevY) * t) * parallax;
+	}
+
+	private float layerZoom(float parallax, float t) {
+		float zoom = p_prevZoom + (p_zoom - p_prevZoom) * t;
+		// parallax above 1 could push a zoom out through zero
+		return Math.max(1.0f + (zoom - 1.0f) * parallax, 0.01f);
+	}
+}
@@ -0,0 +1,209 @@
+/** 
+ * CanvasRenderer Class
+ * @author PistolBear
+ * 
+ * Software rendering onto the SurfaceView's canvas; the engine's default in
+ * 2D mode.  Also draws off screen onto a bitmap's Canvas, e.g. to fill a
+ * static layer's cache.
+ */
+package pbgames.pbgengine;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.view.SurfaceHolder;
+
+public class CanvasRenderer implements Renderer {
+	private SurfaceHolder p_holder;
+	private Canvas p_canvas, p_target;
+	private Rect p_dstRect;
+	private short[] p_indices;
+	private int[] p_colors;
+	private int p_width, p_height, p_drawCalls;
+	private int p_transformSave;
+
+	public CanvasRenderer(SurfaceHolder holder) {
+		p_holder = holder;
+		p_target = null;
+		p_canvas = null;
+		p_dstRect = new Rect();
+		p_indices = new short[0];
+		p_colors = new int[0];
+		p_width = p_height = 0;
+		p_drawCalls = 0;
+		p_transformSave = -1;
+	}
+
+	/**
+	 * CanvasRenderer(Canvas) Off-screen renderer; frames draw onto canvas and
+	 * endFrame() posts nothing.
+	 */
+	public CanvasRenderer(Canvas canvas) {
+		this((SurfaceHolder) null);
+		p_target = canvas;
+	}
+
+	@Override
+	public boolean beginFrame() {
+		if (p_holder == null)
+			return beginTarget();
+		if (!p_holder.getSurface().isValid())
+			return false;
+		p_canvas = p_holder.lockCanvas();
+		if (p_canvas == null)
+			return false;
+		p_width = p_canvas.getWidth();
+		p_height = p_canvas.getHeight();
+		p_drawCalls = 0;
+		p_transformSave = -1;
+		return true;
+	}
+
+	@Override
+	public boolean beginFrame(Rect dirty) {
+		if (p_holder == null) {
+			dirty.set(0, 0, p_target.getWidth(), p_target.getHeight());
+			return beginTarget();
+		}
+		if (!p_holder.getSurface().isValid())
+			return false;
+
+		// the surface copies back everything outside dirty, and may grow it
+		p_canvas = p_holder.lockCanvas(dirty);
+		if (p_canvas == null)
+			return false;
+		p_width = p_canvas.getWidth();
+		p_height = p_canvas.getHeight();
+		p_drawCalls = 0;
+		p_transformSave = -1;
+		return true;
+	}
+
+	private boolean beginTarget() {
+		p_canvas = p_target;
+		p_width = p_canvas.getWidth();
+		p_height = p_canvas.getHeight();
+		p_drawCalls = 0;
+		p_transformSave = -1;
+		return true;
+	}
+
+	@Override
+	public void endFrame() {
+		if (p_transformSave >= 0) {
+			p_canvas.restoreToCount(p_transformSave);
+			p_transformSave = -1;
+		}
+		if (p_holder != null)
+			p_holder.unlockCanvasAndPost(p_canvas);
+		p_canvas = null;
+	}
+
+	@Override
+	public Canvas getCanvas() {
+		return p_canvas;
+	}
+
+	@Override
+	public int getWidth() {
+		return p_width;
+	}
+
+	@Override
+	public int getHeight() {
+		return p_height;
+	}
+
+	@Override
+	public void clear(int color) {
+		p_canvas.drawColor(color);
+	}
+
+	/**
+	 * setTransform() Concatenated onto the canvas, so getCanvas() drawing
+	 * goes through it too
+	 */
+	@Override
+	public void setTransform(Matrix transform) {
+		if (p_transformSave >= 0) {
+			p_canvas.restoreToCount(p_transformSave);
+			p_transformSave = -1;
+		}
+		if (transform != null) {
+			p_transformSave = p_canvas.save();
+			p_canvas.concat(transform);
+		}
+	}
+
+	@Override
+	public void drawBitmap(Bitmap bitmap, Rect src, Matrix matrix, Paint paint) {
+		if (src == null) {
+			p_canvas.drawBitmap(bitmap, matrix, paint);
+		} else {
+			// one blit: frame rect through the sprite transform
+			p_dstRect.set(0, 0, src.width(), src.height());
+			int count = p_canvas.save();
+			p_canvas.concat(matrix);
+			p_canvas.drawBitmap(bitmap, src, p_dstRect, paint);
+			p_canvas.restoreToCount(count);
+		}
+		p_drawCalls++;
+	}
+
+	@Override
+	public void drawQuads(Texture texture, float[] vertices, float[] texCoords,
+			int[] colors, int quadCount, Paint paint) {
+		BitmapShader shader = texture.getShader();
+		if (shader == null || quadCount == 0)
+			return;
+
+		// two triangles per quad; grows once to the largest batch seen
+		if (p_indices.length < quadCount * 6) {
+			p_indices = new short[quadCount * 6];
+			for (int n = 0; n < quadCount; n++) {
+				int v = n * 4;
+				int i = n * 6;
+				p_indices[i] = (short) v;
+				p_indices[i + 1] = (short) (v + 1);
+				p_indices[i + 2] = (short) (v + 2);
+				p_indices[i + 3] = (short) v;
+				p_indices[i + 4] = (short) (v + 2);
+				p_indices[i + 5] = (short) (v + 3);
+			}
+		}
+
+		// before API 29 drawVertices() checks the colors against the float
+		// count, not the vertex count, so they go through an array of twice
+		// the length the caller needs; grows once like the indices
+		if (p_colors.length < quadCount * 8)
+			p_colors = new int[quadCount * 8];
+		System.arraycopy(colors, 0, p_colors, 0, quadCount * 4);
+
+		// texture coordinates are in bitmap pixels with a BitmapShader
+		paint.setShader(shader);
+		p_canvas.drawVertices(Canvas.VertexMode.TRIANGLES, quadCount * 8,
+				vertices, 0, texCoords, 0, p_colors, 0, p_indices, 0,
+				quadCount * 6, paint);
+		paint.setShader(null);
+		p_drawCalls++;
+	}
+
+	@Override
+	public void drawText(String text, float x, float y, Paint paint) {
+		p_canvas.drawText(text, x, y, paint);
+		p_drawCalls++;
+	}
+
+	@Override
+	public int getDrawCalls() {
+		return p_drawCalls;
+	}
+
+	@Override
+	public void release() {
+		p_canvas = null;
+	}
+}
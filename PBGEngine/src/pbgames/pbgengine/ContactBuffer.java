@@ -0,0 +1,82 @@
+/** 
+ * ContactBuffer Class
+ * @author PistolBear
+ * 
+ * Per-frame list of every (spriteA, spriteB) contact found by the engine.
+ * Pairs live in two preallocated parallel arrays that are reused frame after
+ * frame, so recording a contact never allocates once the buffer has grown to
+ * the busiest frame seen.
+ */
+package pbgames.pbgengine;
+
+import java.util.Arrays;
+
+public class ContactBuffer {
+	private Sprite[] p_spriteA, p_spriteB;
+	private int p_count;
+
+	public ContactBuffer() {
+		this(64);
+	}
+
+	/**
+	 * ContactBuffer
+	 * @param capacity : number of contacts to preallocate room for
+	 */
+	public ContactBuffer(int capacity) {
+		if (capacity < 1)
+			capacity = 1;
+		p_spriteA = new Sprite[capacity];
+		p_spriteB = new Sprite[capacity];
+		p_count = 0;
+	}
+
+	public void add(Sprite sprA, Sprite sprB) {
+		if (p_count == p_spriteA.length) {
+			int size = p_spriteA.length * 2;
+			p_spriteA = Arrays.copyOf(p_spriteA, size);
+			p_spriteB = Arrays.copyOf(p_spriteB, size);
+		}
+		p_spriteA[p_count] = sprA;
+		p_spriteB[p_count] = sprB;
+		p_count++;
+	}
+
+	/**
+	 * clear() Empty the buffer, dropping references so removed sprites can be
+	 * collected.
+	 */
+	public void clear() {
+		Arrays.fill(p_spriteA, 0, p_count, null);
+		Arrays.fill(p_spriteB, 0, p_count, null);
+		p_count = 0;
+	}
+
+	public int getCount() {
+		return p_count;
+	}
+
+	public int getCapacity() {
+		return p_spriteA.length;
+	}
+
+	public Sprite getSpriteA(int index) {
+		return p_spriteA[index];
+	}
+
+	public Sprite getSpriteB(int index) {
+		return p_spriteB[index];
+	}
+
+	/**
+	 * getOther() The sprite touching 'sprite' in contact 'index', or null if
+	 * 'sprite' is not part of that contact.
+	 */
+	public Sprite getOther(int index, Sprite sprite) {
+		if (p_spriteA[index] == sprite)
+			return p_spriteB[index];
+		if (p_spriteB[index] == sprite)
+			return p_spriteA[index];
+		return null;
+	}
+}
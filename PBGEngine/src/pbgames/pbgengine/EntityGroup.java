@@ -0,0 +1,349 @@
+/** 
+ * EntityGroup Class
+ * @author PistolBear
+ * 
+ * Array-backed sprite container used for the engine's sprite group.
+ * - get(index) is O(1), iterate with an index from 0 to size()-1
+ * - every member has a stable handle while it stays in the group
+ * - names are indexed, so lookups by name do not scan the group
+ * - remove() is deferred: sprites stay in place until flush(), which the
+ *   engine calls once at the end of each simulation step.  Flushing is one
+ *   pass however many sprites go, or O(1) per sprite with order preservation
+ *   turned off (swap-remove).
+ */
+package pbgames.pbgengine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class EntityGroup {
+
+	/**
+	 * RemovalListener
+	 * Told about each sprite as flush() takes it out of the group.
+	 */
+	public interface RemovalListener {
+		public void removed(Sprite sprite);
+	}
+
+	// handles of one name, in no particular order; p_nameSlotOfHandle says
+	// where each handle sits so removal swaps the last one into its place
+	private static class HandleList {
+		int[] handles = new int[4];
+		int count = 0;
+	}
+
+	private Sprite[] p_sprites;
+	private int p_count;
+
+	// handle <-> index; free handles are reused
+	private int[] p_indexOfHandle, p_handleOfIndex, p_freeHandles;
+	private Sprite[] p_spriteOfHandle;
+	private int p_freeCount, p_handleCount;
+
+	// name index; lists that empty out are dropped and kept for reuse
+	private HashMap<String, HandleList> p_names;
+	private int[] p_nameSlotOfHandle;
+	private ArrayList<HandleList> p_spareLists;
+
+	private Sprite[] p_pending;
+	private int p_pendingCount;
+	private boolean p_preserveOrder;
+	private boolean p_batched;
+
+	public EntityGroup() {
+		this(64);
+	}
+
+	public EntityGroup(int capacity) {
+		if (capacity < 4)
+			capacity = 4;
+		p_sprites = new Sprite[capacity];
+		p_count = 0;
+		p_handleOfIndex = new int[capacity];
+		p_indexOfHandle = new int[capacity];
+		p_spriteOfHandle = new Sprite[capacity];
+		p_freeHandles = new int[capacity];
+		p_freeCount = 0;
+		p_handleCount = 0;
+		p_names = new HashMap<String, HandleList>();
+		p_nameSlotOfHandle = new int[capacity];
+		p_spareLists = new ArrayList<HandleList>();
+		p_pending = new Sprite[16];
+		p_pendingCount = 0;
+		p_preserveOrder = true;
+		p_batched = false;
+	}
+
+	/**
+	 * add() Append a sprite. Adding a member again only cancels a pending
+	 * removal. A sprite is in one group at a time: one still in another
+	 * group, even with its removal pending, is refused until that group's
+	 * flush().
+	 * @return the sprite's handle
+	 */
+	public int add(Sprite sprite) {
+		if (sprite.p_group == this) {
+			sprite.p_removalPending = false;
+			return sprite.p_groupHandle;
+		}
+		if (sprite.p_group != null)
+			throw new IllegalStateException("sprite is in another group");
+		if (p_count == p_sprites.length) {
+			p_sprites = Arrays.copyOf(p_sprites, p_count * 2);
+			p_handleOfIndex = Arrays.copyOf(p_handleOfIndex, p_count * 2);
+		}
+
+		int handle;
+		if (p_freeCount > 0) {
+			handle = p_freeHandles[--p_freeCount];
+		} else {
+			if (p_handleCount == p_indexOfHandle.length) {
+				int size = p_handleCount * 2;
+				p_indexOfHandle = Arrays.copyOf(p_indexOfHandle, size);
+				p_spriteOfHandle = Arrays.copyOf(p_spriteOfHandle, size);
+				p_freeHandles = Arrays.copyOf(p_freeHandles, size);
+				p_nameSlotOfHandle = Arrays.copyOf(p_nameSlotOfHandle, size);
+			}
+			handle = p_handleCount++;
+		}
+
+		int index = p_count++;
+		p_sprites[index] = sprite;
+		p_handleOfIndex[index] = handle;
+		p_indexOfHandle[handle] = index;
+		p_spriteOfHandle[handle] = sprite;
+		sprite.p_group = this;
+		sprite.p_groupHandle = handle;
+		sprite.p_removalPending = false;
+		addName(sprite.getName(), handle);
+		return handle;
+	}
+
+	/**
+	 * remove() Schedule a member for removal at the next flush().
+	 * @return false if the sprite is not a member or already scheduled
+	 */
+	public boolean remove(Sprite sprite) {
+		if (sprite.p_group != this || sprite.p_removalPending)
+			return false;
+		sprite.p_removalPending = true;
+		if (p_pendingCount == p_pending.length)
+			p_pending = Arrays.copyOf(p_pending, p_pendingCount * 2);
+		p_pending[p_pendingCount++] = sprite;
+		return true;
+	}
+
+	/**
+	 * remove(String) Schedule a member with this name.
+	 */
+	public boolean remove(String name) {
+		HandleList list = p_names.get(name);
+		if (list == null)
+			return false;
+		for (int i = 0; i < list.count; i++) {
+			if (remove(p_spriteOfHandle[list.handles[i]]))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * removeAll(String) Schedule every member with this name.
+	 * @return number of sprites scheduled
+	 */
+	public int removeAll(String name) {
+		HandleList list = p_names.get(name);
+		if (list == null)
+			return 0;
+		int removed = 0;
+		for (int i = 0; i < list.count; i++) {
+			if (remove(p_spriteOfHandle[list.handles[i]]))
+				removed++;
+		}
+		return removed;
+	}
+
+	/**
+	 * flush() Apply all scheduled removals.
+	 * @param listener : told about each removed sprite, may be null
+	 */
+	public void flush(RemovalListener listener) {
+		if (p_pendingCount == 0)
+			return;
+
+		// cancelled removals (re-added) are skipped
+		int pending = p_pendingCount;
+		p_pendingCount = 0;
+
+		if (p_preserveOrder) {
+			// one stable compaction pass for the whole batch
+			int n = 0;
+			for (int i = 0; i < p_count; i++) {
+				Sprite spr = p_sprites[i];
+				if (spr.p_removalPending)
+					continue;
+				p_sprites[n] = spr;
+				p_handleOfIndex[n] = p_handleOfIndex[i];
+				p_indexOfHandle[p_handleOfIndex[n]] = n;
+				n++;
+			}
+			Arrays.fill(p_sprites, n, p_count, null);
+			p_count = n;
+		} else {
+			for (int k = 0; k < pending; k++) {
+				Sprite spr = p_pending[k];
+				if (!spr.p_removalPending || spr.p_group != this)
+					continue;
+				// remove(), add(), remove() queues a sprite twice
+				int index = p_indexOfHandle[spr.p_groupHandle];
+				if (index < 0)
+					continue;
+				int last = --p_count;
+				p_sprites[index] = p_sprites[last];
+				p_handleOfIndex[index] = p_handleOfIndex[last];
+				p_indexOfHandle[p_handleOfIndex[index]] = index;
+				p_indexOfHandle[spr.p_groupHandle] = -1;
+				p_sprites[last] = null;
+			}
+		}
+
+		for (int k = 0; k < pending; k++) {
+			Sprite spr = p_pending[k];
+			p_pending[k] = null;
+			if (!spr.p_removalPending || spr.p_group != this)
+				continue;
+			int handle = spr.p_groupHandle;
+			removeName(spr.getName(), handle);
+			p_indexOfHandle[handle] = -1;
+			p_spriteOfHandle[handle] = null;
+			p_freeHandles[p_freeCount++] = handle;
+			spr.p_group = null;
+			spr.p_groupHandle = -1;
+			spr.p_removalPending = false;
+			if (listener != null)
+				listener.removed(spr);
+		}
+	}
+
+	/**
+	 * Called by Sprite.setName() to keep the name index current.
+	 */
+	void rename(Sprite sprite, String oldName, String newName) {
+		removeName(oldName, sprite.p_groupHandle);
+		addName(newName, sprite.p_groupHandle);
+	}
+
+	private void addName(String name, int handle) {
+		HandleList list = p_names.get(name);
+		if (list == null) {
+			int spare = p_spareLists.size();
+			list = spare > 0 ? p_spareLists.remove(spare - 1)
+					: new HandleList();
+			p_names.put(name, list);
+		}
+		if (list.count == list.handles.length)
+			list.handles = Arrays.copyOf(list.handles, list.count * 2);
+		p_nameSlotOfHandle[handle] = list.count;
+		list.handles[list.count++] = handle;
+	}
+
+	// O(1): the last handle of the list takes the removed one's slot
+	private void removeName(String name, int handle) {
+		HandleList list = p_names.get(name);
+		if (list == null)
+			return;
+		int slot = p_nameSlotOfHandle[handle];
+		if (slot >= list.count || list.handles[slot] != handle)
+			return;
+		int last = list.handles[--list.count];
+		list.handles[slot] = last;
+		p_nameSlotOfHandle[last] = slot;
+		if (list.count == 0) {
+			p_names.remove(name);
+			p_spareLists.add(list);
+		}
+	}
+
+	public Sprite get(int index) {
+		return p_sprites[index];
+	}
+
+	/**
+	 * size() Members, including ones scheduled for removal
+	 */
+	public int size() {
+		return p_count;
+	}
+
+	/**
+	 * getPendingCount() Removals scheduled for the next flush()
+	 */
+	public int getPendingCount() {
+		return p_pendingCount;
+	}
+
+	public boolean contains(Sprite sprite) {
+		return sprite.p_group == this;
+	}
+
+	/**
+	 * getByHandle() The member with this handle, or null
+	 */
+	public Sprite getByHandle(int handle) {
+		if (handle < 0 || handle >= p_handleCount)
+			return null;
+		return p_spriteOfHandle[handle];
+	}
+
+	/**
+	 * indexOf() Current index of a handle, -1 if not in use. Indices change
+	 * when sprites are removed; handles do not.
+	 */
+	public int indexOf(int handle) {
+		if (handle < 0 || handle >= p_handleCount)
+			return -1;
+		return p_indexOfHandle[handle];
+	}
+
+	/**
+	 * getByName() A member with this name, or null; which one is not
+	 * defined once members of that name have been removed or renamed
+	 */
+	public Sprite getByName(String name) {
+		HandleList list = p_names.get(name);
+		if (list == null || list.count == 0)
+			return null;
+		return p_spriteOfHandle[list.handles[0]];
+	}
+
+	public int countByName(String name) {
+		HandleList list = p_names.get(name);
+		return list == null ? 0 : list.count;
+	}
+
+	public boolean getPreserveOrder() {
+		return p_preserveOrder;
+	}
+
+	/**
+	 * setPreserveOrder() Keep draw order on removal (default). Turn off to
+	 * swap the last sprite into each hole instead.
+	 */
+	public void setPreserveOrder(boolean value) {
+		p_preserveOrder = value;
+	}
+
+	public boolean getBatched() {
+		return p_batched;
+	}
+
+	/**
+	 * setBatched() Draw this group through a SpriteBatch, one draw call per
+	 * run of sprites sharing a texture, instead of one per sprite.
+	 */
+	public void setBatched(boolean value) {
+		p_batched = value;
+	}
+}
@@ -15,6 +15,11 @@ public class FrameAnimation extends Animation {
      * @param direction
      */
     public FrameAnimation(int firstFrame, int lastFrame, int direction) {
+        reset(firstFrame, lastFrame, direction);
+    }
+    
+    // reuse as if newly constructed
+    public void reset(int firstFrame, int lastFrame, int direction) {
         animating = true;
         p_firstFrame = firstFrame;
         p_lastFrame = lastFrame;
@@ -31,4 +36,16 @@ public class FrameAnimation extends Animation {
         return modified;
     }
 
+    // only touches its own fields
+    @Override
+    public boolean isParallelSafe() {
+        return true;
+    }
+
+    // changes the sprite's looks only
+    @Override
+    public boolean isCosmetic() {
+        return true;
+    }
+
 }
@@ -0,0 +1,166 @@
+/** 
+ * FrameScheduler Class
+ * @author PistolBear
+ * 
+ * Paces the game thread to display vsync.  Choreographer frame callbacks
+ * arrive on the UI thread; the game thread blocks in awaitFrame() until the
+ * next one instead of guessing with Thread.sleep().  Frames the game thread
+ * was not ready for, and vsyncs the UI thread itself missed, are counted in
+ * getMissedFrames().
+ * 
+ * start() and stop() must be called from the UI thread.
+ */
+package pbgames.pbgengine;
+
+import android.view.Choreographer;
+
+public class FrameScheduler implements Choreographer.FrameCallback {
+	// longest wait for a vsync, in case callbacks stop (surface gone, etc.)
+	private static final long MAX_WAIT_MS = 100;
+
+	// how far below the target a divided rate may fall, so 30 on a 59.94 Hz
+	// display still means every second vsync
+	private static final float RATE_TOLERANCE = 1.05f;
+
+	private final Object p_lock = new Object();
+	private Choreographer p_choreographer;
+	private volatile boolean p_running;
+	private long p_intervalNanos;
+	private int p_divider;
+
+	// guarded by p_lock
+	private long p_vsyncCount, p_lastVsyncNanos;
+	private long p_frameNumber, p_consumedFrame, p_frameTimeNanos;
+	private long p_missedFrames;
+
+	/**
+	 * FrameScheduler
+	 * @param refreshRate : display refresh rate in Hz
+	 * @param targetFrameRate : frames per second wanted, see
+	 *            setTargetFrameRate()
+	 */
+	public FrameScheduler(float refreshRate, long targetFrameRate) {
+		if (refreshRate < 1)
+			refreshRate = 60;
+		p_choreographer = null;
+		p_running = false;
+		p_intervalNanos = (long) (1000000000L / refreshRate);
+		p_vsyncCount = 0;
+		p_lastVsyncNanos = 0;
+		p_frameNumber = 0;
+		p_consumedFrame = 0;
+		p_frameTimeNanos = 0;
+		p_missedFrames = 0;
+		setTargetFrameRate(targetFrameRate);
+	}
+
+	/**
+	 * start() Begin receiving vsync callbacks. UI thread only.
+	 */
+	public void start() {
+		if (p_running)
+			return;
+		if (p_choreographer == null)
+			p_choreographer = Choreographer.getInstance();
+		synchronized (p_lock) {
+			p_lastVsyncNanos = 0;
+		}
+		p_running = true;
+		p_choreographer.postFrameCallback(this);
+	}
+
+	/**
+	 * stop() Stop vsync callbacks and release a game thread blocked in
+	 * awaitFrame(). UI thread only.
+	 */
+	public void stop() {
+		if (!p_running)
+			return;
+		p_running = false;
+		p_choreographer.removeFrameCallback(this);
+		synchronized (p_lock) {
+			p_lock.notifyAll();
+		}
+	}
+
+	@Override
+	public void doFrame(long frameTimeNanos) {
+		synchronized (p_lock) {
+			// vsyncs the UI thread slept through
+			if (p_lastVsyncNanos != 0) {
+				long vsyncs = (frameTimeNanos - p_lastVsyncNanos + p_intervalNanos / 2)
+						/ p_intervalNanos;
+				if (vsyncs > 1)
+					p_missedFrames += vsyncs - 1;
+			}
+			p_lastVsyncNanos = frameTimeNanos;
+
+			p_vsyncCount++;
+			if (p_vsyncCount % p_divider == 0) {
+				// the game thread never picked up the previous frame
+				if (p_frameNumber > p_consumedFrame)
+					p_missedFrames++;
+				p_frameNumber++;
+				p_frameTimeNanos = frameTimeNanos;
+				p_lock.notifyAll();
+			}
+		}
+		if (p_running)
+			p_choreographer.postFrameCallback(this);
+	}
+
+	/**
+	 * awaitFrame() Block the calling thread until the next frame is due.
+	 * @return vsync time of that frame on the System.nanoTime() clock, or 0
+	 *         if the scheduler is stopped or no vsync arrived in time
+	 */
+	public long awaitFrame() {
+		synchronized (p_lock) {
+			long deadline = System.currentTimeMillis() + MAX_WAIT_MS;
+			while (p_running && p_frameNumber == p_consumedFrame) {
+				long wait = deadline - System.currentTimeMillis();
+				if (wait <= 0)
+					return 0;
+				try {
+					p_lock.wait(wait);
+				} catch (InterruptedException e) {
+					return 0;
+				}
+			}
+			if (p_frameNumber == p_consumedFrame)
+				return 0;
+			p_consumedFrame = p_frameNumber;
+			return p_frameTimeNanos;
+		}
+	}
+
+	/**
+	 * setTargetFrameRate() Render on every Nth vsync, with the largest N that
+	 * still gives at least 'rate' frames per second. Rates between two
+	 * divisors round up: 40 on a 60 Hz display renders at 60, not 30.
+	 */
+	public void setTargetFrameRate(long rate) {
+		if (rate < 1)
+			rate = 1;
+		float refresh = 1000000000.0f / p_intervalNanos;
+		int divider = (int) (refresh * RATE_TOLERANCE / rate);
+		p_divider = Math.max(1, divider);
+	}
+
+	/**
+	 * getFrameRate() The rate actually rendered at, in frames per second
+	 */
+	public float getFrameRate() {
+		return 1000000000.0f / p_intervalNanos / p_divider;
+	}
+
+	public long getMissedFrames() {
+		synchronized (p_lock) {
+			return p_missedFrames;
+		}
+	}
+
+	public boolean isRunning() {
+		return p_running;
+	}
+}
@@ -0,0 +1,709 @@
+/** 
+ * GLES2Renderer Class
+ * @author PistolBear
+ * 
+ * OpenGL ES 2.0 backend, used when the engine is constructed with 2D mode
+ * off.  The EGL context lives on the game thread and draws straight into
+ * the SurfaceView, so the game loop is the same as with the Canvas.
+ * - each bitmap is uploaded once and again only if its pixels change; the
+ *   texture is deleted once the bitmap is recycled or garbage collected,
+ *   or straight away after forgetTexture()
+ * - sprites and SpriteBatch quads are transformed on the CPU and collected
+ *   into one vertex array, drawn with a single glDrawElements() per run of
+ *   the same texture
+ * - getCanvas() and drawText() draw on a transparent overlay bitmap that is
+ *   uploaded and drawn over the scene at endFrame(), only in frames that
+ *   used it.  Fine for text and HUDs, too slow for full-screen art.
+ * Paint color filters and transfer modes are not applied, and every frame
+ * is redrawn in full.  setTransform() moves text but does not scale or
+ * rotate it, and does not apply to getCanvas().
+ */
+package pbgames.pbgengine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLSurface;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+import android.util.Log;
+import android.view.SurfaceHolder;
+
+public class GLES2Renderer implements Renderer {
+	// x, y, u, v, r, g, b, a
+	private static final int VERTEX_FLOATS = 8;
+	private static final int QUAD_FLOATS = VERTEX_FLOATS * 4;
+
+	private static final String VERTEX_SHADER = "uniform vec2 u_scale;\n"
+			+ "attribute vec2 a_position;\n"
+			+ "attribute vec2 a_texCoord;\n"
+			+ "attribute vec4 a_color;\n"
+			+ "varying vec2 v_texCoord;\n"
+			+ "varying vec4 v_color;\n"
+			+ "void main() {\n"
+			+ "  v_texCoord = a_texCoord;\n"
+			+ "  v_color = a_color;\n"
+			+ "  gl_Position = vec4(a_position.x * u_scale.x - 1.0,\n"
+			+ "      1.0 - a_position.y * u_scale.y, 0.0, 1.0);\n"
+			+ "}\n";
+
+	// bitmaps are premultiplied, so is the vertex color
+	private static final String FRAGMENT_SHADER = "precision mediump float;\n"
+			+ "uniform sampler2D u_texture;\n"
+			+ "varying vec2 v_texCoord;\n"
+			+ "varying vec4 v_color;\n"
+			+ "void main() {\n"
+			+ "  gl_FragColor = texture2D(u_texture, v_texCoord) * v_color;\n"
+			+ "}\n";
+
+	private SurfaceHolder p_holder;
+	private EGLDisplay p_display;
+	private EGLConfig p_config;
+	private EGLContext p_context;
+	private EGLSurface p_surface;
+
+	private int p_program, p_aPosition, p_aTexCoord, p_aColor, p_uScale,
+			p_uTexture;
+
+	// batch of quads sharing p_batchTexture
+	private int p_capacity, p_quadCount, p_batchTexture;
+	private float[] p_vertexData;
+	private FloatBuffer p_vertexBuffer;
+	private ShortBuffer p_indexBuffer;
+
+	// bitmap -> texture; the map does not keep bitmaps alive, and the
+	// textures of collected ones turn up in p_collected
+	private WeakHashMap<Bitmap, TextureRef> p_textures;
+	private ReferenceQueue<Bitmap> p_collected;
+
+	// bitmaps forgetTexture() was called for, from any thread
+	private final ArrayList<Bitmap> p_forgotten = new ArrayList<Bitmap>();
+	private int[] p_ids;
+
+	private Bitmap p_overlay;
+	private Canvas p_overlayCanvas;
+	private boolean p_overlayUsed;
+	private int p_overlayTexture;
+
+	private float[] p_corners, p_mapped;
+	private Matrix p_transform, p_combined;
+	private boolean p_transformed;
+	private int[] p_size;
+	private int p_width, p_height, p_drawCalls, p_frames;
+
+	/**
+	 * TextureRef GL texture of a bitmap and the generation id uploaded
+	 */
+	private static class TextureRef extends WeakReference<Bitmap> {
+		int id, generation;
+
+		TextureRef(Bitmap bitmap, ReferenceQueue<Bitmap> queue, int id) {
+			super(bitmap, queue);
+			this.id = id;
+			generation = 0;
+		}
+	}
+
+	public GLES2Renderer(SurfaceHolder holder) {
+		this(holder, 1024);
+	}
+
+	/**
+	 * GLES2Renderer
+	 * @param holder : surface to draw into; construct on the UI thread
+	 * @param capacity : quads per draw call, at most 16384
+	 */
+	public GLES2Renderer(SurfaceHolder holder, int capacity) {
+		p_holder = holder;
+		p_holder.setFormat(PixelFormat.RGBA_8888);
+		p_capacity = Math.max(1, Math.min(capacity, 16384));
+
+		p_vertexData = new float[p_capacity * QUAD_FLOATS];
+		p_vertexBuffer = ByteBuffer.allocateDirect(p_vertexData.length * 4)
+				.order(ByteOrder.nativeOrder()).asFloatBuffer();
+		p_indexBuffer = ByteBuffer.allocateDirect(p_capacity * 6 * 2)
+				.order(ByteOrder.nativeOrder()).asShortBuffer();
+		for (int n = 0; n < p_capacity; n++) {
+			short v = (short) (n * 4);
+			p_indexBuffer.put(v).put((short) (v + 1)).put((short) (v + 2));
+			p_indexBuffer.put(v).put((short) (v + 2)).put((short) (v + 3));
+		}
+		p_indexBuffer.position(0);
+
+		p_textures = new WeakHashMap<Bitmap, TextureRef>();
+		p_collected = new ReferenceQueue<Bitmap>();
+		p_ids = new int[1];
+		p_corners = new float[8];
+		p_mapped = new float[8];
+		p_transform = new Matrix();
+		p_combined = new Matrix();
+		p_transformed = false;
+		p_size = new int[1];
+		p_display = null;
+		p_context = null;
+		p_surface = null;
+		p_overlay = null;
+		p_overlayTexture = 0;
+		p_quadCount = 0;
+		p_frames = 0;
+	}
+
+	@Override
+	public boolean beginFrame() {
+		if (!p_holder.getSurface().isValid()) {
+			destroySurface();
+			return false;
+		}
+		if (p_context == null && !createContext())
+			return false;
+		if (p_surface == null && !createSurface())
+			return false;
+
+		EGL14.eglQuerySurface(p_display, p_surface, EGL14.EGL_WIDTH, p_size, 0);
+		p_width = p_size[0];
+		EGL14.eglQuerySurface(p_display, p_surface, EGL14.EGL_HEIGHT, p_size, 0);
+		p_height = p_size[0];
+		if (p_width <= 0 || p_height <= 0)
+			return false;
+
+		GLES20.glViewport(0, 0, p_width, p_height);
+		GLES20.glUseProgram(p_program);
+		GLES20.glUniform2f(p_uScale, 2.0f / p_width, 2.0f / p_height);
+		p_drawCalls = 0;
+		p_quadCount = 0;
+		p_batchTexture = 0;
+		p_overlayUsed = false;
+		p_transformed = false;
+
+		deleteForgotten();
+		deleteCollected();
+		if (++p_frames % 256 == 0)
+			purgeTextures();
+		return true;
+	}
+
+	/**
+	 * beginFrame(Rect) Swapped buffers are undefined, so the dirty region
+	 * always becomes the whole surface.
+	 */
+	@Override
+	public boolean beginFrame(Rect dirty) {
+		if (!beginFrame())
+			return false;
+		dirty.set(0, 0, p_width, p_height);
+		return true;
+	}
+
+	@Override
+	public void endFrame() {
+		flush();
+		if (p_overlayUsed)
+			drawOverlay();
+
+		if (!EGL14.eglSwapBuffers(p_display, p_surface)) {
+			int error = EGL14.eglGetError();
+			Log.w("GLES2Renderer", "eglSwapBuffers failed: " + error);
+			if (error == EGL14.EGL_CONTEXT_LOST)
+				destroyContext();
+			else
+				destroySurface();
+		}
+	}
+
+	/**
+	 * getCanvas() The overlay canvas; it is cleared on the first call of
+	 * each frame and drawn over the sprites at endFrame().
+	 */
+	@Override
+	public Canvas getCanvas() {
+		if (p_width <= 0 || p_height <= 0)
+			return null;
+		if (p_overlay == null || p_overlay.getWidth() != p_width
+				|| p_overlay.getHeight() != p_height) {
+			if (p_overlay != null)
+				p_overlay.recycle();
+			p_overlay = Bitmap.createBitmap(p_width, p_height,
+					Bitmap.Config.ARGB_8888);
+			p_overlayCanvas = new Canvas(p_overlay);
+			deleteTexture(p_overlayTexture);
+			p_overlayTexture = 0;
+		}
+		if (!p_overlayUsed) {
+			p_overlay.eraseColor(Color.TRANSPARENT);
+			p_overlayUsed = true;
+		}
+		return p_overlayCanvas;
+	}
+
+	@Override
+	public int getWidth() {
+		return p_width;
+	}
+
+	@Override
+	public int getHeight() {
+		return p_height;
+	}
+
+	@Override
+	public void clear(int color) {
+		flush();
+		GLES20.glClearColor(Color.red(color) / 255.0f,
+				Color.green(color) / 255.0f, Color.blue(color) / 255.0f,
+				Color.alpha(color) / 255.0f);
+		GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+	}
+
+	@Override
+	public void setTransform(Matrix transform) {
+		p_transformed = transform != null;
+		if (p_transformed)
+			p_transform.set(transform);
+	}
+
+	@Override
+	public void drawBitmap(Bitmap bitmap, Rect src, Matrix matrix, Paint paint) {
+		int texture = textureFor(bitmap);
+		if (texture == 0)
+			return;
+		float bw = bitmap.getWidth();
+		float bh = bitmap.getHeight();
+		float left = 0, top = 0, right = bw, bottom = bh;
+		if (src != null) {
+			left = src.left;
+			top = src.top;
+			right = src.right;
+			bottom = src.bottom;
+		}
+
+		float[] c = p_corners;
+		c[0] = 0;
+		c[1] = 0;
+		c[2] = right - left;
+		c[3] = 0;
+		c[4] = right - left;
+		c[5] = bottom - top;
+		c[6] = 0;
+		c[7] = bottom - top;
+		if (p_transformed) {
+			p_combined.set(matrix);
+			p_combined.postConcat(p_transform);
+			matrix = p_combined;
+		}
+		matrix.mapPoints(p_mapped, 0, c, 0, 4);
+
+		float a = (paint != null ? paint.getAlpha() : 255) / 255.0f;
+		float u0 = left / bw, v0 = top / bh, u1 = right / bw, v1 = bottom / bh;
+		int o = beginQuad(texture);
+		float[] m = p_mapped;
+		o = putVertex(o, m[0], m[1], u0, v0, a, a, a, a);
+		o = putVertex(o, m[2], m[3], u1, v0, a, a, a, a);
+		o = putVertex(o, m[4], m[5], u1, v1, a, a, a, a);
+		putVertex(o, m[6], m[7], u0, v1, a, a, a, a);
+	}
+
+	@Override
+	public void drawQuads(Texture texture, float[] vertices, float[] texCoords,
+			int[] colors, int quadCount, Paint paint) {
+		Bitmap bitmap = texture.getBitmap();
+		int id = textureFor(bitmap);
+		if (id == 0)
+			return;
+		float sx = 1.0f / bitmap.getWidth();
+		float sy = 1.0f / bitmap.getHeight();
+		for (int q = 0; q < quadCount; q++) {
+			float[] xy = vertices;
+			int base = q * 8;
+			if (p_transformed) {
+				p_transform.mapPoints(p_mapped, 0, vertices, base, 4);
+				xy = p_mapped;
+				base = 0;
+			}
+			int o = beginQuad(id);
+			for (int k = 0; k < 4; k++) {
+				int v = (q * 4 + k) * 2;
+				int color = colors[q * 4 + k];
+				float a = Color.alpha(color) / 255.0f;
+				o = putVertex(o, xy[base + k * 2], xy[base + k * 2 + 1],
+						texCoords[v]
+						* sx, texCoords[v + 1] * sy, Color.red(color) / 255.0f
+						* a, Color.green(color) / 255.0f * a,
+						Color.blue(color) / 255.0f * a, a);
+			}
+		}
+	}
+
+	@Override
+	public void drawText(String text, float x, float y, Paint paint) {
+		Canvas canvas = getCanvas();
+		if (canvas == null)
+			return;
+		if (p_transformed) {
+			p_corners[0] = x;
+			p_corners[1] = y;
+			p_transform.mapPoints(p_mapped, 0, p_corners, 0, 1);
+			x = p_mapped[0];
+			y = p_mapped[1];
+		}
+		canvas.drawText(text, x, y, paint);
+	}
+
+	@Override
+	public int getDrawCalls() {
+		return p_drawCalls;
+	}
+
+	@Override
+	public void release() {
+		if (p_context != null && p_surface != null) {
+			Iterator<TextureRef> iter = p_textures.values().iterator();
+			while (iter.hasNext())
+				deleteTexture(iter.next().id);
+			deleteCollected();
+			deleteTexture(p_overlayTexture);
+			GLES20.glDeleteProgram(p_program);
+		}
+		destroyContext();
+		if (p_display != null) {
+			EGL14.eglTerminate(p_display);
+			p_display = null;
+		}
+		if (p_overlay != null) {
+			p_overlay.recycle();
+			p_overlay = null;
+		}
+	}
+
+	/**
+	 * Start a quad, flushing first if the texture changes or the batch is
+	 * full.
+	 * @return offset of the quad's first vertex in p_vertexData
+	 */
+	private int beginQuad(int texture) {
+		if (texture != p_batchTexture || p_quadCount == p_capacity) {
+			flush();
+			p_batchTexture = texture;
+		}
+		return p_quadCount++ * QUAD_FLOATS;
+	}
+
+	private int putVertex(int o, float x, float y, float u, float v, float r,
+			float g, float b, float a) {
+		float[] d = p_vertexData;
+		d[o] = x;
+		d[o + 1] = y;
+		d[o + 2] = u;
+		d[o + 3] = v;
+		d[o + 4] = r;
+		d[o + 5] = g;
+		d[o + 6] = b;
+		d[o + 7] = a;
+		return o + VERTEX_FLOATS;
+	}
+
+	private void flush() {
+		if (p_quadCount == 0)
+			return;
+		p_vertexBuffer.clear();
+		p_vertexBuffer.put(p_vertexData, 0, p_quadCount * QUAD_FLOATS);
+
+		int stride = VERTEX_FLOATS * 4;
+		p_vertexBuffer.position(0);
+		GLES20.glVertexAttribPointer(p_aPosition, 2, GLES20.GL_FLOAT, false,
+				stride, p_vertexBuffer);
+		p_vertexBuffer.position(2);
+		GLES20.glVertexAttribPointer(p_aTexCoord, 2, GLES20.GL_FLOAT, false,
+				stride, p_vertexBuffer);
+		p_vertexBuffer.position(4);
+		GLES20.glVertexAttribPointer(p_aColor, 4, GLES20.GL_FLOAT, false,
+				stride, p_vertexBuffer);
+
+		GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, p_batchTexture);
+		p_indexBuffer.position(0);
+		GLES20.glDrawElements(GLES20.GL_TRIANGLES, p_quadCount * 6,
+				GLES20.GL_UNSIGNED_SHORT, p_indexBuffer);
+		p_drawCalls++;
+		p_quadCount = 0;
+	}
+
+	/**
+	 * GL texture for a bitmap, uploading it the first time and whenever its
+	 * pixels have changed since.
+	 */
+	private int textureFor(Bitmap bitmap) {
+		if (bitmap == null || bitmap.isRecycled())
+			return 0;
+		TextureRef entry = p_textures.get(bitmap);
+		if (entry == null) {
+			entry = new TextureRef(bitmap, p_collected, createTexture());
+			p_textures.put(bitmap, entry);
+			upload(entry, bitmap);
+		} else if (entry.generation != bitmap.getGenerationId()) {
+			if (entry.id == p_batchTexture)
+				flush();
+			upload(entry, bitmap);
+		}
+		return entry.id;
+	}
+
+	private void upload(TextureRef entry, Bitmap bitmap) {
+		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, entry.id);
+		GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
+		entry.generation = bitmap.getGenerationId();
+	}
+
+	private int createTexture() {
+		GLES20.glGenTextures(1, p_ids, 0);
+		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, p_ids[0]);
+		GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D,
+				GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+		GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D,
+				GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+		GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D,
+				GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+		GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D,
+				GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+		return p_ids[0];
+	}
+
+	private void deleteTexture(int id) {
+		if (id == 0)
+			return;
+		p_ids[0] = id;
+		GLES20.glDeleteTextures(1, p_ids, 0);
+	}
+
+	/**
+	 * Drop the textures of bitmaps that have been recycled.
+	 */
+	private void purgeTextures() {
+		Iterator<Map.Entry<Bitmap, TextureRef>> iter = p_textures.entrySet()
+				.iterator();
+		while (iter.hasNext()) {
+			Map.Entry<Bitmap, TextureRef> entry = iter.next();
+			if (entry.getKey().isRecycled()) {
+				TextureRef texture = entry.getValue();
+				deleteTexture(texture.id);
+				texture.clear();
+				iter.remove();
+			}
+		}
+	}
+
+	/**
+	 * forgetTexture() Delete the texture of a bitmap the game is done with,
+	 * at the start of the next frame, instead of waiting for the collector.
+	 * Drawing the bitmap again uploads it again. Any thread.
+	 */
+	public void forgetTexture(Bitmap bitmap) {
+		if (bitmap == null)
+			return;
+		synchronized (p_forgotten) {
+			p_forgotten.add(bitmap);
+		}
+	}
+
+	private void deleteForgotten() {
+		synchronized (p_forgotten) {
+			for (int n = 0; n < p_forgotten.size(); n++) {
+				TextureRef texture = p_textures.remove(p_forgotten.get(n));
+				if (texture != null) {
+					deleteTexture(texture.id);
+					texture.clear();
+				}
+			}
+			p_forgotten.clear();
+		}
+	}
+
+	/**
+	 * Drop the textures of bitmaps the garbage collector has taken; the map
+	 * has already forgotten them.
+	 */
+	private void deleteCollected() {
+		TextureRef texture;
+		while ((texture = (TextureRef) p_collected.poll()) != null)
+			deleteTexture(texture.id);
+	}
+
+	private void drawOverlay() {
+		flush();
+		if (p_overlayTexture == 0) {
+			p_overlayTexture = createTexture();
+			GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, p_overlay, 0);
+		} else {
+			GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, p_overlayTexture);
+			GLUtils.texSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, 0, p_overlay);
+		}
+		int o = beginQuad(p_overlayTexture);
+		o = putVertex(o, 0, 0, 0, 0, 1, 1, 1, 1);
+		o = putVertex(o, p_width, 0, 1, 0, 1, 1, 1, 1);
+		o = putVertex(o, p_width, p_height, 1, 1, 1, 1, 1, 1);
+		putVertex(o, 0, p_height, 0, 1, 1, 1, 1, 1);
+		flush();
+	}
+
+	private boolean createContext() {
+		if (p_display == null) {
+			p_display = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+			int[] version = new int[2];
+			if (p_display == EGL14.EGL_NO_DISPLAY
+					|| !EGL14.eglInitialize(p_display, version, 0, version, 1)) {
+				Log.e("GLES2Renderer", "eglInitialize failed");
+				p_display = null;
+				return false;
+			}
+		}
+
+		int[] attribs = { EGL14.EGL_RED_SIZE, 8, EGL14.EGL_GREEN_SIZE, 8,
+				EGL14.EGL_BLUE_SIZE, 8, EGL14.EGL_ALPHA_SIZE, 8,
+				EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
+				EGL14.EGL_SURFACE_TYPE, EGL14.EGL_WINDOW_BIT, EGL14.EGL_NONE };
+		EGLConfig[] configs = new EGLConfig[1];
+		int[] count = new int[1];
+		if (!EGL14.eglChooseConfig(p_display, attribs, 0, configs, 0, 1,
+				count, 0) || count[0] == 0) {
+			Log.e("GLES2Renderer", "no RGBA8888 ES2 config");
+			return false;
+		}
+		p_config = configs[0];
+
+		int[] contextAttribs = { EGL14.EGL_CONTEXT_CLIENT_VERSION, 2,
+				EGL14.EGL_NONE };
+		p_context = EGL14.eglCreateContext(p_display, p_config,
+				EGL14.EGL_NO_CONTEXT, contextAttribs, 0);
+		if (p_context == null || p_context == EGL14.EGL_NO_CONTEXT) {
+			Log.e("GLES2Renderer", "eglCreateContext failed: "
+					+ EGL14.eglGetError());
+			p_context = null;
+			return false;
+		}
+		return true;
+	}
+
+	private boolean createSurface() {
+		int[] attribs = { EGL14.EGL_NONE };
+		p_surface = EGL14.eglCreateWindowSurface(p_display, p_config,
+				p_holder.getSurface(), attribs, 0);
+		if (p_surface == null || p_surface == EGL14.EGL_NO_SURFACE) {
+			Log.e("GLES2Renderer", "eglCreateWindowSurface failed: "
+					+ EGL14.eglGetError());
+			p_surface = null;
+			return false;
+		}
+		if (!EGL14.eglMakeCurrent(p_display, p_surface, p_surface, p_context)) {
+			Log.e("GLES2Renderer", "eglMakeCurrent failed: "
+					+ EGL14.eglGetError());
+			destroySurface();
+			return false;
+		}
+
+		// the program lives with the context; build it on first use
+		if (p_program == 0 && !createProgram()) {
+			destroySurface();
+			return false;
+		}
+		return true;
+	}
+
+	private boolean createProgram() {
+		int vs = compile(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER);
+		int fs = compile(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
+		if (vs == 0 || fs == 0)
+			return false;
+		p_program = GLES20.glCreateProgram();
+		GLES20.glAttachShader(p_program, vs);
+		GLES20.glAttachShader(p_program, fs);
+		GLES20.glLinkProgram(p_program);
+		GLES20.glDeleteShader(vs);
+		GLES20.glDeleteShader(fs);
+		int[] status = new int[1];
+		GLES20.glGetProgramiv(p_program, GLES20.GL_LINK_STATUS, status, 0);
+		if (status[0] == 0) {
+			Log.e("GLES2Renderer", GLES20.glGetProgramInfoLog(p_program));
+			GLES20.glDeleteProgram(p_program);
+			p_program = 0;
+			return false;
+		}
+
+		p_aPosition = GLES20.glGetAttribLocation(p_program, "a_position");
+		p_aTexCoord = GLES20.glGetAttribLocation(p_program, "a_texCoord");
+		p_aColor = GLES20.glGetAttribLocation(p_program, "a_color");
+		p_uScale = GLES20.glGetUniformLocation(p_program, "u_scale");
+		p_uTexture = GLES20.glGetUniformLocation(p_program, "u_texture");
+
+		GLES20.glUseProgram(p_program);
+		GLES20.glUniform1i(p_uTexture, 0);
+		GLES20.glEnableVertexAttribArray(p_aPosition);
+		GLES20.glEnableVertexAttribArray(p_aTexCoord);
+		GLES20.glEnableVertexAttribArray(p_aColor);
+		GLES20.glEnable(GLES20.GL_BLEND);
+		GLES20.glBlendFunc(GLES20.GL_ONE, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+		return true;
+	}
+
+	private int compile(int type, String source) {
+		int shader = GLES20.glCreateShader(type);
+		GLES20.glShaderSource(shader, source);
+		GLES20.glCompileShader(shader);
+		int[] status = new int[1];
+		GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+		if (status[0] == 0) {
+			Log.e("GLES2Renderer", GLES20.glGetShaderInfoLog(shader));
+			GLES20.glDeleteShader(shader);
+			return 0;
+		}
+		return shader;
+	}
+
+	private void destroySurface() {
+		if (p_surface == null)
+			return;
+		EGL14.eglMakeCurrent(p_display, EGL14.EGL_NO_SURFACE,
+				EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+		EGL14.eglDestroySurface(p_display, p_surface);
+		p_surface = null;
+	}
+
+	/**
+	 * Drop the context and everything that lived in it; the next frame
+	 * builds it again and re-uploads textures as they are drawn.
+	 */
+	private void destroyContext() {
+		destroySurface();
+		if (p_context != null) {
+			EGL14.eglDestroyContext(p_display, p_context);
+			p_context = null;
+		}
+		// the ids died with the context; never delete them from a new one
+		Iterator<TextureRef> iter = p_textures.values().iterator();
+		while (iter.hasNext())
+			iter.next().clear();
+		p_textures.clear();
+		while (p_collected.poll() != null)
+			;
+		p_overlayTexture = 0;
+		p_program = 0;
+		p_quadCount = 0;
+	}
+}
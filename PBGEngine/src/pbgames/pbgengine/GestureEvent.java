@@ -0,0 +1,130 @@
+/**
+ * GestureEvent Class
+ * @author PistolBear
+ *
+ * A gesture found by GestureRecognizer.  One instance is reused for every
+ * gesture, so copy what you need instead of keeping it.
+ */
+package pbgames.pbgengine;
+
+public class GestureEvent {
+	/**
+	 * Types. The first tap of a double tap is also reported as a TAP. A
+	 * drag ends with DRAG_END, followed by FLING if the finger was still
+	 * moving fast when lifted.
+	 */
+	public static final int TAP = 0;
+	public static final int DOUBLE_TAP = 1;
+	public static final int DRAG = 2;
+	public static final int DRAG_END = 3;
+	public static final int FLING = 4;
+	public static final int PINCH = 5;
+	public static final int ROTATE = 6;
+
+	private int p_type;
+	private float p_x, p_y, p_dx, p_dy;
+	private float p_velocityX, p_velocityY;
+	private float p_scale, p_rotation;
+	private long p_time;
+
+	public GestureEvent() {
+		set(TAP, 0, 0, 0);
+	}
+
+	/**
+	 * Start a new event, clearing the type specific values
+	 */
+	void set(int type, float x, float y, long time) {
+		p_type = type;
+		p_x = x;
+		p_y = y;
+		p_time = time;
+		p_dx = p_dy = 0;
+		p_velocityX = p_velocityY = 0;
+		p_scale = 1;
+		p_rotation = 0;
+	}
+
+	void setDelta(float dx, float dy) {
+		p_dx = dx;
+		p_dy = dy;
+	}
+
+	void setVelocity(float vx, float vy) {
+		p_velocityX = vx;
+		p_velocityY = vy;
+	}
+
+	void setScale(float scale) {
+		p_scale = scale;
+	}
+
+	void setRotation(float degrees) {
+		p_rotation = degrees;
+	}
+
+	/**
+	 * getType() TAP, DOUBLE_TAP, DRAG, DRAG_END, FLING, PINCH or ROTATE
+	 */
+	public int getType() {
+		return p_type;
+	}
+
+	/**
+	 * getX() Where the finger is; for PINCH and ROTATE the point halfway
+	 * between the two fingers
+	 */
+	public float getX() {
+		return p_x;
+	}
+
+	public float getY() {
+		return p_y;
+	}
+
+	/**
+	 * getDX() DRAG: pixels moved since the last DRAG event
+	 */
+	public float getDX() {
+		return p_dx;
+	}
+
+	public float getDY() {
+		return p_dy;
+	}
+
+	/**
+	 * getVelocityX() DRAG_END and FLING: pixels per second when lifted
+	 */
+	public float getVelocityX() {
+		return p_velocityX;
+	}
+
+	public float getVelocityY() {
+		return p_velocityY;
+	}
+
+	/**
+	 * getScale() PINCH: change in finger distance since the last PINCH, as a
+	 * factor; multiply them up for the total
+	 */
+	public float getScale() {
+		return p_scale;
+	}
+
+	/**
+	 * getRotation() ROTATE: degrees the fingers turned since the last ROTATE,
+	 * clockwise on screen
+	 */
+	public float getRotation() {
+		return p_rotation;
+	}
+
+	/**
+	 * getTime() Of the input that completed the gesture, on the
+	 * System.nanoTime() clock
+	 */
+	public long getTime() {
+		return p_time;
+	}
+}
@@ -0,0 +1,324 @@
+/**
+ * GestureRecognizer Class
+ * @author PistolBear
+ *
+ * Turns the engine's touch events into taps, double taps, drags, flings,
+ * pinches and rotations.  Events are fed in one at a time, historical
+ * MotionEvent samples included, so a fast swipe between two frames still
+ * has its whole path and a fling its true release velocity.  Works in
+ * constant memory: one finger's last few samples for the velocity and a
+ * single reused GestureEvent.
+ * Single finger gestures follow the first finger down; a second finger
+ * turns the touch into a pinch/rotate until all fingers are up.  Further
+ * fingers are ignored.
+ */
+package pbgames.pbgengine;
+
+public class GestureRecognizer {
+
+	/**
+	 * Listener
+	 * Told about each gesture as process() finds it.
+	 */
+	public interface Listener {
+		public void gesture(GestureEvent event);
+	}
+
+	// samples kept for the release velocity, and how far back they count
+	private static final int SAMPLES = 8;
+	private static final long VELOCITY_WINDOW = 100000000L;
+
+	private GestureEvent p_event;
+	private float p_touchSlop, p_doubleTapSlop, p_minFlingVelocity;
+	private long p_tapTimeout, p_doubleTapTimeout;
+
+	// the two fingers followed, -1 when up
+	private int p_primaryId, p_secondaryId;
+	private float p_x, p_y, p_x2, p_y2;
+	private float p_downX, p_downY, p_dragX, p_dragY;
+	private long p_downTime;
+	private boolean p_dragging, p_multiTouch;
+	private float p_span, p_angle;
+	private float p_tapX, p_tapY;
+	private long p_tapTime;
+	private float p_velocityX, p_velocityY;
+
+	// ring of the first finger's latest positions
+	private float[] p_sampleX, p_sampleY;
+	private long[] p_sampleTime;
+	private int p_samples, p_nextSample;
+
+	public GestureRecognizer() {
+		p_event = new GestureEvent();
+		p_touchSlop = 16;
+		p_doubleTapSlop = 100;
+		p_minFlingVelocity = 100;
+		p_tapTimeout = 500000000L;
+		p_doubleTapTimeout = 300000000L;
+		p_sampleX = new float[SAMPLES];
+		p_sampleY = new float[SAMPLES];
+		p_sampleTime = new long[SAMPLES];
+		p_tapTime = 0;
+		reset();
+	}
+
+	/**
+	 * setTouchSlop() Pixels a finger may wander before a tap becomes a drag
+	 */
+	public void setTouchSlop(float pixels) {
+		p_touchSlop = pixels;
+	}
+
+	public float getTouchSlop() {
+		return p_touchSlop;
+	}
+
+	/**
+	 * setDoubleTapSlop() Most pixels between the two taps of a double tap
+	 */
+	public void setDoubleTapSlop(float pixels) {
+		p_doubleTapSlop = pixels;
+	}
+
+	/**
+	 * setMinFlingVelocity() Release speed, in pixels per second, from which
+	 * a drag also flings
+	 */
+	public void setMinFlingVelocity(float pixelsPerSecond) {
+		p_minFlingVelocity = pixelsPerSecond;
+	}
+
+	/**
+	 * setTapTimeout() Longest press, in milliseconds, that is still a tap.
+	 * The engine uses the platform's long press timeout.
+	 */
+	public void setTapTimeout(int ms) {
+		p_tapTimeout = ms * 1000000L;
+	}
+
+	/**
+	 * setDoubleTapTimeout() Most milliseconds from the first tap's release
+	 * to the second tap's press
+	 */
+	public void setDoubleTapTimeout(int ms) {
+		p_doubleTapTimeout = ms * 1000000L;
+	}
+
+	/**
+	 * reset() Forget the fingers down; no gesture is reported for them. A
+	 * CANCEL event does the same after ending a drag, and the engine queues
+	 * one on every resume.
+	 */
+	public void reset() {
+		p_primaryId = p_secondaryId = -1;
+		p_dragging = p_multiTouch = false;
+		p_samples = p_nextSample = 0;
+	}
+
+	/**
+	 * process() Feed the next touch event, in the order they happened
+	 * @param listener : gets the gestures this event completes
+	 */
+	public void process(InputEvent event, Listener listener) {
+		int id = event.getPointerId();
+		float x = event.getX();
+		float y = event.getY();
+		long time = event.getTime();
+
+		switch (event.getAction()) {
+		case InputEvent.DOWN:
+			if (p_primaryId < 0) {
+				p_primaryId = id;
+				p_x = p_downX = x;
+				p_y = p_downY = y;
+				p_downTime = time;
+				p_dragging = p_multiTouch = false;
+				p_samples = p_nextSample = 0;
+				addSample(x, y, time);
+			} else if (p_secondaryId < 0 && id != p_primaryId) {
+				p_secondaryId = id;
+				p_x2 = x;
+				p_y2 = y;
+				if (p_dragging) {
+					p_dragging = false;
+					p_event.set(GestureEvent.DRAG_END, p_x, p_y, time);
+					listener.gesture(p_event);
+				}
+				p_multiTouch = true;
+				p_span = span();
+				p_angle = angle();
+			}
+			break;
+
+		case InputEvent.MOVE:
+			if (id == p_primaryId) {
+				p_x = x;
+				p_y = y;
+				addSample(x, y, time);
+			} else if (id == p_secondaryId) {
+				p_x2 = x;
+				p_y2 = y;
+			} else {
+				break;
+			}
+			if (p_secondaryId >= 0)
+				twoFingers(time, listener);
+			else if (!p_multiTouch)
+				drag(time, listener);
+			break;
+
+		case InputEvent.UP:
+			if (id == p_primaryId) {
+				p_x = x;
+				p_y = y;
+				addSample(x, y, time);
+				if (!p_multiTouch)
+					release(time, listener);
+				// the other finger carries on, without single finger gestures
+				p_primaryId = p_secondaryId;
+				p_x = p_x2;
+				p_y = p_y2;
+				p_secondaryId = -1;
+			} else if (id == p_secondaryId) {
+				p_secondaryId = -1;
+			}
+			break;
+
+		case InputEvent.CANCEL:
+			if (p_dragging) {
+				p_event.set(GestureEvent.DRAG_END, p_x, p_y, time);
+				listener.gesture(p_event);
+			}
+			reset();
+			break;
+		}
+	}
+
+	private void drag(long time, Listener listener) {
+		if (!p_dragging) {
+			float dx = p_x - p_downX;
+			float dy = p_y - p_downY;
+			if (dx * dx + dy * dy <= p_touchSlop * p_touchSlop)
+				return;
+			p_dragging = true;
+			p_dragX = p_downX;
+			p_dragY = p_downY;
+		}
+		p_event.set(GestureEvent.DRAG, p_x, p_y, time);
+		p_event.setDelta(p_x - p_dragX, p_y - p_dragY);
+		listener.gesture(p_event);
+		p_dragX = p_x;
+		p_dragY = p_y;
+	}
+
+	/**
+	 * The first finger went up with no second finger involved
+	 */
+	private void release(long time, Listener listener) {
+		if (p_dragging) {
+			if (p_x != p_dragX || p_y != p_dragY)
+				drag(time, listener); // the lift moved it
+			p_dragging = false;
+			velocity();
+			float vx = p_velocityX;
+			float vy = p_velocityY;
+			p_event.set(GestureEvent.DRAG_END, p_x, p_y, time);
+			p_event.setVelocity(vx, vy);
+			listener.gesture(p_event);
+			if (vx * vx + vy * vy >= p_minFlingVelocity * p_minFlingVelocity) {
+				p_event.set(GestureEvent.FLING, p_x, p_y, time);
+				p_event.setVelocity(vx, vy);
+				listener.gesture(p_event);
+			}
+			p_tapTime = 0;
+			return;
+		}
+		if (time - p_downTime > p_tapTimeout) {
+			p_tapTime = 0;
+			return;
+		}
+
+		float dx = p_x - p_tapX;
+		float dy = p_y - p_tapY;
+		if (p_tapTime != 0 && p_downTime - p_tapTime <= p_doubleTapTimeout
+				&& dx * dx + dy * dy <= p_doubleTapSlop * p_doubleTapSlop) {
+			p_event.set(GestureEvent.DOUBLE_TAP, p_x, p_y, time);
+			p_tapTime = 0; // a third tap starts over
+		} else {
+			p_event.set(GestureEvent.TAP, p_x, p_y, time);
+			p_tapX = p_x;
+			p_tapY = p_y;
+			p_tapTime = time;
+		}
+		listener.gesture(p_event);
+	}
+
+	private void twoFingers(long time, Listener listener) {
+		float x = (p_x + p_x2) / 2;
+		float y = (p_y + p_y2) / 2;
+
+		float span = span();
+		if (span > 0 && p_span > 0 && span != p_span) {
+			p_event.set(GestureEvent.PINCH, x, y, time);
+			p_event.setScale(span / p_span);
+			listener.gesture(p_event);
+		}
+		p_span = span;
+
+		float angle = angle();
+		float turn = angle - p_angle;
+		if (turn > 180)
+			turn -= 360;
+		else if (turn <= -180)
+			turn += 360;
+		if (turn != 0) {
+			p_event.set(GestureEvent.ROTATE, x, y, time);
+			p_event.setRotation(turn);
+			listener.gesture(p_event);
+		}
+		p_angle = angle;
+	}
+
+	private float span() {
+		float dx = p_x2 - p_x;
+		float dy = p_y2 - p_y;
+		return (float) Math.sqrt(dx * dx + dy * dy);
+	}
+
+	private float angle() {
+		return (float) Math.toDegrees(Math.atan2(p_y2 - p_y, p_x2 - p_x));
+	}
+
+	private void addSample(float x, float y, long time) {
+		p_sampleX[p_nextSample] = x;
+		p_sampleY[p_nextSample] = y;
+		p_sampleTime[p_nextSample] = time;
+		p_nextSample = (p_nextSample + 1) % SAMPLES;
+		if (p_samples < SAMPLES)
+			p_samples++;
+	}
+
+	/**
+	 * Speed over the samples of the last VELOCITY_WINDOW, in pixels per
+	 * second
+	 */
+	private void velocity() {
+		p_velocityX = p_velocityY = 0;
+		if (p_samples < 2)
+			return;
+		int newest = (p_nextSample + SAMPLES - 1) % SAMPLES;
+		int oldest = newest;
+		for (int n = 1; n < p_samples; n++) {
+			int s = (newest + SAMPLES - n) % SAMPLES;
+			if (p_sampleTime[newest] - p_sampleTime[s] > VELOCITY_WINDOW)
+				break;
+			oldest = s;
+		}
+		long nanos = p_sampleTime[newest] - p_sampleTime[oldest];
+		if (nanos < 1000000)
+			return; // too short to tell
+		float seconds = nanos / 1000000000.0f;
+		p_velocityX = (p_sampleX[newest] - p_sampleX[oldest]) / seconds;
+		p_velocityY = (p_sampleY[newest] - p_sampleY[oldest]) / seconds;
+	}
+}
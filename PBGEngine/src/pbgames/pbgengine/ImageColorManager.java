@@ -173,4 +173,10 @@ public class ImageColorManager extends Animation {
 		p_colorFilter = new ColorMatrixColorFilter(cm);
 		return new ColorMatrixColorFilter(cm);
 	}
-}
\ No newline at end of file
+
+	// shares the static p_colorFilter with every other instance
+	@Override
+	public boolean isParallelSafe() {
+		return false;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,70 @@
+/**
+ * InputEvent Class
+ * @author PistolBear
+ *
+ * One pointer's part of a touch event, as queued by InputQueue.  Events are
+ * preallocated and reused, so copy what you need out of one instead of
+ * keeping it.
+ */
+package pbgames.pbgengine;
+
+public class InputEvent {
+	/**
+	 * Actions; a second finger going down or up is reported as DOWN or UP
+	 * for its own pointer id
+	 */
+	public static final int DOWN = 0;
+	public static final int UP = 1;
+	public static final int MOVE = 2;
+	public static final int CANCEL = 3;
+
+	private int p_pointerId, p_action;
+	private float p_x, p_y;
+	private long p_time;
+
+	public InputEvent() {
+		set(0, CANCEL, 0, 0, 0);
+	}
+
+	void set(int pointerId, int action, float x, float y, long time) {
+		p_pointerId = pointerId;
+		p_action = action;
+		p_x = x;
+		p_y = y;
+		p_time = time;
+	}
+
+	void set(InputEvent event) {
+		set(event.p_pointerId, event.p_action, event.p_x, event.p_y,
+				event.p_time);
+	}
+
+	/**
+	 * getPointerId() MotionEvent pointer id, stable while the finger is down
+	 */
+	public int getPointerId() {
+		return p_pointerId;
+	}
+
+	/**
+	 * getAction() DOWN, UP, MOVE or CANCEL
+	 */
+	public int getAction() {
+		return p_action;
+	}
+
+	public float getX() {
+		return p_x;
+	}
+
+	public float getY() {
+		return p_y;
+	}
+
+	/**
+	 * getTime() When the event happened, on the System.nanoTime() clock
+	 */
+	public long getTime() {
+		return p_time;
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * InputQueue Class
+ * @author PistolBear
+ *
+ * Hands touch input from the UI thread to the game thread without locks.
+ * A ring of preallocated InputEvents with one writer (the UI thread, in
+ * offer()) and one reader (the game thread, in poll()): each side only
+ * moves its own index, and the other side sees it through a volatile read,
+ * so nothing blocks and nothing is allocated.  Events come out in the order
+ * they went in.
+ * A quarter of the ring is kept for DOWN, UP and CANCEL: when the game falls
+ * behind, MOVEs are dropped first, so fingers never get stuck down.  Should
+ * even that fill up, the lost events are replaced by a CANCEL queued ahead
+ * of anything newer, and the game starts over from no fingers down.
+ */
+package pbgames.pbgengine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class InputQueue {
+	private InputEvent[] p_events;
+	private int p_mask, p_reserve;
+
+	// next slot to write (UI thread) and to read (game thread)
+	private final AtomicLong p_head = new AtomicLong();
+	private final AtomicLong p_tail = new AtomicLong();
+	private volatile long p_dropped;
+
+	// producer only: a DOWN, UP or CANCEL was dropped, CANCEL goes first
+	private boolean p_lost;
+
+	public InputQueue() {
+		this(256);
+	}
+
+	/**
+	 * InputQueue
+	 * @param capacity : events held, rounded up to a power of two of at
+	 *        least 4
+	 */
+	public InputQueue(int capacity) {
+		int size = 4;
+		while (size < capacity)
+			size <<= 1;
+		p_events = new InputEvent[size];
+		for (int n = 0; n < size; n++)
+			p_events[n] = new InputEvent();
+		p_mask = size - 1;
+		p_reserve = size / 4;
+		p_dropped = 0;
+		p_lost = false;
+	}
+
+	/**
+	 * offer() Queue an event. Producer thread only.
+	 * @return false if the event was dropped: a MOVE once the ring is down
+	 *         to its reserve, anything else once it is full
+	 */
+	public boolean offer(int pointerId, int action, float x, float y, long time) {
+		long head = p_head.get();
+		int free = p_events.length - (int) (head - p_tail.get());
+		if (p_lost) {
+			if (free == 0) {
+				p_dropped++;
+				return false;
+			}
+			put(head++, -1, InputEvent.CANCEL, 0, 0, time);
+			free--;
+			p_lost = false;
+		}
+
+		boolean move = action == InputEvent.MOVE;
+		if (free <= (move ? p_reserve : 0)) {
+			p_dropped++; // only this thread writes it
+			if (!move)
+				p_lost = true;
+			return false;
+		}
+		put(head, pointerId, action, x, y, time);
+		return true;
+	}
+
+	private void put(long head, int pointerId, int action, float x, float y,
+			long time) {
+		p_events[(int) head & p_mask].set(pointerId, action, x, y, time);
+		p_head.lazySet(head + 1); // publishes the event's fields
+	}
+
+	/**
+	 * poll() Copy the oldest event into out and remove it. Consumer thread
+	 * only.
+	 * @return false if the queue was empty
+	 */
+	public boolean poll(InputEvent out) {
+		long tail = p_tail.get();
+		if (tail == p_head.get())
+			return false;
+		out.set(p_events[(int) tail & p_mask]);
+		p_tail.lazySet(tail + 1); // the slot may be written again
+		return true;
+	}
+
+	/**
+	 * clear() Throw away the waiting events, e.g. input during a loading
+	 * screen. Consumer thread only.
+	 */
+	public void clear() {
+		p_tail.lazySet(p_head.get());
+	}
+
+	/**
+	 * size() Events waiting; only a snapshot while the producer runs
+	 */
+	public int size() {
+		return (int) (p_head.get() - p_tail.get());
+	}
+
+	public int getCapacity() {
+		return p_events.length;
+	}
+
+	/**
+	 * getDropped() Events lost to a full queue
+	 */
+	public long getDropped() {
+		return p_dropped;
+	}
+}
@@ -0,0 +1,318 @@
+/**
+ * Layer Class
+ * @author PistolBear
+ *
+ * One depth of the scene: its own sprite group, drawn through the camera
+ * with its own parallax factor.  Layers are drawn in the order they were
+ * added to the engine, and sprites only collide with sprites of the same
+ * layer.  Sprites are added in the layer's world space; a sprite belongs to
+ * one layer at a time.
+ * A static layer (backgrounds, HUD frames) is drawn once into a cache
+ * bitmap and then costs one blit per frame, however many sprites it has.
+ * A layer may also hold a TileMap, drawn under its sprites, and particle
+ * emitters, drawn over them.
+ */
+package pbgames.pbgengine;
+
+import java.util.ArrayList;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.Log;
+
+public class Layer {
+	// larger caches cost more memory than redrawing the sprites saves
+	private static final int MAX_CACHE_SIZE = 2048;
+
+	private String p_name;
+	private EntityGroup p_group;
+	private float p_parallax;
+	private boolean p_visible, p_collisionEnabled;
+	private Broadphase p_broadphase;
+	private TileMap p_tileMap;
+	private ArrayList<ParticleEmitter> p_emitters;
+
+	// static layer cache, in layer space
+	private boolean p_static, p_cacheValid, p_cacheTooLarge;
+	private Bitmap p_cache;
+	private CanvasRenderer p_cacheRenderer;
+	private Rect p_cacheRect;
+	private RectF p_cacheBounds, p_cacheDirty;
+	private Matrix p_cacheMatrix;
+
+	// camera transform of this frame and the last, for dirty rects
+	Matrix p_matrix;
+	float[] p_values, p_drawnValues;
+	boolean p_drawnVisible;
+
+	/**
+	 * Layer
+	 * @param name : for PBGEngine.getLayer(String)
+	 * @param parallax : 1 scrolls with the camera, 0 is fixed on screen
+	 */
+	public Layer(String name, float parallax) {
+		this(name, parallax, new EntityGroup());
+	}
+
+	Layer(String name, float parallax, EntityGroup group) {
+		p_name = name;
+		p_group = group;
+		p_parallax = parallax;
+		p_visible = true;
+		p_collisionEnabled = true;
+		p_broadphase = new UniformGridBroadphase();
+		p_tileMap = null;
+		p_emitters = new ArrayList<ParticleEmitter>();
+		p_matrix = new Matrix();
+		p_values = new float[9];
+		p_drawnValues = new float[9];
+		p_drawnVisible = true;
+		p_static = p_cacheValid = p_cacheTooLarge = false;
+		p_cache = null;
+		p_cacheRenderer = null;
+		p_cacheRect = new Rect();
+		p_cacheBounds = new RectF();
+		p_cacheDirty = new RectF();
+		p_cacheMatrix = new Matrix();
+	}
+
+	public String getName() {
+		return p_name;
+	}
+
+	public EntityGroup getGroup() {
+		return p_group;
+	}
+
+	/**
+	 * add() Put a sprite in this layer; it is drawn, animated and collided
+	 * from the next step on. To move a sprite between layers, remove() it
+	 * from the old one and add it here after that step.
+	 * @throws IllegalStateException if it is still in another layer
+	 */
+	public int add(Sprite sprite) {
+		return p_group.add(sprite);
+	}
+
+	/**
+	 * remove() Deferred to the end of the step, like the engine's group
+	 */
+	public boolean remove(Sprite sprite) {
+		return p_group.remove(sprite);
+	}
+
+	public int size() {
+		return p_group.size();
+	}
+
+	public float getParallax() {
+		return p_parallax;
+	}
+
+	public void setParallax(float parallax) {
+		p_parallax = parallax;
+	}
+
+	/**
+	 * setVisible() A hidden layer is not drawn but still steps
+	 */
+	public void setVisible(boolean value) {
+		p_visible = value;
+	}
+
+	public boolean getVisible() {
+		return p_visible;
+	}
+
+	/**
+	 * setCollisionEnabled() Skip the broadphase for layers whose sprites
+	 * never collide, such as backgrounds and HUDs.
+	 */
+	public void setCollisionEnabled(boolean value) {
+		p_collisionEnabled = value;
+	}
+
+	public boolean getCollisionEnabled() {
+		return p_collisionEnabled;
+	}
+
+	/**
+	 * setBroadphase() Collision broadphase of this layer. Defaults to a
+	 * UniformGridBroadphase; the engine's default layer uses the engine's.
+	 */
+	public void setBroadphase(Broadphase broadphase) {
+		if (broadphase == null)
+			throw new IllegalArgumentException("broadphase is null");
+		p_broadphase = broadphase;
+	}
+
+	public Broadphase getBroadphase() {
+		return p_broadphase;
+	}
+
+	/**
+	 * setTileMap() Tiles drawn under this layer's sprites, in the same world
+	 * space; its solid tiles collide with the layer's collidable sprites.
+	 * null for none.
+	 */
+	public void setTileMap(TileMap map) {
+		p_tileMap = map;
+	}
+
+	public TileMap getTileMap() {
+		return p_tileMap;
+	}
+
+	/**
+	 * addEmitter() Particles updated every step and drawn over this layer's
+	 * sprites, in its world space
+	 */
+	public void addEmitter(ParticleEmitter emitter) {
+		if (!p_emitters.contains(emitter))
+			p_emitters.add(emitter);
+	}
+
+	public boolean removeEmitter(ParticleEmitter emitter) {
+		return p_emitters.remove(emitter);
+	}
+
+	public int getEmitterCount() {
+		return p_emitters.size();
+	}
+
+	public ParticleEmitter getEmitter(int index) {
+		return p_emitters.get(index);
+	}
+
+	/**
+	 * setStatic() Draw the layer from a cache bitmap. The cache is redrawn
+	 * when a sprite is added or removed or changes position, size, frame,
+	 * alpha, bitmap or paint; members are still checked each frame, but
+	 * only one bitmap is drawn. A layer wider or taller than 2048 pixels is
+	 * drawn sprite by sprite instead. The cache is made at zoom 1, so it
+	 * is scaled when the camera zooms.
+	 */
+	public void setStatic(boolean value) {
+		p_static = value;
+		p_cacheValid = false;
+		p_cacheTooLarge = false;
+		if (!value)
+			releaseCache();
+	}
+
+	public boolean getStatic() {
+		return p_static;
+	}
+
+	/**
+	 * invalidate() Redraw the cache of a static layer on the next frame, for
+	 * changes made inside a member's paint or color filter.
+	 */
+	public void invalidate() {
+		p_cacheValid = false;
+	}
+
+	/**
+	 * trackStatic() Compare the members with what the cache holds
+	 * @return true if the cache needs redrawing
+	 */
+	boolean trackStatic() {
+		p_cacheDirty.setEmpty();
+		int size = p_group.size();
+		for (int n = 0; n < size; n++) {
+			Sprite spr = p_group.get(n);
+			if (spr.getActive() && !spr.p_removalPending)
+				spr.trackChanges(p_cacheDirty, null);
+			else
+				spr.forgetDrawn(p_cacheDirty);
+		}
+		if (!p_cacheDirty.isEmpty())
+			p_cacheValid = false;
+		return !p_cacheValid;
+	}
+
+	/**
+	 * drawStatic() Blit the cache, redrawing it first if needed
+	 * @return false if the layer is too large to cache; draw its sprites
+	 */
+	boolean drawStatic(Renderer renderer) {
+		if (!p_cacheValid && !buildCache())
+			return false;
+		if (p_cache == null)
+			return true; // nothing drawn in this layer
+		p_cacheMatrix.setTranslate(p_cacheRect.left, p_cacheRect.top);
+		renderer.drawBitmap(p_cache, null, p_cacheMatrix, null);
+		return true;
+	}
+
+	/**
+	 * Draw the members into a bitmap covering their bounds, as found by the
+	 * last trackStatic()
+	 */
+	private boolean buildCache() {
+		p_cacheBounds.setEmpty();
+		int size = p_group.size();
+		for (int n = 0; n < size; n++) {
+			Sprite spr = p_group.get(n);
+			if (spr.getActive() && !spr.p_removalPending)
+				p_cacheBounds.union(spr.getDrawnBounds());
+		}
+		if (p_cacheBounds.isEmpty()) {
+			releaseCache();
+			p_cacheValid = true;
+			return true;
+		}
+
+		p_cacheBounds.roundOut(p_cacheRect);
+		int width = p_cacheRect.width();
+		int height = p_cacheRect.height();
+		if (width > MAX_CACHE_SIZE || height > MAX_CACHE_SIZE) {
+			if (!p_cacheTooLarge)
+				Log.w("Layer", p_name + " is too large to cache: " + width
+						+ "x" + height);
+			p_cacheTooLarge = true;
+			releaseCache();
+			return false;
+		}
+		p_cacheTooLarge = false;
+
+		if (p_cache == null || p_cache.getWidth() != width
+				|| p_cache.getHeight() != height) {
+			releaseCache();
+			p_cache = Bitmap.createBitmap(width, height, Config.ARGB_8888);
+			p_cacheRenderer = new CanvasRenderer(new Canvas(p_cache));
+		} else {
+			p_cache.eraseColor(Color.TRANSPARENT);
+		}
+
+		p_cacheRenderer.beginFrame();
+		p_cacheMatrix.setTranslate(-p_cacheRect.left, -p_cacheRect.top);
+		p_cacheRenderer.setTransform(p_cacheMatrix);
+		for (int n = 0; n < size; n++) {
+			Sprite spr = p_group.get(n);
+			if (spr.getActive() && !spr.p_removalPending)
+				spr.draw(p_cacheRenderer);
+		}
+		p_cacheRenderer.endFrame();
+		p_cacheValid = true;
+		return true;
+	}
+
+	/**
+	 * releaseCache() Drop the cache bitmap; a static layer makes a new one
+	 * when next drawn. It is not recycle()d: a frame recorded for the render
+	 * thread may still draw it, and the collector frees it after that.
+	 */
+	public void releaseCache() {
+		if (p_cache != null) {
+			p_cache = null;
+			p_cacheRenderer = null;
+		}
+		p_cacheValid = false;
+	}
+}
@@ -13,8 +13,16 @@ public class OrbitBehavior extends Animation {
     
     public OrbitBehavior(int centerx, int centery, int radius, 
             double angle, float velocity) {
-        animating = true;
         this.p_center = new Float2(centerx,centery);
+        reset(centerx, centery, radius, angle, velocity);
+    }
+    
+    // reuse as if newly constructed
+    public void reset(int centerx, int centery, int radius, 
+            double angle, float velocity) {
+        animating = true;
+        this.p_center.x = centerx;
+        this.p_center.y = centery;
         this.p_radius = radius;
         this.p_angle = angle;
         this.p_velocity = velocity;
@@ -31,4 +39,10 @@ public class OrbitBehavior extends Animation {
         return modified;
     }
 
+    // writes its own fields and the sprite's own position
+    @Override
+    public boolean isParallelSafe() {
+        return true;
+    }
+
 }
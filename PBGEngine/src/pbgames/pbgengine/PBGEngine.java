@@ -15,10 +15,11 @@ package pbgames.pbgengine;
  */
 
 import java.math.BigDecimal;
-import java.util.LinkedList;
-import java.util.ListIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
 import android.app.Activity;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.renderscript.*;
 import android.content.pm.ActivityInfo;
 import android.graphics.*;
@@ -32,18 +33,65 @@ import android.view.View.OnTouchListener;
  */
 public abstract class PBGEngine extends Activity implements Runnable,
 		OnTouchListener {
+	/**
+	 * Animation policies for sprites outside the viewport, see
+	 * setAnimationPolicy()
+	 */
+	public static final int ANIMATE_ALWAYS = 0;
+	public static final int ANIMATE_VISIBLE = 1;
+
+	// fingers tracked at once
+	private static final int MAX_POINTERS = 10;
+
 	private SurfaceView p_surfaceView;
-	private Canvas p_canvas;
+	private Renderer p_renderer;
 	private Thread p_thread;
-	private boolean p_running, p_paused, p_debugMode, p_2dMode;
+	private volatile boolean p_running, p_paused;
+	private boolean p_debugMode, p_2dMode;
+	private final Object p_pauseLock = new Object();
+	private FrameScheduler p_frameScheduler;
+	private boolean p_vsyncEnabled;
 	private int p_pauseCount;
 	private Paint p_paintDefaultDraw, p_paintDefaultFont;
 	private Typeface p_typeface;
 	private Point[] p_touchPoints;
+	private int[] p_pointerIds;
 	private int p_numPoints;
+	private InputQueue p_inputQueue;
+	private InputEvent p_inputEvent;
+	private GestureRecognizer p_gestures;
+	private GestureForwarder p_gestureForwarder;
 	private long p_preferredFrameRate, p_sleepTime;
+	private long p_simulationRate, p_stepNanos, p_frameNanos, p_droppedSteps;
+	private int p_frameRate, p_maxCatchUpSteps;
+	private float p_interpolation;
 	private Point p_screenSize;
-	private LinkedList<Sprite> p_group;
+	private EntityGroup p_group;
+	private GroupRemover p_groupRemover;
+	private Camera p_camera;
+	private ArrayList<Layer> p_layers;
+	private Layer p_defaultLayer;
+	private SpriteBatch p_spriteBatch;
+	private boolean p_dirtyRectsEnabled, p_fullRedraw;
+	private RectF p_dirtyBounds, p_dirtyClip;
+	private Rect p_dirtyRect;
+	private RectF p_viewport, p_animationViewport, p_layerViewport;
+	private boolean p_viewportSet, p_cullingEnabled;
+	private int p_animationPolicy, p_animationMargin;
+	private int p_drawnCount, p_culledCount;
+	private int p_drawCalls;
+	private CollisionHandler p_collisionHandler;
+	private ContactBuffer p_contacts;
+	private RectF p_boundsA, p_boundsB;
+	private TextureCache p_textureCache;
+	private AssetLoader p_assetLoader;
+	private AnimationPool p_animationPool;
+	private boolean p_assetsReady;
+	private SpriteStore p_spriteStore;
+	private ParallelAnimator p_parallelAnimator;
+	private boolean p_threadedRendering;
+	private RenderThread p_renderThread;
+	private long p_frameInputTime;
 
 	/**
 	 * PBGEngine default constructor see full constructor description
@@ -65,18 +113,69 @@ public abstract class PBGEngine extends Activity implements Runnable,
 	public PBGEngine(boolean debug, boolean is2dModeOn) {
 		Log.d("PBGEngine", "PBGEngine constructor");
 		p_surfaceView = null;
-		p_canvas = null;
+		p_renderer = null; // chosen in onCreate() unless init() sets one
 		p_thread = null;
 		p_running = false;
 		p_paused = false;
+		p_frameScheduler = null;
+		p_vsyncEnabled = true;
 		p_paintDefaultDraw = null;
 		p_paintDefaultFont = null;
 		p_numPoints = 0;
+		p_touchPoints = new Point[MAX_POINTERS];
+		p_pointerIds = new int[MAX_POINTERS];
+		for (int n = 0; n < MAX_POINTERS; n++)
+			p_touchPoints[n] = new Point(0, 0);
+		p_inputQueue = new InputQueue(512); // room for batched history
+		p_inputEvent = new InputEvent();
+		p_gestures = new GestureRecognizer();
+		p_gestureForwarder = new GestureForwarder();
 		p_typeface = null;
 		p_preferredFrameRate = 40;
 		p_sleepTime = 1000 / p_preferredFrameRate;
+		p_frameNanos = 1000000000L / p_preferredFrameRate;
+		p_simulationRate = p_preferredFrameRate;
+		p_stepNanos = 1000000000L / p_simulationRate;
+		p_maxCatchUpSteps = 5;
+		p_droppedSteps = 0;
+		p_frameRate = 0;
+		p_interpolation = 0.0f;
 		p_pauseCount = 0;
-		p_group = new LinkedList<Sprite>();
+		p_group = new EntityGroup();
+		p_groupRemover = new GroupRemover();
+		p_camera = new Camera();
+		p_layers = new ArrayList<Layer>();
+		p_defaultLayer = new Layer("default", 1.0f, p_group);
+		p_layers.add(p_defaultLayer);
+		p_spriteBatch = null; // created when a group is batched
+		p_dirtyRectsEnabled = false;
+		p_fullRedraw = true;
+		p_dirtyBounds = new RectF();
+		p_dirtyClip = new RectF();
+		p_dirtyRect = new Rect();
+		p_viewport = new RectF();
+		p_animationViewport = new RectF();
+		p_layerViewport = new RectF();
+		p_viewportSet = false;
+		p_cullingEnabled = true;
+		p_animationPolicy = ANIMATE_ALWAYS;
+		p_animationMargin = 64;
+		p_drawnCount = p_culledCount = 0;
+		p_drawCalls = 0;
+		p_collisionHandler = new CollisionHandler();
+		p_contacts = new ContactBuffer();
+		p_boundsA = new RectF();
+		p_boundsB = new RectF();
+		p_textureCache = new TextureCache(this);
+		p_textureCache.setEvictionListener(new TextureEvictor());
+		p_assetLoader = new AssetLoader(p_textureCache);
+		p_animationPool = new AnimationPool();
+		p_assetsReady = false;
+		p_spriteStore = null;
+		p_parallelAnimator = null;
+		p_threadedRendering = false;
+		p_renderThread = null;
+		p_frameInputTime = 0;
 		p_debugMode = debug;
 		p_2dMode = is2dModeOn;
 	}
@@ -94,6 +193,58 @@ public abstract class PBGEngine extends Activity implements Runnable,
 
 	public abstract void collision(Sprite sprite);
 
+	/**
+	 * Optional hooks for asynchronous loading. Textures queued with
+	 * getAssetLoader() in load() decode on worker threads while the game
+	 * thread calls drawLoading() instead of update()/draw(). assetsLoaded()
+	 * runs once on the game thread when everything has finished.
+	 */
+	public void drawLoading(float progress) {
+		int x = p_renderer.getWidth() / 2 - 60;
+		int y = p_renderer.getHeight() / 2;
+		p_renderer.clear(Color.BLACK);
+		p_renderer.drawText("Loading " + toString((int) (progress * 100))
+				+ "%", x, y, p_paintDefaultDraw);
+	}
+
+	public void assetsLoaded() {
+	}
+
+	/**
+	 * collision(ContactBuffer) Called once per frame with every contact found,
+	 * before the per-sprite collision(Sprite) calls. Override to handle dense
+	 * fights where a sprite touches more than one other sprite; the buffer is
+	 * reused, so do not keep a reference to it.
+	 */
+	public void collision(ContactBuffer contacts) {
+	}
+
+	/**
+	 * collision(Sprite, TileMap) Called for each collidable sprite that
+	 * touches a solid tile of its layer's map, after the step's animations
+	 * and before collision(ContactBuffer). map.getHitColumn() and
+	 * getHitRow() name the tile found.
+	 */
+	public void collision(Sprite sprite, TileMap map) {
+	}
+
+	/**
+	 * input() Called on the game thread for each queued touch event, oldest
+	 * first, before the frame's steps; getTouchPoint() already includes the
+	 * event. The event is reused, so do not keep a reference to it.
+	 */
+	public void input(InputEvent event) {
+	}
+
+	/**
+	 * gesture() Called on the game thread for each tap, double tap, drag,
+	 * fling, pinch and rotation, right after the input() call of the event
+	 * that completed it. The event is reused, so do not keep a reference to
+	 * it. See getGestureRecognizer() for the thresholds.
+	 */
+	public void gesture(GestureEvent event) {
+	}
+
 	/**
 	 * Activity.onCreate()
 	 */
@@ -117,14 +268,31 @@ public abstract class PBGEngine extends Activity implements Runnable,
 		p_surfaceView = new SurfaceView(this);
 		setContentView(p_surfaceView);
 
+		// software canvas in 2D mode, OpenGL ES 2 otherwise
+		if (p_renderer == null) {
+			if (p_2dMode)
+				p_renderer = new CanvasRenderer(p_surfaceView.getHolder());
+			else
+				p_renderer = new GLES2Renderer(p_surfaceView.getHolder());
+		}
+
+		// present on a thread of its own; the game thread draws recordings
+		if (p_threadedRendering) {
+			p_renderThread = new RenderThread(p_renderer);
+			p_renderer = p_renderThread.getRecorder();
+			p_renderThread.start();
+		}
+
 		// turn on touch listening
 		p_surfaceView.setOnTouchListener(this);
 
-		// create the points array
-		p_touchPoints = new Point[5];
-		for (int n = 0; n < 5; n++) {
-			p_touchPoints[n] = new Point(0, 0);
-		}
+		// gesture thresholds as the platform's own views use them
+		ViewConfiguration vc = ViewConfiguration.get(this);
+		p_gestures.setTouchSlop(vc.getScaledTouchSlop());
+		p_gestures.setDoubleTapSlop(vc.getScaledDoubleTapSlop());
+		p_gestures.setMinFlingVelocity(vc.getScaledMinimumFlingVelocity());
+		p_gestures.setDoubleTapTimeout(ViewConfiguration.getDoubleTapTimeout());
+		p_gestures.setTapTimeout(ViewConfiguration.getLongPressTimeout());
 
 		// create default Paint object for drawing styles
 		p_paintDefaultDraw = new Paint();
@@ -140,6 +308,10 @@ public abstract class PBGEngine extends Activity implements Runnable,
 		getWindowManager().getDefaultDisplay().getMetrics(dm);
 		p_screenSize = new Point(dm.widthPixels, dm.heightPixels);
 
+		// pace frames to the display; started in onResume()
+		p_frameScheduler = new FrameScheduler(getWindowManager()
+				.getDefaultDisplay().getRefreshRate(), p_preferredFrameRate);
+
 		// Call abstract load method in sub-class!
 		load();
 
@@ -153,210 +325,628 @@ public abstract class PBGEngine extends Activity implements Runnable,
 
 	/**
 	 * Runnable.run() - main loop
+	 * 
+	 * Simulation runs in fixed steps of 1/simulationRate seconds, as many as
+	 * the elapsed time calls for (up to p_maxCatchUpSteps per frame). Each
+	 * rendered frame then draws sprites interpolated between their last two
+	 * steps, see getInterpolation(). With threaded rendering the frame is
+	 * only recorded here and presented by the RenderThread.
 	 */
 	@Override
 	public void run() {
 		Log.d("PBGEngine", "PBGEngine.run start");
 
-		ListIterator<Sprite> iter = null, iterA = null, iterB = null;
-
 		Timer frameTimer = new Timer();
 		int frameCount = 0;
-		int frameRate = 0;
-		long startTime = 0;
-		long timeDiff = 0;
+		long frameStart = 0;
+		long previousTime = System.nanoTime();
+		long accumulator = 0;
 
 		while (p_running) {
-			// Process frame only if not paused
-			if (p_paused)
+			// Process frame only if not paused; block until resumed
+			if (p_paused) {
+				waitForResume();
+				previousTime = System.nanoTime();
 				continue;
+			}
+
+			/*
+			 * Show the loading screen until queued assets have decoded.
+			 */
+			if (!p_assetsReady) {
+				if (p_assetLoader.isComplete()) {
+					p_assetsReady = true;
+					assetsLoaded();
+				} else {
+					// touches on the loading screen are not for the game
+					p_inputQueue.clear();
+					if (beginDrawing()) {
+						drawLoading(p_assetLoader.getProgress());
+						endDrawing();
+					}
+					try {
+						Thread.sleep(p_sleepTime);
+					} catch (InterruptedException e) {
+					}
+					previousTime = System.nanoTime();
+					continue;
+				}
+			}
 
 			// Calculate frame rate
 			frameCount++;
-			startTime = frameTimer.getElapsed();
 			if (frameTimer.stopwatch(1000)) {
-				frameRate = frameCount;
+				p_frameRate = frameCount;
 				frameCount = 0;
+			}
 
-				// reset touch input count
-				p_numPoints = 0;
+			// wait for vsync, falling back to the clock if none arrived
+			long vsyncTime = 0;
+			if (p_vsyncEnabled && p_frameScheduler.isRunning())
+				vsyncTime = p_frameScheduler.awaitFrame();
+			frameStart = vsyncTime > 0 ? vsyncTime : System.nanoTime();
+			if (frameStart > previousTime)
+				accumulator += frameStart - previousTime;
+			previousTime = frameStart;
+
+			// touch input that arrived since the last frame
+			processInput();
+
+			// run the simulation steps that are due
+			int steps = 0;
+			while (accumulator >= p_stepNanos && steps < p_maxCatchUpSteps) {
+				step();
+				accumulator -= p_stepNanos;
+				steps++;
 			}
 
-			// Call abstract update method in sub-class!
-			update();
+			// too far behind to catch up: drop the backlog instead of spiraling
+			if (accumulator >= p_stepNanos) {
+				p_droppedSteps += accumulator / p_stepNanos;
+				accumulator %= p_stepNanos;
+			}
+			p_interpolation = (float) accumulator / p_stepNanos;
 
-			/**
-			 * Test for collisions in the sprite group. Note that this takes
-			 * place outside of rendering.
-			 */
-			iterA = p_group.listIterator();
-			while (iterA.hasNext()) {
-				Sprite sprA = (Sprite) iterA.next();
-				if (!sprA.getActive())
-					continue;
-				if (!sprA.getCollidable())
-					continue;
+			render();
 
-				/*
-				 * Improvement to prevent double collision testing
-				 */
-				if (sprA.getCollided())
-					continue; // skip to next iterator
-
-				// iterate the list again
-				iterB = p_group.listIterator();
-				while (iterB.hasNext()) {
-					Sprite sprB = (Sprite) iterB.next();
-					if (!sprB.getActive())
-						continue;
-					if (!sprB.getCollidable())
-						continue;
-
-					/*
-					 * Improvement to prevent double collision testing
-					 */
-					if (sprB.getCollided())
-						continue; // skip to next iterator
-
-					// do not collide with itself
-					if (sprA == sprB)
-						continue;
-
-					// Ignore sprites with same ID
-					if (sprA.getIdentifier() == sprB.getIdentifier())
-						continue;
-
-					if (collisionCheckRectF(sprA, sprB)) {
-						sprA.setCollided(true);
-						sprA.setColliderSprite(sprB);
-						sprB.setCollided(true);
-						sprB.setColliderSprite(sprA);
-						break; // exit while
-					}
+			// Calculate frame update time and sleep if not paced by vsync
+			long updatePeriod = p_frameNanos - (System.nanoTime() - frameStart);
+			if (vsyncTime == 0 && updatePeriod > 0) {
+				try {
+					Thread.sleep(updatePeriod / 1000000,
+							(int) (updatePeriod % 1000000));
+				} catch (InterruptedException e) {
+					if (p_debugMode)
+						Log.d("while_in_run()",
+								"exception: could not sleep: " + e);
 				}
 			}
 
-			// begin drawing
-			if (beginDrawing()) {
-				if (p_debugMode)
-					Log.d("beginDrawing", "beginDrawing() start");
-
-				// Call abstract draw method in sub-class!
-				draw();
-
-				/**
-				 * Draw the p_group entities with transforms
-				 */
-				iter = p_group.listIterator();
-				while (iter.hasNext()) {
-					Sprite spr = (Sprite) iter.next();
-					if (spr.getActive()) {
-						spr.animate();
-						spr.draw();
-						if (p_debugMode)
-							Log.d("beginDrawing's iterator", "p_group item "
-									+ spr.getName());
-					}
-				}
-				if (p_debugMode)
-					Log.d("still in beginDrawing",
-							"finished iterating through p_group");
-
-				if (p_debugMode) {
-					/**
-					 * Print some engine debug info to device screen.
-					 */
-					int x = p_canvas.getWidth() - 150;
-
-					p_canvas.drawText("PBGENGINE", x, 20, p_paintDefaultFont);
-					p_canvas.drawText(toString(frameRate) + " FPS", x, 40,
-							p_paintDefaultFont);
-					p_canvas.drawText("Pauses: " + toString(p_pauseCount), x,
-							60, p_paintDefaultFont);
-					p_canvas.drawText("Receiving " + toString(getTouchInputs())
-							+ " inputs right now.", x, 80, p_paintDefaultFont);
-				}
+		}// while
+		if (p_renderThread != null)
+			p_renderThread.shutdown(); // releases the real renderer
+		else
+			p_renderer.release();
+		setParallelAnimation(0);
+		Log.d("PBGEngine", "PBGEngine.run end");
+		System.exit(RESULT_OK);
+	}
 
-				// done drawing
-				endDrawing();
+	/**
+	 * Park the game thread until onResume(), instead of spinning.
+	 */
+	private void waitForResume() {
+		synchronized (p_pauseLock) {
+			while (p_paused && p_running) {
+				try {
+					p_pauseLock.wait();
+				} catch (InterruptedException e) {
+					return;
+				}
 			}
+		}
+	}
 
-			/*
-			 * Do some cleanup: collision notification, removing 'dead' sprites
-			 * from the list.
-			 */
-			iter = p_group.listIterator();
-			Sprite spr = null;
-			while (iter.hasNext()) {
-				spr = (Sprite) iter.next();
-
-				// remove from list if flagged
-				if (!spr.getActive()) {
-					iter.remove();
-					continue;
-				}
+	/**
+	 * One fixed simulation step: update(), collision, animations, then
+	 * collision notification and removal of dead sprites, layer by layer.
+	 * Removals asked for anywhere in the step are applied together at its
+	 * end.
+	 */
+	private void step() {
+		// remember where everything was for interpolated drawing
+		p_camera.savePrevious();
+		int layers = p_layers.size();
+		for (int l = 0; l < layers; l++) {
+			EntityGroup group = p_layers.get(l).getGroup();
+			int size = group.size();
+			for (int n = 0; n < size; n++)
+				group.get(n).savePrevious();
+		}
 
-				// is collision enabled for this sprite?
-				if (spr.getCollidable()) {
+		// Call abstract update method in sub-class!
+		update();
 
-					// has this sprite collided with anything?
-					if (spr.getCollided()) {
+		// direct position writes from update(), then the movement pass
+		if (p_spriteStore != null) {
+			p_spriteStore.flushWrites();
+			if (p_spriteStore.getIntegrateVelocity())
+				p_spriteStore.integrate();
+		}
 
-						// is the target a valid object?
-						if (spr.getColliderSprite() != null) {
+		/**
+		 * Test for collisions within each layer. Note that this takes place
+		 * outside of rendering.
+		 */
+		p_contacts.clear();
+		for (int l = 0; l < p_layers.size(); l++) {
+			Layer layer = p_layers.get(l);
+			if (layer.getCollisionEnabled())
+				layer.getBroadphase().findPairs(layer.getGroup(),
+						p_collisionHandler);
+		}
 
-							/*
-							 * External func call: notify game of collision
-							 * (with validated offender)
-							 */
-							collision(spr);
+		// advance animations and behaviors
+		boolean lazy = p_animationPolicy == ANIMATE_VISIBLE;
+		if (lazy)
+			refreshViewport();
+		for (int l = 0; l < p_layers.size(); l++)
+			animateLayer(p_layers.get(l), lazy);
+
+		// sprites against the solid tiles of their layer's map
+		for (int l = 0; l < p_layers.size(); l++)
+			collideTiles(p_layers.get(l));
+
+		// particles, one pass per emitter
+		float seconds = p_stepNanos / 1000000000.0f;
+		for (int l = 0; l < p_layers.size(); l++) {
+			Layer layer = p_layers.get(l);
+			int emitters = layer.getEmitterCount();
+			for (int e = 0; e < emitters; e++)
+				layer.getEmitter(e).update(seconds);
+		}
 
-							// reset offender
-							spr.setColliderSprite(null);
-						}
+		/*
+		 * Do some cleanup: collision notification, removing 'dead' sprites
+		 * from the list.
+		 */
+		if (p_contacts.getCount() > 0)
+			collision(p_contacts);
+
+		for (int l = 0; l < p_layers.size(); l++)
+			cleanupGroup(p_layers.get(l).getGroup());
+
+		// the one place sprites actually leave their groups; the game may
+		// have added or removed layers in its callbacks
+		for (int l = 0; l < p_layers.size(); l++) {
+			Layer layer = p_layers.get(l);
+			EntityGroup group = layer.getGroup();
+			if (layer.getStatic() && group.getPendingCount() > 0)
+				layer.invalidate();
+			group.flush(p_groupRemover);
+		}
+	}
+
+	/**
+	 * Animate the active sprites of a layer. Lazily, sprites outside the
+	 * camera's view of the layer only count the steps they miss.
+	 */
+	private void animateLayer(Layer layer, boolean lazy) {
+		if (lazy) {
+			p_camera.getVisibleArea(layer.getParallax(), 1.0f, p_viewport,
+					p_animationViewport);
+			p_animationViewport.inset(-p_animationMargin, -p_animationMargin);
+		}
+		RectF viewport = lazy ? p_animationViewport : null;
+		EntityGroup group = layer.getGroup();
+		int size = group.size();
+		boolean parallel = p_parallelAnimator != null
+				&& size >= p_parallelAnimator.getChunkSize() * 2;
+		if (parallel)
+			p_parallelAnimator.animate(group, viewport);
+
+		// everything, or what the workers must not touch
+		for (int n = 0; n < size; n++) {
+			Sprite spr = group.get(n);
+			if (spr.getActive() && !spr.p_removalPending
+					&& !(parallel && spr.isParallelSafe()))
+				spr.stepAnimations(viewport, p_boundsA);
+		}
+	}
 
-						// reset collided state
-						spr.setCollided(false);
+	/**
+	 * Report the collidable sprites of a layer that touch a solid tile of
+	 * its map. Each test reads only the cells under the sprite.
+	 */
+	private void collideTiles(Layer layer) {
+		TileMap map = layer.getTileMap();
+		if (map == null || !layer.getCollisionEnabled())
+			return;
+		EntityGroup group = layer.getGroup();
+		int size = group.size();
+		for (int n = 0; n < size; n++) {
+			Sprite spr = group.get(n);
+			if (spr.getActive() && !spr.p_removalPending
+					&& spr.getCollidable()
+					&& map.overlapsSolid(spr.getBoundsScaledF(p_boundsA)))
+				collision(spr, map);
+		}
+	}
 
+	/**
+	 * Flag inactive sprites for removal and pass per-sprite collisions on to
+	 * the game.
+	 */
+	private void cleanupGroup(EntityGroup group) {
+		int size = group.size();
+		Sprite spr = null;
+		for (int n = 0; n < size; n++) {
+			spr = group.get(n);
+
+			// remove from list if flagged
+			if (!spr.getActive()) {
+				group.remove(spr);
+				continue;
+			}
+
+			// is collision enabled for this sprite?
+			if (spr.getCollidable()) {
+
+				// has this sprite collided with anything?
+				if (spr.getCollided()) {
+
+					// is the target a valid object?
+					if (spr.getColliderSprite() != null) {
+
+						/*
+						 * External func call: notify game of collision
+						 * (with validated offender)
+						 */
+						collision(spr);
+
+						// reset offender
+						spr.setColliderSprite(null);
 					}
+
+					// reset collided state
+					spr.setCollided(false);
+
 				}
 			}
+		}
+	}
 
-			// Calculate frame update time and sleep if necessary
-			timeDiff = frameTimer.getElapsed() - startTime;
-			long updatePeriod = p_sleepTime - timeDiff;
-			if (updatePeriod > 0) {
-				try {
-					Thread.sleep(updatePeriod);
-				} catch (InterruptedException e) {
-					if (p_debugMode)
-						Log.d("while_in_run()",
-								"exception: could not sleep L300ish: " + e);
+	/**
+	 * Apply the queued touch events to the touch points, oldest first, and
+	 * pass each to input(). Pointers are tracked by id, so a lifted finger
+	 * drops out and the others keep their order.
+	 */
+	private void processInput() {
+		while (p_inputQueue.poll(p_inputEvent)) {
+			InputEvent event = p_inputEvent;
+			int id = event.getPointerId();
+			int n = 0;
+			while (n < p_numPoints && p_pointerIds[n] != id)
+				n++;
+			switch (event.getAction()) {
+			case InputEvent.DOWN:
+			case InputEvent.MOVE:
+				if (n == p_numPoints) {
+					if (n == MAX_POINTERS)
+						break; // more fingers than we track
+					p_pointerIds[n] = id;
+					p_numPoints++;
+				}
+				p_touchPoints[n].set((int) event.getX(), (int) event.getY());
+				break;
+			case InputEvent.UP:
+				if (n == p_numPoints)
+					break;
+				// keep the remaining points in the order they went down
+				Point up = p_touchPoints[n];
+				for (; n < p_numPoints - 1; n++) {
+					p_pointerIds[n] = p_pointerIds[n + 1];
+					p_touchPoints[n] = p_touchPoints[n + 1];
 				}
+				p_touchPoints[n] = up;
+				p_numPoints--;
+				break;
+			case InputEvent.CANCEL:
+				p_numPoints = 0;
+				break;
 			}
+			if (event.getTime() > p_frameInputTime)
+				p_frameInputTime = event.getTime();
+			input(event);
+			p_gestures.process(event, p_gestureForwarder);
+		}
+	}
 
-		}// while
-		Log.d("PBGEngine", "PBGEngine.run end");
-		System.exit(RESULT_OK);
+	/**
+	 * Draw one frame: the sub-class draw(), the layers and the debug
+	 * overlay.
+	 */
+	private void render() {
+		refreshViewport();
+		p_camera.setSize(p_renderer.getWidth(), p_renderer.getHeight());
+		p_drawnCount = p_culledCount = 0;
+
+		// with dirty rects, find what changed; a still frame is not drawn
+		if (p_dirtyRectsEnabled && !collectDirty())
+			return;
+
+		// begin drawing
+		if (!beginDrawing())
+			return;
+
+		if (p_debugMode)
+			Log.d("beginDrawing", "beginDrawing() start");
+
+		// Call abstract draw method in sub-class!
+		draw();
+
+		/**
+		 * Draw the layers' entities with transforms, bottom layer first
+		 */
+		int layers = p_layers.size();
+		for (int l = 0; l < layers; l++) {
+			Layer layer = p_layers.get(l);
+			if (layer.getVisible())
+				drawLayer(layer);
+		}
+		p_drawCalls = p_renderer.getDrawCalls();
+		if (p_debugMode)
+			Log.d("still in beginDrawing", "finished iterating through layers");
+
+		if (p_debugMode) {
+			/**
+			 * Print some engine debug info to device screen.
+			 */
+			int x = p_renderer.getWidth() - 150;
+
+			p_renderer.drawText("PBGENGINE", x, 20, p_paintDefaultFont);
+			p_renderer.drawText(toString(p_frameRate) + " FPS", x, 40,
+					p_paintDefaultFont);
+			p_renderer.drawText("Pauses: " + toString(p_pauseCount), x, 60,
+					p_paintDefaultFont);
+			p_renderer.drawText("Receiving " + toString(getTouchInputs())
+					+ " inputs right now.", x, 80, p_paintDefaultFont);
+			p_renderer.drawText("Dropped steps: " + p_droppedSteps, x, 100,
+					p_paintDefaultFont);
+			p_renderer.drawText("Missed frames: " + getMissedFrames(), x, 120,
+					p_paintDefaultFont);
+			p_renderer.drawText("Draw calls: " + p_drawCalls, x, 140,
+					p_paintDefaultFont);
+			p_renderer.drawText("Drawn: " + p_drawnCount + " culled: "
+					+ p_culledCount, x, 160, p_paintDefaultFont);
+			if (p_dirtyRectsEnabled)
+				p_renderer.drawText("Dirty: " + p_dirtyRect.width() + "x"
+						+ p_dirtyRect.height(), x, 180, p_paintDefaultFont);
+			if (p_renderThread != null)
+				p_renderer.drawText("Latency: "
+						+ p_renderThread.getLatency() / 1000000 + " ms", x,
+						180, p_paintDefaultFont);
+		}
+
+		// done drawing
+		endDrawing();
+		p_dirtyBounds.setEmpty();
+		p_fullRedraw = false;
 	}
 
 	/**
-	 * BEGIN RENDERING Verify that the surface is valid and then lock the
-	 * canvas.
+	 * Grow p_dirtyBounds by every sprite that changed, appeared or went away
+	 * since the last frame and turn it into p_dirtyRect.
+	 * @return false if nothing needs redrawing
+	 */
+	private boolean collectDirty() {
+		int layers = p_layers.size();
+		for (int l = 0; l < layers; l++) {
+			Layer layer = p_layers.get(l);
+			Matrix transform = layerTransform(layer);
+
+			// a scrolled or zoomed layer moves every pixel it has
+			layer.p_matrix.getValues(layer.p_values);
+			if (!Arrays.equals(layer.p_values, layer.p_drawnValues)) {
+				System.arraycopy(layer.p_values, 0, layer.p_drawnValues, 0, 9);
+				p_fullRedraw = true;
+			}
+
+			EntityGroup group = layer.getGroup();
+			boolean visible = layer.getVisible();
+			boolean shown = visible != layer.p_drawnVisible;
+			layer.p_drawnVisible = visible;
+
+			// changed tiles, a cache redraw or a shown or hidden cache or
+			// map repaint it all
+			TileMap map = layer.getTileMap();
+			if (map != null && (shown || visible && map.getChanged()))
+				p_fullRedraw = true;
+
+			int emitters = layer.getEmitterCount();
+			for (int e = 0; e < emitters; e++) {
+				if (visible)
+					layer.getEmitter(e).trackChanges(p_dirtyBounds, transform);
+				else
+					layer.getEmitter(e).forgetDrawn(p_dirtyBounds);
+			}
+			if (layer.getStatic()) {
+				if (layer.trackStatic() || shown)
+					p_fullRedraw = true;
+				continue;
+			}
+			int size = group.size();
+			for (int n = 0; n < size; n++) {
+				Sprite spr = group.get(n);
+				if (visible && spr.getActive() && !spr.p_removalPending)
+					spr.trackChanges(p_dirtyBounds, transform);
+				else
+					spr.forgetDrawn(p_dirtyBounds);
+			}
+		}
+
+		int width = p_renderer.getWidth();
+		int height = p_renderer.getHeight();
+		if (p_debugMode && width > 0)
+			p_dirtyBounds.union(width - 150, 0, width, 190);
+
+		if (p_fullRedraw || width <= 0 || height <= 0)
+			return true;
+		if (p_dirtyBounds.isEmpty())
+			return false;
+
+		// a pixel of slack for filtering at the edges
+		p_dirtyBounds.roundOut(p_dirtyRect);
+		p_dirtyRect.inset(-1, -1);
+		return p_dirtyRect.intersect(0, 0, width, height);
+	}
+
+	/**
+	 * Draw a layer's group through the camera: one transform for the whole
+	 * layer, culled against the part of the layer that is on screen. The
+	 * tile map goes first and particles last; a static layer is one blit of
+	 * its cache.
+	 */
+	private void drawLayer(Layer layer) {
+		p_renderer.setTransform(layerTransform(layer));
+		p_camera.getVisibleArea(layer.getParallax(), p_interpolation,
+				p_viewport, p_layerViewport);
+		if (layer.getTileMap() != null)
+			layer.getTileMap().draw(p_renderer, p_layerViewport);
+
+		boolean cached = false;
+		if (layer.getStatic()) {
+			if (!p_dirtyRectsEnabled)
+				layer.trackStatic();
+			cached = layer.drawStatic(p_renderer);
+		}
+		if (!cached) {
+			// static sprites track layer space bounds; such frames are full
+			drawGroup(layer.getGroup(), !layer.getStatic());
+		}
+
+		int emitters = layer.getEmitterCount();
+		for (int e = 0; e < emitters; e++)
+			layer.getEmitter(e).draw(p_renderer, p_layerViewport,
+					p_interpolation);
+		p_renderer.setTransform(null);
+	}
+
+	/**
+	 * The camera transform of a layer this frame, null when it is the
+	 * identity
+	 */
+	private Matrix layerTransform(Layer layer) {
+		p_camera.getMatrix(layer.getParallax(), p_interpolation,
+				layer.p_matrix);
+		return layer.p_matrix.isIdentity() ? null : layer.p_matrix;
+	}
+
+	/**
+	 * Draw the active sprites of a group, one by one or through the sprite
+	 * batch.
+	 * @param clip : skip sprites outside the dirty rect
+	 */
+	private void drawGroup(EntityGroup group, boolean clip) {
+		int size = group.size();
+		if (group.getBatched()) {
+			if (p_spriteBatch == null)
+				p_spriteBatch = new SpriteBatch();
+			p_spriteBatch.resetStats();
+			p_spriteBatch.begin(p_renderer);
+			for (int n = 0; n < size; n++) {
+				Sprite spr = group.get(n);
+				if (spr.getActive() && !spr.p_removalPending
+						&& (!clip || inDirtyRect(spr)) && !culled(spr))
+					p_spriteBatch.draw(spr);
+			}
+			p_spriteBatch.end();
+			return;
+		}
+
+		for (int n = 0; n < size; n++) {
+			Sprite spr = group.get(n);
+			if (spr.getActive() && !spr.p_removalPending
+					&& (!clip || inDirtyRect(spr)) && !culled(spr)) {
+				spr.draw();
+				if (p_debugMode)
+					Log.d("beginDrawing's iterator", "p_group item "
+							+ spr.getName());
+			}
+		}
+	}
+
+	/**
+	 * Culling stage: sprites whose drawn bounds miss the viewport, as seen
+	 * in the layer being drawn, are counted and skipped before any
+	 * back-buffer or batch work is done for them.
+	 */
+	private boolean culled(Sprite spr) {
+		if (p_cullingEnabled && !spr.isVisible(p_layerViewport)) {
+			p_culledCount++;
+			return true;
+		}
+		p_drawnCount++;
+		return false;
+	}
+
+	/**
+	 * The screen, unless setViewport() chose another area
+	 */
+	private void refreshViewport() {
+		if (p_viewportSet)
+			return;
+		if (p_renderer != null && p_renderer.getWidth() > 0)
+			p_viewport.set(0, 0, p_renderer.getWidth(),
+					p_renderer.getHeight());
+		else if (p_screenSize != null)
+			p_viewport.set(0, 0, p_screenSize.x, p_screenSize.y);
+	}
+
+	/**
+	 * With dirty rects on, only sprites overlapping the redrawn region are
+	 * drawn; the canvas is clipped to it anyway.
+	 */
+	private boolean inDirtyRect(Sprite spr) {
+		if (!p_dirtyRectsEnabled)
+			return true;
+		return RectF.intersects(spr.getDrawnBounds(), p_dirtyClip);
+	}
+
+	/**
+	 * BEGIN RENDERING Let the renderer verify that the surface is valid and
+	 * start a frame.
 	 */
 	private boolean beginDrawing() {
-		if (!p_surfaceView.getHolder().getSurface().isValid()) {
+		if (p_renderThread != null)
+			p_renderer = p_renderThread.getRecorder();
+		if (!p_dirtyRectsEnabled)
+			return p_renderer.beginFrame();
+
+		boolean began;
+		if (p_fullRedraw || p_renderer.getWidth() <= 0) {
+			began = p_renderer.beginFrame();
+			p_dirtyRect.set(0, 0, p_renderer.getWidth(),
+					p_renderer.getHeight());
+		} else {
+			began = p_renderer.beginFrame(p_dirtyRect);
+		}
+		if (!began) {
+			// the surface may come back without our pixels
+			p_fullRedraw = true;
 			return false;
 		}
-		p_canvas = p_surfaceView.getHolder().lockCanvas();
+		p_dirtyClip.set(p_dirtyRect);
 		return true;
 	}
 
 	/**
-	 * END RENDERING Unlock the canvas to free it for future use.
+	 * END RENDERING Present the frame, or hand it to the render thread.
 	 */
 	private void endDrawing() {
-		p_surfaceView.getHolder().unlockCanvasAndPost(p_canvas);
+		p_renderer.endFrame();
+		if (p_renderThread != null)
+			p_renderThread.publish(p_frameInputTime);
 	}
 
 	/**
@@ -366,7 +956,18 @@ public abstract class PBGEngine extends Activity implements Runnable,
 	public void onResume() {
 		Log.d("PBGEngine", "PBGEngine.onResume");
 		super.onResume();
-		p_paused = false;
+		p_fullRedraw = true;
+
+		// fingers down at the pause never sent their UP; the game thread
+		// clears its touch points and gesture state on this CANCEL
+		p_inputQueue.offer(-1, InputEvent.CANCEL, 0, 0, System.nanoTime());
+
+		synchronized (p_pauseLock) {
+			p_paused = false;
+			p_pauseLock.notifyAll();
+		}
+		if (p_vsyncEnabled && p_frameScheduler != null)
+			p_frameScheduler.start();
 	}
 
 	/**
@@ -378,6 +979,18 @@ public abstract class PBGEngine extends Activity implements Runnable,
 		super.onPause();
 		p_paused = true;
 		p_pauseCount++;
+		if (p_frameScheduler != null)
+			p_frameScheduler.stop();
+	}
+
+	/**
+	 * Activity.onDestroy event method
+	 */
+	@Override
+	public void onDestroy() {
+		Log.d("PBGEngine", "PBGEngine.onDestroy");
+		p_assetLoader.shutdown();
+		super.onDestroy();
 	}
 
 	/**
@@ -386,15 +999,42 @@ public abstract class PBGEngine extends Activity implements Runnable,
 	 */
 	@Override
 	public boolean onTouch(View v, MotionEvent event) {
-		// count the touch inputs
-		p_numPoints = event.getPointerCount();
-		if (p_numPoints > 5)
-			p_numPoints = 5;
-
-		// store the input values
-		for (int n = 0; n < p_numPoints; n++) {
-			p_touchPoints[n].x = (int) event.getX(n);
-			p_touchPoints[n].y = (int) event.getY(n);
+		// event times are uptime milliseconds; queue System.nanoTime() ones
+		long clock = System.nanoTime() - SystemClock.uptimeMillis() * 1000000;
+		long time = clock + event.getEventTime() * 1000000;
+
+		// queue it for the game thread, one event per pointer
+		int index = event.getActionIndex();
+		switch (event.getActionMasked()) {
+		case MotionEvent.ACTION_DOWN:
+		case MotionEvent.ACTION_POINTER_DOWN:
+			p_inputQueue.offer(event.getPointerId(index), InputEvent.DOWN,
+					event.getX(index), event.getY(index), time);
+			break;
+		case MotionEvent.ACTION_UP:
+		case MotionEvent.ACTION_POINTER_UP:
+			p_inputQueue.offer(event.getPointerId(index), InputEvent.UP,
+					event.getX(index), event.getY(index), time);
+			break;
+		case MotionEvent.ACTION_MOVE:
+			// samples batched since the last event come first, oldest first
+			int pointers = event.getPointerCount();
+			int history = event.getHistorySize();
+			for (int h = 0; h < history; h++) {
+				long sampleTime = clock + event.getHistoricalEventTime(h)
+						* 1000000;
+				for (int n = 0; n < pointers; n++)
+					p_inputQueue.offer(event.getPointerId(n), InputEvent.MOVE,
+							event.getHistoricalX(n, h),
+							event.getHistoricalY(n, h), sampleTime);
+			}
+			for (int n = 0; n < pointers; n++)
+				p_inputQueue.offer(event.getPointerId(n), InputEvent.MOVE,
+						event.getX(n), event.getY(n), time);
+			break;
+		case MotionEvent.ACTION_CANCEL:
+			p_inputQueue.offer(-1, InputEvent.CANCEL, 0, 0, time);
+			break;
 		}
 		return true;
 	}
@@ -411,7 +1051,7 @@ public abstract class PBGEngine extends Activity implements Runnable,
 	 * Drawing helpers
 	 */
 	public void drawTextDefaultSize(String text, int x, int y) {
-		p_canvas.drawText(text, x, y, p_paintDefaultFont);
+		p_renderer.drawText(text, x, y, p_paintDefaultFont);
 	}
 
 	/**
@@ -433,25 +1073,309 @@ public abstract class PBGEngine extends Activity implements Runnable,
 		return p_surfaceView;
 	}
 
+	/**
+	 * getCanvas() Canvas for this frame from the renderer; null with a
+	 * RecordingRenderer. With OpenGL it is an overlay above the sprites.
+	 */
 	public Canvas getCanvas() {
-		return p_canvas;
+		return p_renderer.getCanvas();
+	}
+
+	/**
+	 * setCullingEnabled() Skip drawing sprites that fall outside the viewport
+	 * (default on). The test uses each sprite's transformed bounds.
+	 */
+	public void setCullingEnabled(boolean value) {
+		p_cullingEnabled = value;
+	}
+
+	public boolean getCullingEnabled() {
+		return p_cullingEnabled;
+	}
+
+	/**
+	 * setViewport() Area sprites are culled against, in screen pixels; the
+	 * camera maps it into each layer. Pass null to go back to the whole
+	 * screen.
+	 */
+	public void setViewport(RectF viewport) {
+		p_viewportSet = viewport != null;
+		if (viewport != null)
+			p_viewport.set(viewport);
+	}
+
+	public RectF getViewport() {
+		refreshViewport();
+		return p_viewport;
+	}
+
+	/**
+	 * setAnimationPolicy() ANIMATE_ALWAYS (default) ticks every active
+	 * sprite each step. ANIMATE_VISIBLE pauses the Animation.isCosmetic()
+	 * ones (frame, pulse, spin, fade) of sprites outside the viewport, plus
+	 * a margin (see setAnimationMargin()), and catches them up over the
+	 * next few steps when the sprite comes back. Behaviors that move a
+	 * sprite keep running off screen.
+	 */
+	public void setAnimationPolicy(int policy) {
+		p_animationPolicy = policy;
 	}
 
+	public int getAnimationPolicy() {
+		return p_animationPolicy;
+	}
+
+	/**
+	 * setAnimationMargin() Pixels around the viewport within which
+	 * ANIMATE_VISIBLE still ticks sprites
+	 */
+	public void setAnimationMargin(int pixels) {
+		p_animationMargin = Math.max(0, pixels);
+	}
+
+	/**
+	 * setParallelAnimation() Run the animation phase of each step on this
+	 * many threads, the game thread included; 0 or 1 turns it off (the
+	 * default). Runtime.availableProcessors() is a good value. Only sprites
+	 * whose animations are all Animation.isParallelSafe() leave the game
+	 * thread, and only in groups of at least two chunks; see
+	 * ParallelAnimator. Call from init() or the game thread.
+	 */
+	public void setParallelAnimation(int threads) {
+		if (p_parallelAnimator != null) {
+			p_parallelAnimator.shutdown();
+			p_parallelAnimator = null;
+		}
+		if (threads > 1)
+			p_parallelAnimator = new ParallelAnimator(threads - 1);
+	}
+
+	/**
+	 * getParallelAnimator() null unless parallel animation is on; use it to
+	 * tune the chunk size
+	 */
+	public ParallelAnimator getParallelAnimator() {
+		return p_parallelAnimator;
+	}
+
+	/**
+	 * getDrawnCount(), getCulledCount() Sprites drawn and culled last frame
+	 */
+	public int getDrawnCount() {
+		return p_drawnCount;
+	}
+
+	public int getCulledCount() {
+		return p_culledCount;
+	}
+
+	/**
+	 * setDirtyRectsEnabled() For mostly still screens: each frame only the
+	 * area of sprites that moved, changed, appeared or went away is locked
+	 * and redrawn, and a frame where nothing changed is not drawn at all.
+	 * draw() still runs for redrawn frames but is clipped to that area, so
+	 * anything it paints that changes by itself needs invalidate(). Only the
+	 * Canvas renderer redraws part of the screen; OpenGL redraws it all, and
+	 * so does threaded rendering.
+	 */
+	public void setDirtyRectsEnabled(boolean value) {
+		if (value && p_threadedRendering)
+			return; // a dropped partial frame would leave stale pixels
+		p_dirtyRectsEnabled = value;
+		p_fullRedraw = true;
+	}
+
+	public boolean getDirtyRectsEnabled() {
+		return p_dirtyRectsEnabled;
+	}
+
+	/**
+	 * invalidate() Redraw the whole screen next frame. Call from the game
+	 * thread (update(), draw(), collision()).
+	 */
+	public void invalidate() {
+		p_fullRedraw = true;
+	}
+
+	/**
+	 * invalidate(Rect) Redraw part of the screen next frame
+	 */
+	public void invalidate(Rect area) {
+		p_dirtyBounds.union(area.left, area.top, area.right, area.bottom);
+	}
+
+	/**
+	 * setRenderer() Replace the backend picked from 2D mode, e.g. with a
+	 * RecordingRenderer for tests. Call from init().
+	 */
+	public void setRenderer(Renderer renderer) {
+		p_renderer = renderer;
+	}
+
+	/**
+	 * getRenderer() The backend frames are presented on, also with threaded
+	 * rendering
+	 */
+	public Renderer getRenderer() {
+		if (p_renderThread != null)
+			return p_renderThread.getRenderer();
+		return p_renderer;
+	}
+
+	/**
+	 * getFrameRenderer() Where the frame being drawn goes: the backend, or
+	 * with threaded rendering the RenderThread's recorder. Game thread only.
+	 */
+	Renderer getFrameRenderer() {
+		return p_renderer;
+	}
+
+	/**
+	 * setThreadedRendering() Present frames on a RenderThread while the game
+	 * thread runs the next steps; the game thread only records each frame.
+	 * getCanvas() is null in draw() then, dirty rects are off, and
+	 * getRenderThread() reports frame and touch-to-present latency, and
+	 * sprite back buffers are not used. Call from init().
+	 */
+	public void setThreadedRendering(boolean value) {
+		p_threadedRendering = value;
+		if (value)
+			p_dirtyRectsEnabled = false;
+	}
+
+	public boolean getThreadedRendering() {
+		return p_threadedRendering;
+	}
+
+	/**
+	 * getRenderThread() null unless threaded rendering is on and the
+	 * activity has been created
+	 */
+	public RenderThread getRenderThread() {
+		return p_renderThread;
+	}
+
+	/**
+	 * setFrameRate() Target rendering rate (default 40). Also sets the
+	 * simulation rate to match; call setSimulationRate() afterwards to
+	 * decouple them. With vsync pacing the frame rate is rounded up to a
+	 * whole divisor of the display's refresh rate, see
+	 * FrameScheduler.setTargetFrameRate(); the simulation rate is not.
+	 */
 	public void setFrameRate(int rate) {
+		if (rate < 1)
+			rate = 1;
 		p_preferredFrameRate = rate;
 		p_sleepTime = 1000 / p_preferredFrameRate;
+		p_frameNanos = 1000000000L / p_preferredFrameRate;
+		if (p_frameScheduler != null)
+			p_frameScheduler.setTargetFrameRate(rate);
+		setSimulationRate(rate);
+	}
+
+	/**
+	 * setVsyncEnabled() Pace frames with Choreographer vsync callbacks
+	 * (default) or with Thread.sleep(). Call from init().
+	 */
+	public void setVsyncEnabled(boolean value) {
+		p_vsyncEnabled = value;
+	}
+
+	public boolean getVsyncEnabled() {
+		return p_vsyncEnabled;
+	}
+
+	/**
+	 * getMissedFrames() Frames the game thread was not ready for in time,
+	 * plus vsyncs the UI thread missed. Only counted while vsync is enabled.
+	 */
+	public long getMissedFrames() {
+		if (p_frameScheduler == null)
+			return 0;
+		return p_frameScheduler.getMissedFrames();
+	}
+
+	/**
+	 * setSimulationRate() Fixed steps per second for update(), animations and
+	 * collision, independent of how fast frames are drawn.
+	 */
+	public void setSimulationRate(int hz) {
+		if (hz < 1)
+			hz = 1;
+		p_simulationRate = hz;
+		p_stepNanos = 1000000000L / hz;
+	}
+
+	public long getSimulationRate() {
+		return p_simulationRate;
+	}
+
+	/**
+	 * setMaxCatchUpSteps() Most simulation steps run before a frame is drawn.
+	 * Time beyond that is dropped, so a slow device plays slower instead of
+	 * stalling.
+	 */
+	public void setMaxCatchUpSteps(int steps) {
+		p_maxCatchUpSteps = Math.max(1, steps);
 	}
 
+	/**
+	 * getInterpolation() 0.0 to 1.0, how far the current frame lies between
+	 * the last simulation step and the next one. Sprites use it to draw
+	 * between their previous and current transform.
+	 */
+	public float getInterpolation() {
+		return p_interpolation;
+	}
+
+	/**
+	 * getDroppedSteps() Simulation steps skipped because the device could not
+	 * keep up
+	 */
+	public long getDroppedSteps() {
+		return p_droppedSteps;
+	}
+
+	/**
+	 * getTouchInputs() Fingers down as of the input processed this frame
+	 */
 	public int getTouchInputs() {
 		return p_numPoints;
 	}
 
+	/**
+	 * getTouchPoint() Position of a finger that is down, 0 being the one down
+	 * longest. Game thread only.
+	 */
 	public Point getTouchPoint(int index) {
-		if (index > p_numPoints)
-			index = p_numPoints;
+		if (index >= p_numPoints)
+			index = Math.max(p_numPoints - 1, 0);
 		return p_touchPoints[index];
 	}
 
+	/**
+	 * getTouchPointerId() MotionEvent pointer id of getTouchPoint(index)
+	 */
+	public int getTouchPointerId(int index) {
+		return p_pointerIds[index];
+	}
+
+	/**
+	 * getGestureRecognizer() Its thresholds start out as the platform's;
+	 * change them from init() or the game thread.
+	 */
+	public GestureRecognizer getGestureRecognizer() {
+		return p_gestures;
+	}
+
+	/**
+	 * getInputQueue() Touch events on their way from the UI thread to the
+	 * game thread; getDropped() counts those lost to a full queue.
+	 */
+	public InputQueue getInputQueue() {
+		return p_inputQueue;
+	}
+
 	public void setDefaultDrawColor(int color) {
 		p_paintDefaultDraw.setColor(color);
 	}
@@ -578,48 +1502,104 @@ public abstract class PBGEngine extends Activity implements Runnable,
 
 	public void addToGroup(Sprite sprite) {
 		p_group.add(sprite);
+		if (p_spriteStore != null)
+			p_spriteStore.add(sprite);
 	}
 
+	/**
+	 * The removeFromGroup() methods are deferred: the sprite stops being
+	 * drawn, animated and collided at once, and leaves the group at the end
+	 * of the current simulation step.
+	 */
 	public boolean removeFromGroup(Sprite sprite) {
-		if (p_group.remove(sprite))
-			return true;
-		return false;
+		return p_group.remove(sprite);
 	}
 
+	/**
+	 * removeFromGroup(String) Removes the first sprite with this name.
+	 */
 	public boolean removeFromGroup(String s) {
-		int size = p_group.size();
-		for (int n = 0; n <= size; n++) {
-			if (p_group.get(n).getName() == s)
-				p_group.remove(n);
-			return true;
-		}
-		return false;
+		return p_group.remove(s);
 	}
 
 	public void removeFromGroup(int index) {
-		p_group.remove(index);
+		p_group.remove(p_group.get(index));
 	}
 
-	public boolean removeAllFromGroup(Sprite sprite) {
-		for (int n = 0; n < p_group.size(); n++) {
-			if (p_group.get(n).equals(sprite))
-				removeFromGroup(sprite);
-		}
+	/**
+	 * Undo what addToGroup() set up for a sprite leaving the group.
+	 */
+	private void releaseSprite(Sprite sprite) {
+		if (p_spriteStore != null)
+			p_spriteStore.remove(sprite);
+	}
 
-		return true;
+	public boolean removeAllFromGroup(Sprite sprite) {
+		return p_group.remove(sprite);
 	}
 
 	public boolean removeAllFromGroup(String s) {
-		for (int n = 0; n < p_group.size(); n++) {
-			if (p_group.get(n).getName() == s)
-				removeFromGroup(p_group.get(n));
+		return p_group.removeAll(s) > 0;
+	}
+
+	/**
+	 * enableSpriteStore() Keep sprite state in a data-oriented SpriteStore,
+	 * which also becomes the collision broadphase. Best called from init(),
+	 * sprites already in the group are moved over.
+	 */
+	public SpriteStore enableSpriteStore(int capacity) {
+		if (p_spriteStore == null) {
+			p_spriteStore = new SpriteStore(capacity);
+			int size = p_group.size();
+			for (int n = 0; n < size; n++)
+				p_spriteStore.add(p_group.get(n));
 		}
+		setBroadphase(p_spriteStore);
+		return p_spriteStore;
+	}
 
-		return true;
+	/**
+	 * getSpriteStore() null unless enableSpriteStore() was called
+	 */
+	public SpriteStore getSpriteStore() {
+		return p_spriteStore;
+	}
+
+	/**
+	 * getDrawCalls() Renderer draw calls for the game's draw() and the sprite
+	 * group last frame, to compare batched and unbatched drawing
+	 */
+	public int getDrawCalls() {
+		return p_drawCalls;
+	}
+
+	/**
+	 * getAnimationPool() Pooled stock animations; they return here when they
+	 * finish or their sprite is recycled.
+	 */
+	public AnimationPool getAnimationPool() {
+		return p_animationPool;
+	}
+
+	/**
+	 * getTextureCache() Shared, reference counted textures keyed by asset
+	 * path. Prefer this over a new Texture per sprite.
+	 */
+	public TextureCache getTextureCache() {
+		return p_textureCache;
 	}
 
 	/**
-	 * getGroupSize() Useful for obtaining the LinkedList<Sprite> group size
+	 * getAssetLoader() Queue texture decodes from load(); the game thread
+	 * waits on the loading screen until they finish.
+	 */
+	public AssetLoader getAssetLoader() {
+		return p_assetLoader;
+	}
+
+	/**
+	 * getGroupSize() Useful for obtaining the sprite group size; sprites
+	 * waiting for removal still count until the end of the step.
 	 * 
 	 * @return int
 	 */
@@ -627,6 +1607,90 @@ public abstract class PBGEngine extends Activity implements Runnable,
 		return p_group.size();
 	}
 
+	/**
+	 * getGroup() The sprite group, for indexed iteration, handle and name
+	 * lookups, or to turn off order preservation.
+	 */
+	public EntityGroup getGroup() {
+		return p_group;
+	}
+
+	/**
+	 * Camera and layers
+	 */
+
+	/**
+	 * getCamera() World-to-screen view. At its default position and zoom
+	 * world and screen coordinates are the same.
+	 */
+	public Camera getCamera() {
+		return p_camera;
+	}
+
+	/**
+	 * addLayer() A new layer drawn over the existing ones
+	 * @param parallax : 1 scrolls with the camera, 0 is fixed on screen
+	 */
+	public Layer addLayer(String name, float parallax) {
+		return addLayer(p_layers.size(), name, parallax);
+	}
+
+	/**
+	 * addLayer(int, String, float) A new layer at a position in the drawing
+	 * order, 0 being drawn first (at the back)
+	 */
+	public Layer addLayer(int index, String name, float parallax) {
+		Layer layer = new Layer(name, parallax);
+		p_layers.add(index, layer);
+		p_fullRedraw = true;
+		return layer;
+	}
+
+	/**
+	 * removeLayer() Drop a layer and its sprites. The default layer, which
+	 * holds the engine's group, cannot be removed.
+	 */
+	public boolean removeLayer(Layer layer) {
+		if (layer == p_defaultLayer || !p_layers.contains(layer))
+			return false;
+		EntityGroup group = layer.getGroup();
+		int size = group.size();
+		for (int n = 0; n < size; n++)
+			group.remove(group.get(n));
+		group.flush(p_groupRemover);
+		p_layers.remove(layer);
+		p_fullRedraw = true;
+		return true;
+	}
+
+	public Layer getLayer(int index) {
+		return p_layers.get(index);
+	}
+
+	/**
+	 * getLayer(String) First layer with this name, or null
+	 */
+	public Layer getLayer(String name) {
+		int layers = p_layers.size();
+		for (int l = 0; l < layers; l++) {
+			Layer layer = p_layers.get(l);
+			if (layer.getName().equals(name))
+				return layer;
+		}
+		return null;
+	}
+
+	public int getLayerCount() {
+		return p_layers.size();
+	}
+
+	/**
+	 * getDefaultLayer() The layer of addToGroup() and getGroup(), parallax 1
+	 */
+	public Layer getDefaultLayer() {
+		return p_defaultLayer;
+	}
+
 	// This function is applied to classes as they have need of them; not
 	// everything will report while in debug mode
 	// unless it has been shown a problem in the past.
@@ -639,9 +1703,114 @@ public abstract class PBGEngine extends Activity implements Runnable,
 	 */
 
 	public boolean collisionCheckRectF(Sprite A, Sprite B) {
-		boolean test = RectF.intersects(A.getBoundsScaledF(),
-				B.getBoundsScaledF());
+		boolean test = RectF.intersects(A.getBoundsScaledF(p_boundsA),
+				B.getBoundsScaledF(p_boundsB));
 		return test;
 	}
 
+	/**
+	 * setBroadphase() Swap the collision broadphase of the default layer.
+	 * Defaults to a UniformGridBroadphase.
+	 */
+	public void setBroadphase(Broadphase broadphase) {
+		if (broadphase == null)
+			broadphase = new UniformGridBroadphase();
+		p_defaultLayer.setBroadphase(broadphase);
+	}
+
+	public Broadphase getBroadphase() {
+		return p_defaultLayer.getBroadphase();
+	}
+
+	/**
+	 * setBruteForceCollision() Fall back to testing every pair of sprites,
+	 * useful for checking a broadphase against the original results.
+	 */
+	public void setBruteForceCollision(boolean value) {
+		if (value)
+			setBroadphase(new BruteForceBroadphase());
+		else if (getBroadphase() instanceof BruteForceBroadphase)
+			setBroadphase(new UniformGridBroadphase());
+	}
+
+	/**
+	 * getContacts() Every contact found during the last collision pass.
+	 */
+	public ContactBuffer getContacts() {
+		return p_contacts;
+	}
+
+	/**
+	 * CollisionHandler Narrowphase for the pairs reported by the broadphase.
+	 * Every contact goes into p_contacts; a sprite's colliderSprite is the
+	 * first sprite it touched this frame.
+	 */
+	private class CollisionHandler implements Broadphase.PairHandler {
+		@Override
+		public void pair(Sprite sprA, Sprite sprB) {
+			// do not collide with itself
+			if (sprA == sprB)
+				return;
+
+			// Ignore sprites with same ID
+			if (sprA.getIdentifier() == sprB.getIdentifier())
+				return;
+
+			// already on their way out of the group
+			if (sprA.p_removalPending || sprB.p_removalPending)
+				return;
+
+			if (!collisionCheckRectF(sprA, sprB))
+				return;
+
+			p_contacts.add(sprA, sprB);
+
+			if (!sprA.getCollided()) {
+				sprA.setCollided(true);
+				sprA.setColliderSprite(sprB);
+			}
+			if (!sprB.getCollided()) {
+				sprB.setCollided(true);
+				sprB.setColliderSprite(sprA);
+			}
+		}
+	}
+
+	/**
+	 * GestureForwarder Passes the recognizer's gestures on to gesture()
+	 */
+	private class GestureForwarder implements GestureRecognizer.Listener {
+		@Override
+		public void gesture(GestureEvent event) {
+			PBGEngine.this.gesture(event);
+		}
+	}
+
+	/**
+	 * TextureEvictor Has the GL backend delete the texture of each bitmap
+	 * the texture cache drops; the Canvas backend keeps nothing to free.
+	 */
+	private class TextureEvictor implements TextureCache.EvictionListener {
+		@Override
+		public void evicted(Texture texture) {
+			Renderer backend = getRenderer();
+			if (backend instanceof GLES2Renderer)
+				((GLES2Renderer) backend).forgetTexture(texture.getBitmap());
+		}
+	}
+
+	/**
+	 * GroupRemover Releases what addToGroup() set up, for each sprite the
+	 * group flushes. Dead sprites that came from a SpritePool go back to it.
+	 */
+	private class GroupRemover implements EntityGroup.RemovalListener {
+		@Override
+		public void removed(Sprite sprite) {
+			releaseSprite(sprite);
+			if (p_dirtyRectsEnabled)
+				sprite.forgetDrawn(p_dirtyBounds);
+			if (sprite.p_pool != null && !sprite.getActive())
+				sprite.p_pool.free(sprite);
+		}
+	}
 }
@@ -0,0 +1,176 @@
+/**
+ * ParallelAnimator Class
+ * @author PistolBear
+ *
+ * Runs the animation phase of a simulation step on several cores.  The
+ * group is cut into chunks of consecutive sprites; the game thread and the
+ * pool's workers claim chunks from a shared counter until none are left,
+ * so a core that finishes early simply takes the next chunk.  For each
+ * sprite the Animation.adjust*() calls and, with the ANIMATE_VISIBLE
+ * policy, the bounds test against the viewport run on whichever thread
+ * claimed it.
+ * Only sprites whose animations are all Animation.isParallelSafe() are
+ * animated here; the engine animates the others on the game thread
+ * afterwards.  update(), collision and drawing never leave the game
+ * thread.  Turn on with PBGEngine.setParallelAnimation().
+ */
+package pbgames.pbgengine;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.graphics.RectF;
+
+public class ParallelAnimator {
+	private ThreadPoolExecutor p_executor;
+	private Worker[] p_workers;
+	private RectF p_scratch;
+	private int p_chunkSize;
+
+	// the pass in progress, published to the workers by execute()
+	private EntityGroup p_group;
+	private RectF p_viewport;
+	private int p_chunks;
+	private final AtomicInteger p_nextChunk = new AtomicInteger();
+	private final AtomicInteger p_busy = new AtomicInteger();
+	private final Object p_lock = new Object();
+	private volatile Throwable p_error;
+
+	/**
+	 * Worker Claims chunks on a pool thread, with its own scratch bounds
+	 */
+	private class Worker implements Runnable {
+		private RectF scratch = new RectF();
+
+		@Override
+		public void run() {
+			try {
+				work(scratch);
+			} catch (Throwable t) {
+				p_error = t;
+			} finally {
+				if (p_busy.decrementAndGet() == 0) {
+					synchronized (p_lock) {
+						p_lock.notifyAll();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * ParallelAnimator
+	 * @param workers : pool threads besides the game thread, at least 1
+	 */
+	public ParallelAnimator(int workers) {
+		workers = Math.max(workers, 1);
+		p_executor = new ThreadPoolExecutor(workers, workers, 0,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					private int count = 0;
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "PBGEngine animator "
+								+ (++count));
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		p_workers = new Worker[workers];
+		for (int n = 0; n < workers; n++)
+			p_workers[n] = new Worker();
+		p_scratch = new RectF();
+		p_chunkSize = 64;
+	}
+
+	/**
+	 * setChunkSize() Sprites claimed at a time. Smaller chunks balance
+	 * uneven animation costs better, larger ones touch the counter less.
+	 */
+	public void setChunkSize(int size) {
+		p_chunkSize = Math.max(size, 1);
+	}
+
+	public int getChunkSize() {
+		return p_chunkSize;
+	}
+
+	public int getWorkers() {
+		return p_workers.length;
+	}
+
+	/**
+	 * animate() One step of animation for the parallel-safe sprites of a
+	 * group; returns when all of them are done.
+	 * @param viewport : with ANIMATE_VISIBLE, the area where sprites are
+	 *        animated; null to animate all
+	 */
+	public void animate(EntityGroup group, RectF viewport) {
+		p_group = group;
+		p_viewport = viewport;
+		p_chunks = (group.size() + p_chunkSize - 1) / p_chunkSize;
+		p_nextChunk.set(0);
+		p_error = null;
+
+		// the queue hand-off publishes the fields above to the workers
+		int workers = Math.max(0, Math.min(p_workers.length, p_chunks - 1));
+		p_busy.set(workers);
+		for (int n = 0; n < workers; n++)
+			p_executor.execute(p_workers[n]);
+
+		try {
+			work(p_scratch);
+		} finally {
+			// never leave workers running on a group the game may change
+			boolean interrupted = false;
+			synchronized (p_lock) {
+				while (p_busy.get() > 0) {
+					try {
+						p_lock.wait();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+			p_group = null;
+			p_viewport = null;
+		}
+
+		Throwable error = p_error;
+		if (error != null) {
+			p_error = null;
+			if (error instanceof RuntimeException)
+				throw (RuntimeException) error;
+			throw new RuntimeException("animation failed on a worker", error);
+		}
+	}
+
+	private void work(RectF scratch) {
+		EntityGroup group = p_group;
+		RectF viewport = p_viewport;
+		int size = group.size();
+		int chunk;
+		while ((chunk = p_nextChunk.getAndIncrement()) < p_chunks) {
+			int end = Math.min((chunk + 1) * p_chunkSize, size);
+			for (int n = chunk * p_chunkSize; n < end; n++) {
+				Sprite spr = group.get(n);
+				if (spr.getActive() && !spr.p_removalPending
+						&& spr.isParallelSafe())
+					spr.stepAnimations(viewport, scratch);
+			}
+		}
+	}
+
+	/**
+	 * shutdown() Stop the pool threads; the animator cannot be used after.
+	 */
+	public void shutdown() {
+		p_executor.shutdown();
+	}
+}
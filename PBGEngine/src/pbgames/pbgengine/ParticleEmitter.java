@@ -0,0 +1,444 @@
+/**
+ * ParticleEmitter Class
+ * @author PistolBear
+ *
+ * Explosions, smoke and sparks without a Sprite per particle.  Particles
+ * live in flat arrays (position, velocity, life, alpha, scale, frame) sized
+ * once for the emitter's capacity:
+ * - update() moves, fades, scales and animates every particle in one loop
+ *   and swap-removes the dead ones; nothing is allocated
+ * - draw() turns the live particles into textured quads from one Texture
+ *   and hands them to Renderer.drawQuads(), up to SpriteBatch.MAX_SPRITES
+ *   per call
+ * Velocities and gravity are in pixels per second, life in seconds.
+ * Add an emitter to a Layer; the engine updates it every simulation step
+ * and draws it over the layer's sprites.
+ */
+package pbgames.pbgengine;
+
+import java.util.Random;
+
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+public class ParticleEmitter {
+	private Texture p_texture;
+	private int p_frameWidth, p_frameHeight, p_columns, p_frameCount;
+
+	// one slot per particle, live ones in [0, p_count)
+	private float[] p_x, p_y, p_prevX, p_prevY, p_vx, p_vy;
+	private float[] p_life, p_ttl, p_alpha, p_scale, p_frame;
+	private int p_count, p_capacity;
+
+	// emission ranges and behavior, shared by all particles
+	private float p_minAngle, p_maxAngle, p_minSpeed, p_maxSpeed;
+	private float p_minLife, p_maxLife;
+	private float p_startAlpha, p_endAlpha, p_startScale, p_endScale;
+	private float p_gravityX, p_gravityY, p_drag, p_frameRate;
+	private int p_color;
+	private Random p_random;
+	private Paint p_paint;
+
+	// quads for one drawQuads() call
+	private float[] p_vertices, p_texCoords;
+	private int[] p_colors;
+
+	// area covered by the particles, for dirty rects
+	private RectF p_bounds, p_drawnBounds, p_mapped;
+	private boolean p_drawn;
+
+	/**
+	 * ParticleEmitter
+	 * @param texture : particle image, or a sheet of animation frames
+	 * @param frameWidth, frameHeight : size of one frame, 0 for the whole
+	 *        texture
+	 * @param columns : frames per row of the sheet
+	 * @param capacity : most particles alive at once; more are not emitted
+	 */
+	public ParticleEmitter(Texture texture, int frameWidth, int frameHeight,
+			int columns, int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity < 1");
+		p_texture = texture;
+		p_frameWidth = frameWidth;
+		p_frameHeight = frameHeight;
+		p_columns = Math.max(columns, 1);
+		p_frameCount = 1;
+		p_capacity = capacity;
+		p_count = 0;
+		p_x = new float[capacity];
+		p_y = new float[capacity];
+		p_prevX = new float[capacity];
+		p_prevY = new float[capacity];
+		p_vx = new float[capacity];
+		p_vy = new float[capacity];
+		p_life = new float[capacity];
+		p_ttl = new float[capacity];
+		p_alpha = new float[capacity];
+		p_scale = new float[capacity];
+		p_frame = new float[capacity];
+
+		p_minAngle = 0;
+		p_maxAngle = 360;
+		p_minSpeed = 50;
+		p_maxSpeed = 150;
+		p_minLife = p_maxLife = 1.0f;
+		p_startAlpha = 1.0f;
+		p_endAlpha = 0.0f;
+		p_startScale = p_endScale = 1.0f;
+		p_gravityX = p_gravityY = 0;
+		p_drag = 0;
+		p_frameRate = 0;
+		p_color = 0xffffff;
+		p_random = new Random();
+		p_paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+		int quads = Math.min(capacity, SpriteBatch.MAX_SPRITES);
+		p_vertices = new float[quads * 8];
+		p_texCoords = new float[quads * 8];
+		p_colors = new int[quads * 4];
+		p_bounds = new RectF();
+		p_drawnBounds = new RectF();
+		p_mapped = new RectF();
+		p_drawn = false;
+	}
+
+	public ParticleEmitter(Texture texture, int capacity) {
+		this(texture, 0, 0, 1, capacity);
+	}
+
+	/**
+	 * Emission settings, applied to particles emitted afterwards
+	 */
+
+	/**
+	 * setVelocity() Direction range in degrees (0 is right, 90 down) and
+	 * speed range in pixels per second
+	 */
+	public void setVelocity(float minAngle, float maxAngle, float minSpeed,
+			float maxSpeed) {
+		p_minAngle = minAngle;
+		p_maxAngle = maxAngle;
+		p_minSpeed = minSpeed;
+		p_maxSpeed = maxSpeed;
+	}
+
+	/**
+	 * setLife() Seconds a particle lives, picked between min and max
+	 */
+	public void setLife(float min, float max) {
+		p_minLife = Math.max(min, 0.001f);
+		p_maxLife = Math.max(max, p_minLife);
+	}
+
+	/**
+	 * setAlpha() Opacity from birth to death, 0 to 1
+	 */
+	public void setAlpha(float start, float end) {
+		p_startAlpha = start;
+		p_endAlpha = end;
+	}
+
+	/**
+	 * setScale() Size from birth to death, 1 being the frame size
+	 */
+	public void setScale(float start, float end) {
+		p_startScale = start;
+		p_endScale = end;
+	}
+
+	/**
+	 * setGravity() Acceleration in pixels per second squared
+	 */
+	public void setGravity(float x, float y) {
+		p_gravityX = x;
+		p_gravityY = y;
+	}
+
+	/**
+	 * setDrag() Fraction of its speed a particle loses per second, 0 to 1
+	 */
+	public void setDrag(float drag) {
+		p_drag = Math.max(0, Math.min(drag, 1));
+	}
+
+	/**
+	 * setFrames() Animate through frameCount frames of the sheet at
+	 * frameRate frames per second, looping
+	 */
+	public void setFrames(int frameCount, float frameRate) {
+		p_frameCount = Math.max(frameCount, 1);
+		p_frameRate = frameRate;
+	}
+
+	/**
+	 * setColor() RGB tint multiplied with the texture
+	 */
+	public void setColor(int rgb) {
+		p_color = rgb & 0xffffff;
+	}
+
+	/**
+	 * getPaint() Paint the quads are drawn with, e.g. to set an additive
+	 * transfer mode
+	 */
+	public Paint getPaint() {
+		return p_paint;
+	}
+
+	public Texture getTexture() {
+		return p_texture;
+	}
+
+	public int getCount() {
+		return p_count;
+	}
+
+	public int getCapacity() {
+		return p_capacity;
+	}
+
+	/**
+	 * emit() Spawn particles at a point with the current settings
+	 * @return the number emitted, fewer than asked if the emitter is full
+	 */
+	public int emit(float x, float y, int count) {
+		count = Math.min(count, p_capacity - p_count);
+		for (int n = 0; n < count; n++) {
+			float angle = (float) Math.toRadians(p_minAngle
+					+ (p_maxAngle - p_minAngle) * p_random.nextFloat());
+			float speed = p_minSpeed + (p_maxSpeed - p_minSpeed)
+					* p_random.nextFloat();
+			float life = p_minLife + (p_maxLife - p_minLife)
+					* p_random.nextFloat();
+			add(x, y, (float) Math.cos(angle) * speed, (float) Math.sin(angle)
+					* speed, life);
+		}
+		return count;
+	}
+
+	/**
+	 * emit() Spawn one particle with a given velocity and life
+	 * @return false if the emitter is full
+	 */
+	public boolean emit(float x, float y, float vx, float vy, float life) {
+		if (p_count == p_capacity)
+			return false;
+		add(x, y, vx, vy, Math.max(life, 0.001f));
+		return true;
+	}
+
+	private void add(float x, float y, float vx, float vy, float life) {
+		int n = p_count++;
+		p_x[n] = p_prevX[n] = x;
+		p_y[n] = p_prevY[n] = y;
+		p_vx[n] = vx;
+		p_vy[n] = vy;
+		p_life[n] = p_ttl[n] = life;
+		p_alpha[n] = p_startAlpha;
+		p_scale[n] = p_startScale;
+		p_frame[n] = 0;
+
+		// covered until the next update() recomputes the bounds
+		float half = Math.max(frameWidth(), frameHeight()) * 0.5f
+				* Math.abs(p_startScale);
+		p_bounds.union(x - half, y - half, x + half, y + half);
+	}
+
+	/**
+	 * clear() Kill every particle
+	 */
+	public void clear() {
+		p_count = 0;
+	}
+
+	/**
+	 * update() Advance every particle by dt seconds; dead particles are
+	 * replaced by the last live one.
+	 */
+	public void update(float dt) {
+		float damping = 1.0f - p_drag * dt;
+		if (damping < 0)
+			damping = 0;
+		float gx = p_gravityX * dt;
+		float gy = p_gravityY * dt;
+		float halfSize = Math.max(frameWidth(), frameHeight()) * 0.5f
+				* Math.max(Math.abs(p_startScale), Math.abs(p_endScale));
+		float left = Float.MAX_VALUE, top = Float.MAX_VALUE;
+		float right = -Float.MAX_VALUE, bottom = -Float.MAX_VALUE;
+
+		int n = 0;
+		while (n < p_count) {
+			float life = p_life[n] - dt;
+			if (life <= 0) {
+				remove(n);
+				continue;
+			}
+			p_life[n] = life;
+			float t = 1.0f - life / p_ttl[n];
+
+			float x = p_x[n];
+			float y = p_y[n];
+			p_prevX[n] = x;
+			p_prevY[n] = y;
+			float vx = (p_vx[n] + gx) * damping;
+			float vy = (p_vy[n] + gy) * damping;
+			p_vx[n] = vx;
+			p_vy[n] = vy;
+			float nx = x + vx * dt;
+			float ny = y + vy * dt;
+			p_x[n] = nx;
+			p_y[n] = ny;
+
+			p_alpha[n] = p_startAlpha + (p_endAlpha - p_startAlpha) * t;
+			p_scale[n] = p_startScale + (p_endScale - p_startScale) * t;
+			if (p_frameRate != 0)
+				p_frame[n] = (p_ttl[n] - life) * p_frameRate % p_frameCount;
+
+			// cover where it was and where it is, drawing interpolates
+			left = Math.min(left, Math.min(x, nx));
+			top = Math.min(top, Math.min(y, ny));
+			right = Math.max(right, Math.max(x, nx));
+			bottom = Math.max(bottom, Math.max(y, ny));
+			n++;
+		}
+		if (p_count > 0)
+			p_bounds.set(left - halfSize, top - halfSize, right + halfSize,
+					bottom + halfSize);
+		else
+			p_bounds.setEmpty();
+	}
+
+	private void remove(int n) {
+		int last = --p_count;
+		if (n == last)
+			return;
+		p_x[n] = p_x[last];
+		p_y[n] = p_y[last];
+		p_prevX[n] = p_prevX[last];
+		p_prevY[n] = p_prevY[last];
+		p_vx[n] = p_vx[last];
+		p_vy[n] = p_vy[last];
+		p_life[n] = p_life[last];
+		p_ttl[n] = p_ttl[last];
+		p_alpha[n] = p_alpha[last];
+		p_scale[n] = p_scale[last];
+		p_frame[n] = p_frame[last];
+	}
+
+	/**
+	 * getBounds() Area the live particles cover, as of the last update()
+	 */
+	public RectF getBounds() {
+		return p_bounds;
+	}
+
+	/**
+	 * draw() Draw the live particles that overlap the visible area
+	 * @param visible : area in view, in the particles' world space
+	 * @param interpolation : between the previous and the current update()
+	 */
+	public void draw(Renderer renderer, RectF visible, float interpolation) {
+		if (p_count == 0 || p_texture == null || p_texture.getBitmap() == null)
+			return;
+		int frameWidth = frameWidth();
+		int frameHeight = frameHeight();
+		int max = p_colors.length / 4;
+		int quads = 0;
+
+		for (int n = 0; n < p_count; n++) {
+			float x = p_prevX[n] + (p_x[n] - p_prevX[n]) * interpolation;
+			float y = p_prevY[n] + (p_y[n] - p_prevY[n]) * interpolation;
+			float hw = frameWidth * p_scale[n] * 0.5f;
+			float hh = frameHeight * p_scale[n] * 0.5f;
+			if (x + hw < visible.left || x - hw > visible.right
+					|| y + hh < visible.top || y - hh > visible.bottom)
+				continue;
+			int alpha = (int) (p_alpha[n] * 255);
+			if (alpha <= 0)
+				continue;
+
+			int v = quads * 8;
+			float[] q = p_vertices;
+			q[v] = x - hw;
+			q[v + 1] = y - hh;
+			q[v + 2] = x + hw;
+			q[v + 3] = y - hh;
+			q[v + 4] = x + hw;
+			q[v + 5] = y + hh;
+			q[v + 6] = x - hw;
+			q[v + 7] = y + hh;
+
+			int frame = (int) p_frame[n];
+			float u = (frame % p_columns) * frameWidth;
+			float tv = (frame / p_columns) * frameHeight;
+			float[] t = p_texCoords;
+			t[v] = u;
+			t[v + 1] = tv;
+			t[v + 2] = u + frameWidth;
+			t[v + 3] = tv;
+			t[v + 4] = u + frameWidth;
+			t[v + 5] = tv + frameHeight;
+			t[v + 6] = u;
+			t[v + 7] = tv + frameHeight;
+
+			int color = Math.min(alpha, 255) << 24 | p_color;
+			int c = quads * 4;
+			p_colors[c] = color;
+			p_colors[c + 1] = color;
+			p_colors[c + 2] = color;
+			p_colors[c + 3] = color;
+
+			if (++quads == max) {
+				renderer.drawQuads(p_texture, p_vertices, p_texCoords,
+						p_colors, quads, p_paint);
+				quads = 0;
+			}
+		}
+		if (quads > 0)
+			renderer.drawQuads(p_texture, p_vertices, p_texCoords, p_colors,
+					quads, p_paint);
+	}
+
+	/**
+	 * trackChanges() Grow dirty by the screen area the particles covered
+	 * last frame and cover now, like Sprite.trackChanges()
+	 * @param transform : the layer's camera transform, null for none
+	 */
+	void trackChanges(RectF dirty, Matrix transform) {
+		if (p_drawn)
+			dirty.union(p_drawnBounds);
+		p_drawn = p_count > 0;
+		if (!p_drawn)
+			return;
+		p_mapped.set(p_bounds);
+		if (transform != null)
+			transform.mapRect(p_mapped);
+		dirty.union(p_mapped);
+		p_drawnBounds.set(p_mapped);
+	}
+
+	/**
+	 * forgetDrawn() The particles are no longer drawn (hidden layer)
+	 */
+	void forgetDrawn(RectF dirty) {
+		if (p_drawn)
+			dirty.union(p_drawnBounds);
+		p_drawn = false;
+	}
+
+	private int frameWidth() {
+		if (p_frameWidth > 0)
+			return p_frameWidth;
+		return p_texture != null && p_texture.getBitmap() != null ? p_texture
+				.getBitmap().getWidth() : 0;
+	}
+
+	private int frameHeight() {
+		if (p_frameHeight > 0)
+			return p_frameHeight;
+		return p_texture != null && p_texture.getBitmap() != null ? p_texture
+				.getBitmap().getHeight() : 0;
+	}
+}
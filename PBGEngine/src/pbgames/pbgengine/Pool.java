@@ -0,0 +1,100 @@
+/** 
+ * Pool Class
+ * @author PistolBear
+ * 
+ * Keeps freed objects around for reuse, so entities that are spawned and
+ * killed many times a second (projectiles, effects and their behaviors) do
+ * not feed the garbage collector.  Sub-classes create objects in newObject()
+ * and put them back to a clean state in reset(), which runs on free().
+ * Pools are not thread safe; use them from the game thread.
+ */
+package pbgames.pbgengine;
+
+import java.util.ArrayList;
+
+public abstract class Pool<T> {
+	private final ArrayList<T> p_free;
+	private final int p_max;
+	private int p_peak;
+
+	public Pool() {
+		this(16, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Pool
+	 * @param initialCapacity : free list slots allocated up front
+	 * @param max : most objects kept; further frees are left to the GC
+	 */
+	public Pool(int initialCapacity, int max) {
+		p_free = new ArrayList<T>(initialCapacity);
+		p_max = max;
+		p_peak = 0;
+	}
+
+	/**
+	 * newObject() Create an object when the pool is empty
+	 */
+	protected abstract T newObject();
+
+	/**
+	 * reset() Called on every freed object. Does nothing unless overridden.
+	 */
+	protected void reset(T object) {
+	}
+
+	/**
+	 * obtain() A free object, or a new one if none are left
+	 */
+	public T obtain() {
+		int n = p_free.size();
+		if (n == 0)
+			return newObject();
+		return p_free.remove(n - 1);
+	}
+
+	/**
+	 * free() Reset an object and keep it for the next obtain(). The caller
+	 * must not touch it afterwards.
+	 */
+	public void free(T object) {
+		if (object == null)
+			throw new IllegalArgumentException("object cannot be null");
+		reset(object);
+		if (p_free.size() < p_max) {
+			p_free.add(object);
+			if (p_free.size() > p_peak)
+				p_peak = p_free.size();
+		}
+	}
+
+	/**
+	 * fill() Create objects ahead of time, e.g. from load(), so the first
+	 * wave does not allocate.
+	 */
+	public void fill(int count) {
+		for (int n = 0; n < count && p_free.size() < p_max; n++)
+			p_free.add(newObject());
+		if (p_free.size() > p_peak)
+			p_peak = p_free.size();
+	}
+
+	public void clear() {
+		p_free.clear();
+	}
+
+	public int getFree() {
+		return p_free.size();
+	}
+
+	/**
+	 * getPeak() Most objects that have been waiting in the pool at once
+	 */
+	public int getPeak() {
+		return p_peak;
+	}
+
+	public int getMax() {
+		return p_max;
+	}
+}
@@ -31,6 +31,12 @@ public class PulseAnimation extends Animation {
      */
     public PulseAnimation(float startScale, float endScale, float speed, 
             boolean repeat) { 
+        reset(startScale, endScale, speed, repeat);
+    }
+    
+    // reuse as if newly constructed
+    public void reset(float startScale, float endScale, float speed, 
+            boolean repeat) {
         p_started = false;
         animating = true;
         this.p_startScale = startScale;
@@ -57,10 +63,19 @@ public class PulseAnimation extends Animation {
             else
                 p_speed *= -1;
         }
-        
-        super.adjustPosition(new Float2(-original.x, -original.y / 2));
-
         return modified;
     }
 
+    // writes its own fields and the sprite's own scale, in place
+    @Override
+    public boolean isParallelSafe() {
+        return true;
+    }
+
+    // changes the sprite's looks only
+    @Override
+    public boolean isCosmetic() {
+        return true;
+    }
+
 }
@@ -0,0 +1,363 @@
+/** 
+ * RecordingRenderer Class
+ * @author PistolBear
+ * 
+ * Headless backend: keeps the draw commands of the current frame in
+ * reusable arrays instead of drawing them.  Lets engine logic run without a
+ * display (tests, servers) and can replay() a recorded frame onto another
+ * Renderer.  getCanvas() returns null, so draw() code that uses the canvas
+ * directly should check for that.
+ * Each command's paint is copied into a Paint the recorder owns, so the
+ * caller may change or reuse its paint right after the call, and replay()
+ * never writes to the caller's paints.
+ */
+package pbgames.pbgengine;
+
+import java.util.Arrays;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+public class RecordingRenderer implements Renderer {
+	public static final int CLEAR = 0;
+	public static final int BITMAP = 1;
+	public static final int QUADS = 2;
+	public static final int TEXT = 3;
+	public static final int TRANSFORM = 4;
+
+	private int p_width, p_height;
+	private int p_frames;
+	private Rect p_dirty;
+
+	// one slot per command
+	private int[] p_types, p_args, p_intStart, p_floatStart;
+	private Object[] p_objects;
+	private Paint[] p_paints;
+
+	// recorder-owned paint copies, one per slot, reused frame after frame
+	private Paint[] p_paintCopies;
+	private int p_count, p_transformCount;
+
+	// variable-length command data
+	private int[] p_ints;
+	private float[] p_floats;
+	private int p_intCount, p_floatCount;
+
+	// scratch for replay
+	private Matrix p_matrix, p_transform;
+	private float[] p_values;
+	private Rect p_rect;
+	private float[] p_quadVertices, p_quadTexCoords;
+	private int[] p_quadColors;
+
+	/**
+	 * RecordingRenderer
+	 * @param width, height : size reported to the engine
+	 */
+	public RecordingRenderer(int width, int height) {
+		p_width = width;
+		p_height = height;
+		p_frames = 0;
+		p_dirty = new Rect();
+		p_types = new int[64];
+		p_args = new int[64];
+		p_intStart = new int[64];
+		p_floatStart = new int[64];
+		p_objects = new Object[64];
+		p_paints = new Paint[64];
+		p_paintCopies = new Paint[64];
+		p_count = p_transformCount = 0;
+		p_ints = new int[256];
+		p_floats = new float[1024];
+		p_intCount = p_floatCount = 0;
+		p_matrix = new Matrix();
+		p_transform = new Matrix();
+		p_values = new float[9];
+		p_rect = new Rect();
+		p_quadVertices = new float[0];
+		p_quadTexCoords = new float[0];
+		p_quadColors = new int[0];
+	}
+
+	@Override
+	public boolean beginFrame() {
+		reset();
+		p_dirty.set(0, 0, p_width, p_height);
+		return true;
+	}
+
+	/**
+	 * beginFrame(Rect) Records the dirty region, see getDirty()
+	 */
+	@Override
+	public boolean beginFrame(Rect dirty) {
+		reset();
+		p_dirty.set(dirty);
+		return true;
+	}
+
+	@Override
+	public void endFrame() {
+		p_frames++;
+	}
+
+	/**
+	 * reset() Forget the recorded commands, keeping the storage
+	 */
+	public void reset() {
+		Arrays.fill(p_objects, 0, p_count, null);
+		Arrays.fill(p_paints, 0, p_count, null);
+		p_count = p_transformCount = 0;
+		p_intCount = p_floatCount = 0;
+	}
+
+	@Override
+	public Canvas getCanvas() {
+		return null;
+	}
+
+	@Override
+	public int getWidth() {
+		return p_width;
+	}
+
+	@Override
+	public int getHeight() {
+		return p_height;
+	}
+
+	public void setSize(int width, int height) {
+		p_width = width;
+		p_height = height;
+	}
+
+	@Override
+	public void clear(int color) {
+		add(CLEAR, null, null, color);
+	}
+
+	/**
+	 * setTransform() Recorded as a TRANSFORM command, arg 1 with a matrix and
+	 * 0 for null
+	 */
+	@Override
+	public void setTransform(Matrix transform) {
+		int n = add(TRANSFORM, null, null, transform != null ? 1 : 0);
+		p_transformCount++;
+		if (transform != null) {
+			transform.getValues(p_values);
+			putFloats(p_values, 9);
+			p_floatStart[n] = p_floatCount - 9;
+		}
+	}
+
+	@Override
+	public void drawBitmap(Bitmap bitmap, Rect src, Matrix matrix, Paint paint) {
+		int n = add(BITMAP, bitmap, paint, paint != null ? paint.getAlpha()
+				: 255);
+		matrix.getValues(p_values);
+		putFloats(p_values, 9);
+		ensureInts(5);
+		if (src != null) {
+			p_ints[p_intCount++] = 1;
+			p_ints[p_intCount++] = src.left;
+			p_ints[p_intCount++] = src.top;
+			p_ints[p_intCount++] = src.right;
+			p_ints[p_intCount++] = src.bottom;
+		} else {
+			p_ints[p_intCount++] = 0;
+			p_intCount += 4;
+		}
+		p_floatStart[n] = p_floatCount - 9;
+		p_intStart[n] = p_intCount - 5;
+	}
+
+	@Override
+	public void drawQuads(Texture texture, float[] vertices, float[] texCoords,
+			int[] colors, int quadCount, Paint paint) {
+		int n = add(QUADS, texture, paint, quadCount);
+		putFloats(vertices, quadCount * 8);
+		putFloats(texCoords, quadCount * 8);
+		ensureInts(quadCount * 4);
+		System.arraycopy(colors, 0, p_ints, p_intCount, quadCount * 4);
+		p_intCount += quadCount * 4;
+		p_floatStart[n] = p_floatCount - quadCount * 16;
+		p_intStart[n] = p_intCount - quadCount * 4;
+	}
+
+	@Override
+	public void drawText(String text, float x, float y, Paint paint) {
+		int n = add(TEXT, text, paint, 0);
+		ensureFloats(2);
+		p_floats[p_floatCount++] = x;
+		p_floats[p_floatCount++] = y;
+		p_floatStart[n] = p_floatCount - 2;
+	}
+
+	@Override
+	public int getDrawCalls() {
+		return p_count - p_transformCount;
+	}
+
+	@Override
+	public void release() {
+		reset();
+	}
+
+	/**
+	 * replay() Issue the recorded commands on another renderer, in order
+	 */
+	public void replay(Renderer target) {
+		for (int n = 0; n < p_count; n++) {
+			int f = p_floatStart[n];
+			int i = p_intStart[n];
+			switch (p_types[n]) {
+			case CLEAR:
+				target.clear(p_args[n]);
+				break;
+			case BITMAP:
+				System.arraycopy(p_floats, f, p_values, 0, 9);
+				p_matrix.setValues(p_values);
+				Rect src = null;
+				if (p_ints[i] != 0) {
+					p_rect.set(p_ints[i + 1], p_ints[i + 2], p_ints[i + 3],
+							p_ints[i + 4]);
+					src = p_rect;
+				}
+				target.drawBitmap((Bitmap) p_objects[n], src, p_matrix,
+						p_paints[n]);
+				break;
+			case QUADS:
+				replayQuads(target, n, f, i);
+				break;
+			case TEXT:
+				target.drawText((String) p_objects[n], p_floats[f],
+						p_floats[f + 1], p_paints[n]);
+				break;
+			case TRANSFORM:
+				if (p_args[n] != 0) {
+					System.arraycopy(p_floats, f, p_values, 0, 9);
+					p_transform.setValues(p_values);
+					target.setTransform(p_transform);
+				} else {
+					target.setTransform(null);
+				}
+				break;
+			}
+		}
+	}
+
+	private void replayQuads(Renderer target, int n, int f, int i) {
+		int quads = p_args[n];
+		if (p_quadVertices.length < quads * 8) {
+			p_quadVertices = new float[quads * 8];
+			p_quadTexCoords = new float[quads * 8];
+			p_quadColors = new int[quads * 4];
+		}
+		System.arraycopy(p_floats, f, p_quadVertices, 0, quads * 8);
+		System.arraycopy(p_floats, f + quads * 8, p_quadTexCoords, 0, quads * 8);
+		System.arraycopy(p_ints, i, p_quadColors, 0, quads * 4);
+		target.drawQuads((Texture) p_objects[n], p_quadVertices,
+				p_quadTexCoords, p_quadColors, quads, p_paints[n]);
+	}
+
+	/**
+	 * Recorded commands, for inspection in tests
+	 */
+	public int getCommandCount() {
+		return p_count;
+	}
+
+	/**
+	 * getCommandType() CLEAR, BITMAP, QUADS, TEXT or TRANSFORM
+	 */
+	public int getCommandType(int index) {
+		return p_types[index];
+	}
+
+	/**
+	 * getCommandObject() The bitmap, texture or text of a command
+	 */
+	public Object getCommandObject(int index) {
+		return p_objects[index];
+	}
+
+	/**
+	 * getCommandArg() Color for CLEAR, alpha for BITMAP, quad count for QUADS,
+	 * 1 for a TRANSFORM with a matrix
+	 */
+	public int getCommandArg(int index) {
+		return p_args[index];
+	}
+
+	/**
+	 * getDirty() Region the current frame redraws
+	 */
+	public Rect getDirty() {
+		return p_dirty;
+	}
+
+	/**
+	 * getFrameCount() Frames ended so far
+	 */
+	public int getFrameCount() {
+		return p_frames;
+	}
+
+	private int add(int type, Object object, Paint paint, int arg) {
+		if (p_count == p_types.length) {
+			int size = p_count * 2;
+			p_types = Arrays.copyOf(p_types, size);
+			p_args = Arrays.copyOf(p_args, size);
+			p_intStart = Arrays.copyOf(p_intStart, size);
+			p_floatStart = Arrays.copyOf(p_floatStart, size);
+			p_objects = Arrays.copyOf(p_objects, size);
+			p_paints = Arrays.copyOf(p_paints, size);
+			p_paintCopies = Arrays.copyOf(p_paintCopies, size);
+		}
+		int n = p_count++;
+		p_types[n] = type;
+		p_objects[n] = object;
+		p_paints[n] = copyPaint(n, paint);
+		p_args[n] = arg;
+		p_intStart[n] = p_intCount;
+		p_floatStart[n] = p_floatCount;
+		return n;
+	}
+
+	/**
+	 * Snapshot of the paint's state in slot n's own Paint: alpha, color,
+	 * flags, color filter, xfermode and the rest, as Paint.set() copies them
+	 */
+	private Paint copyPaint(int n, Paint paint) {
+		if (paint == null)
+			return null;
+		Paint copy = p_paintCopies[n];
+		if (copy == null)
+			copy = p_paintCopies[n] = new Paint(paint);
+		else
+			copy.set(paint);
+		return copy;
+	}
+
+	private void putFloats(float[] values, int count) {
+		ensureFloats(count);
+		System.arraycopy(values, 0, p_floats, p_floatCount, count);
+		p_floatCount += count;
+	}
+
+	private void ensureFloats(int count) {
+		if (p_floatCount + count > p_floats.length)
+			p_floats = Arrays.copyOf(p_floats,
+					Math.max(p_floats.length * 2, p_floatCount + count));
+	}
+
+	private void ensureInts(int count) {
+		if (p_intCount + count > p_ints.length)
+			p_ints = Arrays.copyOf(p_ints,
+					Math.max(p_ints.length * 2, p_intCount + count));
+	}
+}
@@ -0,0 +1,214 @@
+/**
+ * RenderThread Class
+ * @author PistolBear
+ *
+ * Presents frames on a thread of its own, so a slow lockCanvas() or buffer
+ * swap no longer holds up the simulation and a long step no longer holds up
+ * the display.  The game thread draws each frame into a RecordingRenderer
+ * from getRecorder() and publish()es it; the recording is a snapshot of the
+ * frame's matrices, source rects, alphas, quads and text, so the game can
+ * move on to the next step while this thread replays it onto the real
+ * renderer.
+ * Three recorders rotate: one being written, one published and one being
+ * replayed.  If the game publishes again before the last frame was taken,
+ * that frame is dropped (getSkippedFrames()) and only the latest is shown.
+ * Paints are copied by the recorder.  Bitmaps and textures are shared, so
+ * the engine never recycle()s one a recorded frame may still draw; a static
+ * layer cache or tile chunk redrawn in place can show half done for one
+ * frame.  Sprite back buffers are redrawn every frame, so they are refused
+ * (Sprite.setBackBufferEnabled()) and bypassed while this runs.
+ * Turn on with PBGEngine.setThreadedRendering().
+ */
+package pbgames.pbgengine;
+
+import android.util.Log;
+
+public class RenderThread implements Runnable {
+	private static final int BUFFERS = 3;
+
+	private Renderer p_renderer;
+	private Thread p_thread;
+	private volatile boolean p_running;
+	private RecordingRenderer[] p_recorders;
+
+	// guarded by p_lock; slots are -1 when empty
+	private final Object p_lock = new Object();
+	private int p_writing, p_pending, p_reading;
+	private long[] p_publishTime, p_inputTime;
+	private long p_skippedFrames;
+
+	// written by the render thread, read by anyone
+	private volatile long p_frames, p_latency, p_maxLatency, p_inputLatency;
+	private long p_lastInputTime;
+
+	/**
+	 * RenderThread
+	 * @param renderer : the real backend; from now on used only by this
+	 *        thread, which also releases it
+	 */
+	public RenderThread(Renderer renderer) {
+		p_renderer = renderer;
+		p_thread = null;
+		p_running = false;
+		p_recorders = new RecordingRenderer[BUFFERS];
+		for (int n = 0; n < BUFFERS; n++)
+			p_recorders[n] = new RecordingRenderer(0, 0);
+		p_publishTime = new long[BUFFERS];
+		p_inputTime = new long[BUFFERS];
+		p_writing = 0;
+		p_pending = p_reading = -1;
+		p_skippedFrames = 0;
+		p_frames = p_latency = p_maxLatency = p_inputLatency = 0;
+		p_lastInputTime = 0;
+	}
+
+	public void start() {
+		if (p_thread != null)
+			return;
+		p_running = true;
+		p_thread = new Thread(this, "PBGEngine render");
+		p_thread.start();
+	}
+
+	/**
+	 * shutdown() Stop the thread once it has finished the frame in progress
+	 * and released the renderer.
+	 */
+	public void shutdown() {
+		if (p_thread == null)
+			return;
+		p_running = false;
+		synchronized (p_lock) {
+			p_lock.notifyAll();
+		}
+		try {
+			p_thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		p_thread = null;
+	}
+
+	/**
+	 * getRenderer() The backend frames are presented on
+	 */
+	public Renderer getRenderer() {
+		return p_renderer;
+	}
+
+	/**
+	 * getRecorder() Where the game thread draws its next frame, sized like
+	 * the real renderer's last frame. Game thread only.
+	 */
+	public RecordingRenderer getRecorder() {
+		RecordingRenderer recorder;
+		synchronized (p_lock) {
+			recorder = p_recorders[p_writing];
+		}
+		recorder.setSize(p_renderer.getWidth(), p_renderer.getHeight());
+		return recorder;
+	}
+
+	/**
+	 * publish() Hand the recorder's frame to the render thread and switch
+	 * getRecorder() to a free one. Game thread only.
+	 * @param inputTime : System.nanoTime() of the newest input the frame
+	 *        reflects, for getInputLatency(); 0 if none
+	 */
+	public void publish(long inputTime) {
+		synchronized (p_lock) {
+			if (p_pending >= 0)
+				p_skippedFrames++;
+			int published = p_writing;
+			p_publishTime[published] = System.nanoTime();
+			p_inputTime[published] = inputTime;
+			p_pending = published;
+			for (int n = 0; n < BUFFERS; n++) {
+				if (n != p_pending && n != p_reading) {
+					p_writing = n;
+					break;
+				}
+			}
+			p_lock.notifyAll();
+		}
+	}
+
+	@Override
+	public void run() {
+		Log.d("RenderThread", "RenderThread.run start");
+		while (p_running) {
+			int slot;
+			long published, inputTime;
+			synchronized (p_lock) {
+				while (p_running && p_pending < 0) {
+					try {
+						p_lock.wait();
+					} catch (InterruptedException e) {
+					}
+				}
+				if (!p_running)
+					break;
+				slot = p_reading = p_pending;
+				p_pending = -1;
+				published = p_publishTime[slot];
+				inputTime = p_inputTime[slot];
+			}
+
+			RecordingRenderer frame = p_recorders[slot];
+			if (!p_renderer.beginFrame())
+				continue; // surface gone; the game keeps publishing
+			frame.replay(p_renderer);
+			p_renderer.endFrame();
+
+			long now = System.nanoTime();
+			p_latency = now - published;
+			if (p_latency > p_maxLatency)
+				p_maxLatency = p_latency;
+			if (inputTime != 0 && inputTime != p_lastInputTime) {
+				p_inputLatency = now - inputTime;
+				p_lastInputTime = inputTime;
+			}
+			p_frames++;
+		}
+		p_renderer.release();
+		Log.d("RenderThread", "RenderThread.run end");
+	}
+
+	/**
+	 * getFrames() Frames presented so far
+	 */
+	public long getFrames() {
+		return p_frames;
+	}
+
+	/**
+	 * getSkippedFrames() Published frames replaced by a newer one before
+	 * this thread got to them
+	 */
+	public long getSkippedFrames() {
+		synchronized (p_lock) {
+			return p_skippedFrames;
+		}
+	}
+
+	/**
+	 * getLatency() Nanoseconds from publish() to the end of presenting the
+	 * last frame
+	 */
+	public long getLatency() {
+		return p_latency;
+	}
+
+	public long getMaxLatency() {
+		return p_maxLatency;
+	}
+
+	/**
+	 * getInputLatency() Nanoseconds from the last input that reached a frame
+	 * to that frame being presented; touch-to-photon, less the display's
+	 * own scan-out
+	 */
+	public long getInputLatency() {
+		return p_inputLatency;
+	}
+}
@@ -0,0 +1,91 @@
+/** 
+ * Renderer Interface
+ * @author PistolBear
+ * 
+ * Rendering backend used by the engine's game loop, the sprites and the
+ * SpriteBatch.  PBGEngine picks CanvasRenderer in 2D mode and GLES2Renderer
+ * otherwise; call setRenderer() from init() to use another one, e.g. a
+ * RecordingRenderer to run engine logic without a display.
+ * All methods are called from the game thread, between beginFrame() and
+ * endFrame() unless noted.
+ */
+package pbgames.pbgengine;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+public interface Renderer {
+
+	/**
+	 * beginFrame()
+	 * @return false if there is nothing to draw on yet; skip the frame
+	 */
+	public boolean beginFrame();
+
+	/**
+	 * beginFrame(Rect) Start a frame that only redraws part of the surface;
+	 * the rest keeps the previous frame. Backends may grow dirty, up to the
+	 * whole surface, and leave the final region in it.
+	 * @return false if there is nothing to draw on yet; skip the frame
+	 */
+	public boolean beginFrame(Rect dirty);
+
+	/**
+	 * endFrame() Present the frame
+	 */
+	public void endFrame();
+
+	/**
+	 * getCanvas() Canvas for free-form drawing this frame, or null if the
+	 * backend has none.
+	 */
+	public Canvas getCanvas();
+
+	/**
+	 * Size of the drawing surface, 0 before the first frame
+	 */
+	public int getWidth();
+
+	public int getHeight();
+
+	public void clear(int color);
+
+	/**
+	 * setTransform() Matrix applied on top of every matrix, quad and text
+	 * position drawn after it, until the next call; the engine sets one per
+	 * layer. null for none. Reset by beginFrame().
+	 */
+	public void setTransform(Matrix transform);
+
+	/**
+	 * drawBitmap() Draw the src rect of a bitmap (all of it if src is null)
+	 * through a transform. The paint's alpha applies.
+	 */
+	public void drawBitmap(Bitmap bitmap, Rect src, Matrix matrix, Paint paint);
+
+	/**
+	 * drawQuads() Draw textured quads as built by SpriteBatch: 4 vertices of
+	 * 2 floats per quad in screen space, texture coordinates in bitmap
+	 * pixels, one ARGB color per vertex modulating the texture. The arrays
+	 * need only hold quadCount quads; backends pad them where the platform
+	 * wants more.
+	 */
+	public void drawQuads(Texture texture, float[] vertices, float[] texCoords,
+			int[] colors, int quadCount, Paint paint);
+
+	public void drawText(String text, float x, float y, Paint paint);
+
+	/**
+	 * getDrawCalls() Draw calls issued since beginFrame()
+	 */
+	public int getDrawCalls();
+
+	/**
+	 * release() Free the backend's resources. Called on the game thread when
+	 * it exits.
+	 */
+	public void release();
+}
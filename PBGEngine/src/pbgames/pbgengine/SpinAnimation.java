@@ -7,6 +7,11 @@ public class SpinAnimation extends Animation {
     private float p_angleDist, p_velocity;
     
     public SpinAnimation(float velocity) {
+        reset(velocity);
+    }
+    
+    // reuse as if newly constructed
+    public void reset(float velocity) {
         animating = true;
         this.p_velocity = velocity;
         this.p_angleDist = 0.0f;
@@ -23,4 +28,16 @@ public class SpinAnimation extends Animation {
         return modified;
     }
 
+    // only touches its own fields
+    @Override
+    public boolean isParallelSafe() {
+        return true;
+    }
+
+    // changes the sprite's looks only
+    @Override
+    public boolean isCosmetic() {
+        return true;
+    }
+
 }
@@ -10,8 +10,6 @@ package pbgames.pbgengine;
  * collision, transforms, effects, etc.
  */
 
-import java.util.ListIterator;
-
 import pbgames.pbgengine.Texture;
 import android.graphics.*;
 import android.graphics.Bitmap.Config;
@@ -19,7 +17,7 @@ import android.renderscript.Float2;
 import android.util.Log;
 import pbgames.pbgengine.Animation;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 
 /**
  * Sprite class
@@ -36,9 +34,9 @@ import java.util.LinkedList;
 public class Sprite {
 	// declare identifying private variables
 	private PBGEngine p_engine;
-	private Canvas p_canvas, p_backCanvas;
+	private Canvas p_backCanvas;
 	private Texture p_texture;
-	private Paint p_paint;
+	private Paint p_paint, p_defaultPaint;
 	private String p_name;
 	//private Texture p_glow;	//TODO: Needs to be added as part of a class called GlowAnimation
 	private ColorFilter p_colorFilter;
@@ -47,26 +45,82 @@ public class Sprite {
 	// integers for use with pixel maths, frame position, alpha, and identifiers
 	private int p_width, p_height, p_columns, p_alpha, p_frame, p_identifier;
 
-	// LinkedList tracks number and order of animations applied to sprites
-	private LinkedList<Animation> p_animations;
+	// list tracks number and order of animations applied to sprites
+	private ArrayList<Animation> p_animations;
 
 	// scale and velocity are self explanatory; position is actual (pixel
-	// position is rounded)
-	private Float2 p_scale, p_velocity;
+	// position is rounded). The sprite owns all three: setters copy the
+	// values in, so no two sprites ever share one. Change position.x and
+	// position.y rather than the field; a position pointed elsewhere is
+	// copied back into p_position at the next step.
+	private Float2 p_scale, p_velocity, p_position;
 	public Float2 position;
 
 	// rotation, scaling, and translation here
 	private float p_rotation;
-	private Matrix p_mat_translate, p_mat_scale, p_mat_rotate, p_matrix;
+
+	// transform at the start of the last simulation step, for interpolation
+	private float p_prevX, p_prevY, p_prevScaleX, p_prevScaleY, p_prevRotation;
+	private boolean p_hasPrevious;
+	private Matrix p_matrix;
+
+	// what p_matrix and p_srcRect were last worked out from, so culling,
+	// dirty tracking and drawing share one prepareDraw() per frame
+	private boolean p_prepared;
+	private float p_preparedT, p_preparedX, p_preparedY, p_preparedScaleX,
+			p_preparedScaleY, p_preparedRotation;
+	private int p_preparedFrame, p_preparedWidth, p_preparedHeight,
+			p_preparedColumns;
+
+	// scratch rects reused by draw() so the hot path does not allocate
+	private Rect p_srcRect, p_dstRect;
+
+	// atlas sub-region frames are cut from; null means the whole texture
+	private Rect p_region;
 
 	// for applying various effects, transforms, and animations before rendering
-	// to the screen
+	// to the screen; only allocated while the back buffer is enabled
 	private Bitmap p_backBitmap;
+	private boolean p_backBufferEnabled;
 
 	// collision is here too
 	private boolean p_collidable, p_collided, p_active, p_debugMode;
 	private Sprite p_colliderSprite;
 
+	// bookkeeping for broadphases that track sprites between frames
+	Object p_broadphaseOwner;
+	int p_broadphaseStamp;
+
+	// what was drawn last, for dirty-rect tracking
+	private RectF p_drawnBounds, p_newBounds;
+	private boolean p_drawn;
+	private int p_drawnFrame, p_drawnAlpha;
+	private Bitmap p_drawnBitmap;
+	private Paint p_drawnPaint;
+	private ColorFilter p_drawnFilter;
+	private Xfermode p_drawnXfermode;
+
+	// simulation steps the cosmetic animations missed while culled, caught
+	// up a few per step once back in view
+	int p_skippedSteps;
+	static final int MAX_FAST_FORWARD = 60;
+	static final int CATCH_UP_STEPS = 4;
+
+	// membership of an EntityGroup, maintained by the group
+	EntityGroup p_group;
+	int p_groupHandle;
+	boolean p_removalPending;
+
+	// set while this sprite is on loan from a SpritePool
+	SpritePool p_pool;
+
+	// when stored in a SpriteStore, the fields above are a cache of our row;
+	// p_sync* hold the Float2 values last exchanged with it
+	private SpriteStore p_store;
+	private int p_handle;
+	private float p_syncX, p_syncY, p_syncScaleX, p_syncScaleY, p_syncVelX,
+			p_syncVelY;
+
 	/**
 	 * Sprite class primary constructor
 	 * 
@@ -92,23 +146,40 @@ public class Sprite {
 		p_width = width;
 		p_height = height;
 		p_columns = columns;
-		p_canvas = null;
-		p_texture = new Texture(engine);
+		p_texture = null; // created on first getTexture()
 		p_alpha = 255;
-		p_paint = new Paint();
-		p_animations = new LinkedList<Animation>();
-		position = new Float2(0, 0);
+		p_defaultPaint = new Paint();
+		p_paint = p_defaultPaint;
+		p_animations = new ArrayList<Animation>();
+		p_position = new Float2(0, 0);
+		position = p_position;
 		p_frame = 0;
 		p_scale = new Float2(1.0f, 1.0f);
 		p_rotation = 0.0f;
-		p_mat_translate = new Matrix();
-		p_mat_scale = new Matrix();
-		p_mat_rotate = new Matrix();
+		p_hasPrevious = false;
 		p_matrix = new Matrix();
+		p_prepared = false;
+		p_srcRect = new Rect();
+		p_dstRect = new Rect();
+		p_region = null;
+		p_drawnBounds = new RectF();
+		p_newBounds = new RectF();
+		p_drawn = false;
+		p_drawnBitmap = null;
+		p_skippedSteps = 0;
 		p_backBitmap = null;
 		p_backCanvas = null;
+		p_backBufferEnabled = false;
 		p_collidable = p_collided = false;
 		p_colliderSprite = null;
+		p_broadphaseOwner = null;
+		p_broadphaseStamp = 0;
+		p_group = null;
+		p_groupHandle = -1;
+		p_removalPending = false;
+		p_pool = null;
+		p_store = null;
+		p_handle = -1;
 		p_name = "";
 		p_identifier = 0;
 		p_velocity = new Float2(0, 0);
@@ -119,14 +190,31 @@ public class Sprite {
 	/**
 	 * draw() function
 	 * 
+	 * Draws the current frame through the engine renderer with the sprite's
+	 * transform. The intermediate back bitmap is only used when
+	 * setBackBufferEnabled(true) has been called, and never while threaded
+	 * rendering is on.
 	 */
 	public void draw() {
-		p_canvas = p_engine.getCanvas();
+		draw(p_engine.getFrameRenderer());
+	}
 
-		// fill in size if this sprite is not animated
-		if (p_width == 0 || p_height == 0) {
-			p_width = p_texture.getBitmap().getWidth();
-			p_height = p_texture.getBitmap().getHeight();
+	/**
+	 * draw(Renderer) Same, onto another renderer such as a layer cache
+	 */
+	void draw(Renderer renderer) {
+		if (!prepareDraw())
+			return;
+
+		p_paint.setAlpha(p_alpha);
+
+		// a recorded frame may still be replaying the back bitmap, so with
+		// threaded rendering turned on after the fact skip it
+		if (!p_backBufferEnabled || p_engine.getThreadedRendering()) {
+			// one blit: frame rect through the sprite transform
+			renderer.drawBitmap(p_texture.getBitmap(), p_srcRect, p_matrix,
+					p_paint);
+			return;
 		}
 
 		// create backBitmap for drawing all effects to
@@ -140,24 +228,12 @@ public class Sprite {
 		 * First, copy the animation frame onto a scratch bitmap.
 		 */
 
-		// define the source rect representing one frame
-		int u = (p_frame % p_columns) * p_width;
-		int v = (p_frame / p_columns) * p_height;
-		Rect src = new Rect(u, v, u + p_width, v + p_height);
-
-		// define the destination location
-		int x = 0;
-		int y = 0;
-		int w = p_width;
-		int h = p_height;
-		Rect dst = new Rect(x, y, x + w, y + h);
-
 		// wipe temp bitmap
 		p_backBitmap.eraseColor(Color.TRANSPARENT);
 
 		// copy backBitmap onto backCanvas
-		p_paint.setAlpha(p_alpha);
-		p_backCanvas.drawBitmap(p_texture.getBitmap(), src, dst, p_paint);
+		p_backCanvas.drawBitmap(p_texture.getBitmap(), p_srcRect, p_dstRect,
+				p_paint);
 		if (p_debugMode)
 			Log.d("Sprite class draw()", "p_backBitmap IS UPDATED with "+ p_name);
 
@@ -165,23 +241,230 @@ public class Sprite {
 		 * Second, draw the scratch bitmap using matrix transforms.
 		 */
 
-		// update transform matrices
-		p_mat_scale = new Matrix();
-		p_mat_scale.setScale(p_scale.x, p_scale.y);
+		// draw frame bitmap onto screen
+		renderer.drawBitmap(p_backBitmap, null, p_matrix, p_paint);
+	}
+
+	/**
+	 * prepareDraw() Work out this frame's source rect and the interpolated
+	 * transform, for draw() or a SpriteBatch. Repeated calls with nothing
+	 * changed in between return at once.
+	 * @return false if there is nothing to draw
+	 */
+	boolean prepareDraw() {
+		if (p_texture == null || p_texture.getBitmap() == null)
+			return false;
+		if (p_store != null)
+			pull();
+		float t = p_engine.getInterpolation();
+		if (p_prepared && t == p_preparedT && position.x == p_preparedX
+				&& position.y == p_preparedY && p_scale.x == p_preparedScaleX
+				&& p_scale.y == p_preparedScaleY
+				&& p_rotation == p_preparedRotation
+				&& p_frame == p_preparedFrame && p_width == p_preparedWidth
+				&& p_height == p_preparedHeight
+				&& p_columns == p_preparedColumns)
+			return true;
+
+		// fill in size if this sprite is not animated
+		if (p_width == 0 || p_height == 0) {
+			if (p_region != null) {
+				p_width = p_region.width();
+				p_height = p_region.height();
+			} else {
+				p_width = p_texture.getBitmap().getWidth();
+				p_height = p_texture.getBitmap().getHeight();
+			}
+			if (p_store != null)
+				push();
+		}
 
-		p_mat_rotate = new Matrix();
-		p_mat_rotate.setRotate((float) Math.toDegrees(p_rotation));
+		// define the source rect representing one frame
+		int u = (p_frame % p_columns) * p_width;
+		int v = (p_frame / p_columns) * p_height;
+		if (p_region != null) {
+			u += p_region.left;
+			v += p_region.top;
+		}
+		p_srcRect.set(u, v, u + p_width, v + p_height);
 
-		p_mat_translate = new Matrix();
-		p_mat_translate.setTranslate(position.x, position.y);
+		// define the destination location
+		p_dstRect.set(0, 0, p_width, p_height);
+
+		// draw between the last two simulation steps; jumps of more than half
+		// the screen (wrap-around, respawns) are not interpolated
+		float x = position.x;
+		float y = position.y;
+		float scaleX = p_scale.x;
+		float scaleY = p_scale.y;
+		float rotation = p_rotation;
+		if (p_hasPrevious
+				&& Math.abs(x - p_prevX) <= p_engine.getScreenWidth() / 2
+				&& Math.abs(y - p_prevY) <= p_engine.getScreenHeight() / 2) {
+			x = p_prevX + (x - p_prevX) * t;
+			y = p_prevY + (y - p_prevY) * t;
+			scaleX = p_prevScaleX + (scaleX - p_prevScaleX) * t;
+			scaleY = p_prevScaleY + (scaleY - p_prevScaleY) * t;
+			rotation = p_prevRotation + (rotation - p_prevRotation) * t;
+		}
 
-		p_matrix = new Matrix(); // set to identity
-		p_matrix.postConcat(p_mat_scale);
-		p_matrix.postConcat(p_mat_rotate);
-		p_matrix.postConcat(p_mat_translate);
+		// compose scale, then rotate, then translate in place
+		p_matrix.setScale(scaleX, scaleY);
+		p_matrix.postRotate((float) Math.toDegrees(rotation));
+		p_matrix.postTranslate(x, y);
+
+		p_prepared = true;
+		p_preparedT = t;
+		p_preparedX = position.x;
+		p_preparedY = position.y;
+		p_preparedScaleX = p_scale.x;
+		p_preparedScaleY = p_scale.y;
+		p_preparedRotation = p_rotation;
+		p_preparedFrame = p_frame;
+		p_preparedWidth = p_width;
+		p_preparedHeight = p_height;
+		p_preparedColumns = p_columns;
+		return true;
+	}
 
-		// draw frame bitmap onto screen
-		p_canvas.drawBitmap(p_backBitmap, p_matrix, p_paint);
+	/**
+	 * trackChanges() Work out where this sprite will be drawn this frame and
+	 * whether that differs from the last time it was tracked: position,
+	 * size, rotation, frame, alpha, bitmap, or the paint, its color filter
+	 * or transfer mode being swapped. Changes made inside the same paint or
+	 * filter objects are not seen; call PBGEngine.invalidate() for those.
+	 * @param dirty : grown by the old and new screen bounds on a change
+	 * @param transform : the layer's camera transform, null for none
+	 * @return true if the sprite changed
+	 */
+	boolean trackChanges(RectF dirty, Matrix transform) {
+		boolean visible = prepareDraw();
+		if (visible) {
+			p_newBounds.set(0, 0, p_width, p_height);
+			p_matrix.mapRect(p_newBounds);
+			if (transform != null)
+				transform.mapRect(p_newBounds);
+		}
+		boolean changed = visible != p_drawn;
+		if (visible && p_drawn && !changed)
+			changed = p_newBounds.left != p_drawnBounds.left
+					|| p_newBounds.top != p_drawnBounds.top
+					|| p_newBounds.right != p_drawnBounds.right
+					|| p_newBounds.bottom != p_drawnBounds.bottom
+					|| p_frame != p_drawnFrame || p_alpha != p_drawnAlpha
+					|| p_texture.getBitmap() != p_drawnBitmap
+					|| p_paint != p_drawnPaint
+					|| p_paint.getColorFilter() != p_drawnFilter
+					|| p_paint.getXfermode() != p_drawnXfermode;
+		if (!changed)
+			return false;
+
+		if (p_drawn)
+			dirty.union(p_drawnBounds);
+		p_drawn = visible;
+		if (visible) {
+			dirty.union(p_newBounds);
+			p_drawnBounds.set(p_newBounds);
+			p_drawnFrame = p_frame;
+			p_drawnAlpha = p_alpha;
+			p_drawnBitmap = p_texture.getBitmap();
+			p_drawnPaint = p_paint;
+			p_drawnFilter = p_paint.getColorFilter();
+			p_drawnXfermode = p_paint.getXfermode();
+		} else {
+			forgetPaint();
+		}
+		return true;
+	}
+
+	/**
+	 * isVisible() Whether this frame's drawing of the sprite (interpolated,
+	 * scaled and rotated) would overlap the viewport.
+	 */
+	boolean isVisible(RectF viewport) {
+		if (!prepareDraw())
+			return false;
+		p_newBounds.set(0, 0, p_width, p_height);
+		p_matrix.mapRect(p_newBounds);
+		return RectF.intersects(p_newBounds, viewport);
+	}
+
+	/**
+	 * forgetDrawn() The sprite is no longer drawn (inactive or removed); its
+	 * last bounds go into dirty so they get painted over.
+	 */
+	void forgetDrawn(RectF dirty) {
+		if (!p_drawn)
+			return;
+		dirty.union(p_drawnBounds);
+		p_drawn = false;
+		forgetPaint();
+	}
+
+	// drop references to what was last drawn
+	private void forgetPaint() {
+		p_drawnBitmap = null;
+		p_drawnPaint = null;
+		p_drawnFilter = null;
+		p_drawnXfermode = null;
+	}
+
+	/**
+	 * getDrawnBounds() Screen bounds found by the last trackChanges(), empty
+	 * if not drawn
+	 */
+	RectF getDrawnBounds() {
+		if (!p_drawn)
+			p_drawnBounds.setEmpty();
+		return p_drawnBounds;
+	}
+
+	/**
+	 * Transform and frame rect worked out by the last prepareDraw()
+	 */
+	Matrix getDrawMatrix() {
+		return p_matrix;
+	}
+
+	Rect getSourceRect() {
+		return p_srcRect;
+	}
+
+	/**
+	 * savePrevious()
+	 * Called by the engine at the start of every simulation step.
+	 */
+	void savePrevious() {
+		ownPosition();
+		if (p_store != null)
+			pull();
+		p_prevX = position.x;
+		p_prevY = position.y;
+		p_prevScaleX = p_scale.x;
+		p_prevScaleY = p_scale.y;
+		p_prevRotation = p_rotation;
+		p_hasPrevious = true;
+		p_prepared = false;
+	}
+
+	// take position back into the Float2 this sprite owns if the game
+	// pointed the public field at another one
+	private void ownPosition() {
+		if (position == p_position)
+			return;
+		p_position.x = position.x;
+		p_position.y = position.y;
+		position = p_position;
+	}
+
+	/**
+	 * resetInterpolation()
+	 * Draw at the current transform until the next simulation step, e.g. after
+	 * teleporting a sprite.
+	 */
+	public void resetInterpolation() {
+		p_hasPrevious = false;
+		p_prepared = false;
 	}
 
 	// add an animation technique to this sprite
@@ -189,37 +472,263 @@ public class Sprite {
 		p_animations.add(anim);
 	}
 
-	// remove all animations
+	// remove all animations; pooled ones go back to their pool
 	public void removeAnimations() {
 		if (p_animations.isEmpty())
 			return;
-		while (!p_animations.isEmpty()) {
-			p_animations.removeFirst();
+		for (int n = 0; n < p_animations.size(); n++) {
+			Animation anim = p_animations.get(n);
+			if (anim.p_pool != null)
+				anim.p_pool.free(anim);
 		}
+		p_animations.clear();
 	}
 
 	// run through all of the animations
 	public void animate() {
+		animate(true, true);
+	}
+
+	// one step of the animations that move the sprite and/or of the
+	// cosmetic ones (see Animation.isCosmetic())
+	private void animate(boolean moving, boolean cosmetic) {
 		if (p_animations.size() == 0)
 			return;
-
-		ListIterator<Animation> iterator = p_animations.listIterator();
-		while (iterator.hasNext()) {
-			Animation anim = iterator.next();
+		ownPosition();
+		if (p_store != null)
+			pull();
+
+		for (int n = 0; n < p_animations.size(); n++) {
+			Animation anim = p_animations.get(n);
+			if (anim.isCosmetic() ? !cosmetic : !moving)
+				continue;
 			if (anim.animating) {
 				// p_glow = anim.glow(p_glow);
 				p_paint = anim.adjustColor(p_paint);
 				p_frame = anim.adjustFrame(p_frame);
 				p_alpha = anim.adjustTransparency(p_alpha);
 				p_rotation = anim.adjustRotation(p_rotation);
-				p_scale = anim.adjustScale(p_scale);
-				position = anim.adjustPosition(position);
+				// an animation may hand back another Float2; keep ours
+				Float2 scale = anim.adjustScale(p_scale);
+				if (scale != p_scale) {
+					p_scale.x = scale.x;
+					p_scale.y = scale.y;
+				}
+				Float2 moved = anim.adjustPosition(position);
+				if (moved != position) {
+					position.x = moved.x;
+					position.y = moved.y;
+				}
 				p_active = anim.adjustActive(p_active);
 			} else {
-				p_animations.remove(anim);
+				p_animations.remove(n);
+				if (anim.p_pool != null)
+					anim.p_pool.free(anim);
+				break;
+			}
+		}
+		if (p_store != null)
+			push();
+	}
+
+	/**
+	 * stepAnimations() One simulation step of animate() for the engine.
+	 * Given a viewport, a sprite outside it runs only the animations that
+	 * are not cosmetic and counts the step for the others; back in view,
+	 * those catch up on at most MAX_FAST_FORWARD missed steps,
+	 * CATCH_UP_STEPS at a time, so no single step pays for a long absence.
+	 * @param scratch : receives the sprite's bounds
+	 */
+	void stepAnimations(RectF viewport, RectF scratch) {
+		if (viewport != null) {
+			if (!RectF.intersects(getBoundsScaledF(scratch), viewport)) {
+				if (p_skippedSteps < MAX_FAST_FORWARD)
+					p_skippedSteps++;
+				animate(true, false);
 				return;
 			}
+			for (int n = 0; n < CATCH_UP_STEPS && p_skippedSteps > 0; n++) {
+				p_skippedSteps--;
+				animate(false, true);
+			}
 		}
+		animate(true, true);
+	}
+
+	/**
+	 * isParallelSafe() Whether every animation of this sprite may run on a
+	 * worker thread, see Animation.isParallelSafe()
+	 */
+	boolean isParallelSafe() {
+		if (position != p_position)
+			return false; // shared until the game thread takes it back
+		for (int n = 0; n < p_animations.size(); n++) {
+			if (!p_animations.get(n).isParallelSafe())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * reset() Put this sprite back to the state a new one starts in, without
+	 * allocating. Texture, atlas region, width, height and columns are kept
+	 * so a pool of one kind of sprite does not reload them. Called by
+	 * SpritePool; take the sprite out of the group first.
+	 */
+	public void reset() {
+		if (p_store != null)
+			p_store.remove(this);
+		removeAnimations();
+		p_defaultPaint.reset();
+		p_paint = p_defaultPaint;
+		p_colorFilter = null;
+		p_icm = null;
+		p_alpha = 255;
+		p_frame = 0;
+		p_rotation = 0.0f;
+		position = p_position;
+		position.x = position.y = 0;
+		p_scale.x = p_scale.y = 1.0f;
+		p_velocity.x = p_velocity.y = 0;
+		p_hasPrevious = false;
+		p_prepared = false;
+		p_drawn = false;
+		forgetPaint();
+		p_skippedSteps = 0;
+		setBackBufferEnabled(false);
+		p_collidable = p_collided = false;
+		p_colliderSprite = null;
+		p_name = "";
+		p_identifier = 0;
+		p_active = true;
+	}
+
+	/**
+	 * SpriteStore binding
+	 * attach() and detach() are called by SpriteStore.add()/remove().
+	 */
+	void attach(SpriteStore store, int handle) {
+		p_store = store;
+		p_handle = handle;
+		push();
+	}
+
+	void detach() {
+		pull();
+		p_store = null;
+		p_handle = -1;
+	}
+
+	public SpriteStore getStore() {
+		return p_store;
+	}
+
+	public int getHandle() {
+		return p_handle;
+	}
+
+	/**
+	 * Refresh the cached fields from our store row. Float2 fields written
+	 * directly since the last exchange win and go into the row instead.
+	 */
+	private void pull() {
+		SpriteStore st = p_store;
+		int i = st.row(p_handle);
+		if (position.x != p_syncX || position.y != p_syncY) {
+			st.x[i] = position.x;
+			st.y[i] = position.y;
+		} else {
+			position.x = st.x[i];
+			position.y = st.y[i];
+		}
+		if (p_scale.x != p_syncScaleX || p_scale.y != p_syncScaleY) {
+			st.scaleX[i] = p_scale.x;
+			st.scaleY[i] = p_scale.y;
+		} else {
+			p_scale.x = st.scaleX[i];
+			p_scale.y = st.scaleY[i];
+		}
+		if (p_velocity.x != p_syncVelX || p_velocity.y != p_syncVelY) {
+			st.vx[i] = p_velocity.x;
+			st.vy[i] = p_velocity.y;
+		} else {
+			p_velocity.x = st.vx[i];
+			p_velocity.y = st.vy[i];
+		}
+		p_rotation = st.rotation[i];
+		p_alpha = st.alpha[i];
+		p_frame = st.frame[i];
+		p_width = st.width[i];
+		p_height = st.height[i];
+		p_active = (st.flags[i] & SpriteStore.FLAG_ACTIVE) != 0;
+		p_collidable = (st.flags[i] & SpriteStore.FLAG_COLLIDABLE) != 0;
+		p_collided = (st.flags[i] & SpriteStore.FLAG_COLLIDED) != 0;
+		markSynced();
+	}
+
+	/**
+	 * Copy position, scale and velocity into our store row if they were
+	 * written directly since the last exchange, leaving the rest alone.
+	 */
+	void flushWrites() {
+		SpriteStore st = p_store;
+		int i = st.row(p_handle);
+		if (position.x != p_syncX || position.y != p_syncY) {
+			st.x[i] = p_syncX = position.x;
+			st.y[i] = p_syncY = position.y;
+		}
+		if (p_scale.x != p_syncScaleX || p_scale.y != p_syncScaleY) {
+			st.scaleX[i] = p_syncScaleX = p_scale.x;
+			st.scaleY[i] = p_syncScaleY = p_scale.y;
+		}
+		if (p_velocity.x != p_syncVelX || p_velocity.y != p_syncVelY) {
+			st.vx[i] = p_syncVelX = p_velocity.x;
+			st.vy[i] = p_syncVelY = p_velocity.y;
+		}
+	}
+
+	/**
+	 * Write the cached fields into our store row.
+	 */
+	private void push() {
+		SpriteStore st = p_store;
+		int i = st.row(p_handle);
+		st.x[i] = position.x;
+		st.y[i] = position.y;
+		st.vx[i] = p_velocity.x;
+		st.vy[i] = p_velocity.y;
+		st.scaleX[i] = p_scale.x;
+		st.scaleY[i] = p_scale.y;
+		st.rotation[i] = p_rotation;
+		st.alpha[i] = p_alpha;
+		st.frame[i] = p_frame;
+		st.width[i] = p_width;
+		st.height[i] = p_height;
+		st.flags[i] = (p_active ? SpriteStore.FLAG_ACTIVE : 0)
+				| (p_collidable ? SpriteStore.FLAG_COLLIDABLE : 0)
+				| (p_collided ? SpriteStore.FLAG_COLLIDED : 0);
+		markSynced();
+	}
+
+	private void markSynced() {
+		p_syncX = position.x;
+		p_syncY = position.y;
+		p_syncScaleX = p_scale.x;
+		p_syncScaleY = p_scale.y;
+		p_syncVelX = p_velocity.x;
+		p_syncVelY = p_velocity.y;
+	}
+
+	private void setFlag(int flag, boolean value) {
+		int i = p_store.row(p_handle);
+		if (value)
+			p_store.flags[i] |= flag;
+		else
+			p_store.flags[i] &= ~flag;
+	}
+
+	private boolean getFlag(int flag) {
+		return (p_store.flags[p_store.row(p_handle)] & flag) != 0;
 	}
 
 	/**
@@ -228,15 +737,23 @@ public class Sprite {
 
 	public void setAlpha(int alpha) {
 		p_alpha = alpha;
+		if (p_store != null)
+			p_store.alpha[p_store.row(p_handle)] = alpha;
 	}
 
 	public int getAlpha() {
+		if (p_store != null)
+			return p_store.alpha[p_store.row(p_handle)];
 		return p_alpha;
 	}
 
 	public void setPaint(Paint paint) {
 		p_paint = paint;
 	}
+
+	public Paint getPaint() {
+		return p_paint;
+	}
 	
 	public void setPaintWithColorFilter(Paint paint, ColorMatrixColorFilter cf) {
 		paint.setColorFilter(cf);
@@ -250,82 +767,165 @@ public class Sprite {
 
 	public void setTexture(Texture texture) {
 		p_texture = texture;
+		p_region = null;
+		p_prepared = false;
+	}
+
+	/**
+	 * setTexture(TextureAtlas, String)
+	 * Draw from a named region of a packed atlas. Frames are laid out inside
+	 * the region using this sprite's width, height and columns; a sprite with
+	 * no size set uses the whole region as its single frame.
+	 * @return false if the atlas has no such region
+	 */
+	public boolean setTexture(TextureAtlas atlas, String regionName) {
+		Rect region = atlas.getRegion(regionName);
+		if (region == null) {
+			Log.w("Sprite", "setTexture: no atlas region " + regionName);
+			return false;
+		}
+		p_texture = atlas.getTexture();
+		if (p_region == null)
+			p_region = new Rect();
+		p_region.set(region);
+		p_prepared = false;
+		return true;
 	}
 
 	public Texture getTexture() {
+		if (p_texture == null)
+			p_texture = new Texture(p_engine);
 		return p_texture;
 	}
 
+	/**
+	 * getRegion() Atlas region frames are cut from, null for the whole
+	 * texture; after changing it, call setTexture() again
+	 */
+	public Rect getRegion() {
+		return p_region;
+	}
+
+	/**
+	 * setPosition() Copy x and y in; the Float2 passed stays the caller's
+	 */
 	public void setPosition(Float2 position) {
-		this.position = position;
+		ownPosition();
+		if (p_store != null)
+			pull();
+		p_position.x = position.x;
+		p_position.y = position.y;
+		if (p_store != null)
+			push();
 	}
 
 	public Float2 getPosition() {
+		ownPosition();
+		if (p_store != null)
+			pull();
 		return position;
 	}
 
 	public int getWidth() {
+		if (p_store != null)
+			return p_store.width[p_store.row(p_handle)];
 		return p_width;
 	}
 
 	public void setWidth(int width) {
 		p_width = width;
+		if (p_store != null)
+			p_store.width[p_store.row(p_handle)] = width;
 	}
 
 	public int getHeight() {
+		if (p_store != null)
+			return p_store.height[p_store.row(p_handle)];
 		return p_height;
 	}
 
 	public void setHeight(int height) {
 		p_height = height;
+		if (p_store != null)
+			p_store.height[p_store.row(p_handle)] = height;
 	}
 
 	public Point getSize() {
-		return new Point(p_width, p_height);
+		return new Point(getWidth(), getHeight());
 	}
 
 	public int getFrame() {
+		if (p_store != null)
+			return p_store.frame[p_store.row(p_handle)];
 		return p_frame;
 	}
 
 	public void setFrame(int frame) {
 		p_frame = frame;
+		if (p_store != null)
+			p_store.frame[p_store.row(p_handle)] = frame;
 	}
 
 	public Float2 getScale() {
+		if (p_store != null)
+			pull();
 		return p_scale;
 	}
 
+	/**
+	 * setScale() Copy x and y in; the Float2 passed stays the caller's
+	 */
 	public void setScale(Float2 scale) {
-		p_scale = scale;
+		setScale(scale.x, scale.y);
 	}
 
 	public void setScale(float scale) {
-		p_scale = new Float2(scale, scale);
+		setScale(scale, scale);
+	}
+
+	public void setScale(float x, float y) {
+		if (p_store != null)
+			pull();
+		p_scale.x = x;
+		p_scale.y = y;
+		if (p_store != null)
+			push();
 	}
 
 	public float getRotation() {
+		if (p_store != null)
+			return p_store.rotation[p_store.row(p_handle)];
 		return p_rotation;
 	}
 
 	public void setRotation(float radians) {
 		p_rotation = radians;
+		if (p_store != null)
+			p_store.rotation[p_store.row(p_handle)] = radians;
 	}
 
 	public boolean getCollidable() {
+		if (p_store != null)
+			return getFlag(SpriteStore.FLAG_COLLIDABLE);
 		return p_collidable;
 	}
 
 	public void setCollidable(boolean value) {
 		p_collidable = value;
+		if (p_store != null)
+			setFlag(SpriteStore.FLAG_COLLIDABLE, value);
 	}
 
 	public boolean getCollided() {
+		if (p_store != null)
+			return getFlag(SpriteStore.FLAG_COLLIDED);
 		return p_collided;
 	}
 
 	public void setCollided(boolean value) {
 		p_collided = value;
+		if (p_store != null)
+			setFlag(SpriteStore.FLAG_COLLIDED, value);
 	}
 
 	public Sprite getColliderSprite() {
@@ -341,6 +941,8 @@ public class Sprite {
 	}
 
 	public void setName(String value) {
+		if (p_group != null)
+			p_group.rename(this, p_name, value);
 		p_name = value;
 	}
 
@@ -360,44 +962,111 @@ public class Sprite {
 	}
 
 	public RectF getBounds() {
-		RectF r = new RectF(position.x, position.y, position.x + p_width,
-				position.y + p_height);
-		return r;
+		return getBounds(new RectF());
+	}
+
+	/**
+	 * getBounds(RectF) Fills 'out' instead of allocating a new RectF.
+	 * @return out
+	 */
+	public RectF getBounds(RectF out) {
+		if (p_store != null) {
+			int i = p_store.row(p_handle);
+			float x = p_store.x[i], y = p_store.y[i];
+			out.set(x, y, x + p_store.width[i], y + p_store.height[i]);
+			return out;
+		}
+		out.set(position.x, position.y, position.x + p_width, position.y
+				+ p_height);
+		return out;
 	}
 
 	public RectF getBoundsScaledF() {
-		RectF r = getBounds();
-		r.right = (int) (r.left + r.width() * p_scale.x);
-		r.bottom = (int) (r.top + r.height() * p_scale.y);
-		return r;
+		return getBoundsScaledF(new RectF());
+	}
+
+	/**
+	 * getBoundsScaledF(RectF) Fills 'out' instead of allocating a new RectF.
+	 * @return out
+	 */
+	public RectF getBoundsScaledF(RectF out) {
+		if (p_store != null) {
+			int i = p_store.row(p_handle);
+			float x = p_store.x[i], y = p_store.y[i];
+			out.set(x, y, (int) (x + p_store.width[i] * p_store.scaleX[i]),
+					(int) (y + p_store.height[i] * p_store.scaleY[i]));
+			return out;
+		}
+		getBounds(out);
+		out.right = (int) (out.left + p_width * p_scale.x);
+		out.bottom = (int) (out.top + p_height * p_scale.y);
+		return out;
 	}
 
 	public Float2 getVelocity() {
+		if (p_store != null)
+			pull();
 		return p_velocity;
 	}
 
+	/**
+	 * setVelocity() Copy x and y in; the Float2 passed stays the caller's
+	 */
 	public void setVelocity(Float2 value) {
-		p_velocity = value;
+		setVelocity(value.x, value.y);
 	}
 
 	public void setVelocity(double x, double y) {
-		p_velocity.x = (float) x;
-		p_velocity.y = (float) y;
+		setVelocity((float) x, (float) y);
 	}
 
 	public void setVelocity(float x, float y) {
+		if (p_store != null)
+			pull();
 		p_velocity.x = x;
 		p_velocity.y = y;
+		if (p_store != null)
+			push();
 	}
 
 	public boolean getActive() {
+		if (p_store != null)
+			return getFlag(SpriteStore.FLAG_ACTIVE);
 		return p_active;
 	}
 
 	public void setActive(boolean value) {
 		p_active = value;
+		if (p_store != null)
+			setFlag(SpriteStore.FLAG_ACTIVE, value);
 	}
 	
+	/**
+	 * setBackBufferEnabled()
+	 * Route drawing through a per-sprite ARGB_8888 scratch bitmap, for effects
+	 * that need the composed frame before it reaches the screen. Costs an
+	 * extra blit and width*height*4 bytes, which are dropped again on disable
+	 * (not recycled, a recorded frame may still draw them).
+	 * The bitmap is erased and redrawn in place each frame, which would tear
+	 * while the RenderThread replays the last one, so it cannot be enabled
+	 * with threaded rendering on.
+	 * @throws IllegalStateException if PBGEngine.getThreadedRendering()
+	 */
+	public void setBackBufferEnabled(boolean value) {
+		if (value && p_engine.getThreadedRendering())
+			throw new IllegalStateException(
+					"back buffer with threaded rendering");
+		p_backBufferEnabled = value;
+		if (!value && p_backBitmap != null) {
+			p_backCanvas = null;
+			p_backBitmap = null;
+		}
+	}
+
+	public boolean getBackBufferEnabled() {
+		return p_backBufferEnabled;
+	}
+
 	public ColorFilter getColorFilter() {
 		return p_colorFilter;
 	}
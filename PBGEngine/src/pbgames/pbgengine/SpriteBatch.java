@@ -0,0 +1,180 @@
+/** 
+ * SpriteBatch Class
+ * @author PistolBear
+ * 
+ * Draws runs of sprites that share a texture and a compatible Paint (same
+ * color filter and transfer mode) with one Renderer.drawQuads() call per
+ * run, which is a single Canvas.drawVertices() or glDrawElements().  Each sprite becomes a textured quad: corners transformed on the CPU
+ * into preallocated vertex arrays, texture coordinates from its frame rect,
+ * and its alpha as a per-vertex color.  Draw order is kept, so a run ends
+ * wherever the texture changes; sprites using the back buffer are drawn on
+ * their own.
+ * 
+ * Turn on per group with EntityGroup.setBatched().
+ */
+package pbgames.pbgengine;
+
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Xfermode;
+
+public class SpriteBatch {
+	// renderers index quads with shorts, which caps a batch at 16384 quads
+	public static final int MAX_SPRITES = 16384;
+
+	private int p_capacity;
+	private float[] p_vertices, p_texCoords, p_corners;
+	private int[] p_colors;
+	private int p_count;
+
+	private Renderer p_renderer;
+	private Texture p_texture;
+	private ColorFilter p_colorFilter;
+	private Xfermode p_xfermode;
+	private Paint p_paint;
+
+	private int p_drawCalls, p_spritesDrawn;
+
+	public SpriteBatch() {
+		this(1024);
+	}
+
+	/**
+	 * SpriteBatch
+	 * @param capacity : quads per draw call; runs longer than this are split
+	 */
+	public SpriteBatch(int capacity) {
+		if (capacity < 1)
+			capacity = 1;
+		if (capacity > MAX_SPRITES)
+			capacity = MAX_SPRITES;
+		p_capacity = capacity;
+		p_vertices = new float[capacity * 8];
+		p_texCoords = new float[capacity * 8];
+		p_colors = new int[capacity * 4];
+		p_corners = new float[8];
+		p_paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+		p_count = 0;
+		p_renderer = null;
+	}
+
+	/**
+	 * begin() Start a frame of batched drawing with a renderer
+	 */
+	public void begin(Renderer renderer) {
+		p_renderer = renderer;
+		p_texture = null;
+		p_count = 0;
+	}
+
+	/**
+	 * draw() Queue a sprite, flushing first if it cannot join the current
+	 * run.
+	 */
+	public void draw(Sprite sprite) {
+		if (sprite.getBackBufferEnabled()) {
+			flush();
+			sprite.draw(p_renderer);
+			p_drawCalls++;
+			p_spritesDrawn++;
+			return;
+		}
+		if (!sprite.prepareDraw())
+			return;
+
+		Texture texture = sprite.getTexture();
+		Paint paint = sprite.getPaint();
+		ColorFilter filter = paint.getColorFilter();
+		Xfermode xfermode = paint.getXfermode();
+		if (texture != p_texture || filter != p_colorFilter
+				|| xfermode != p_xfermode || p_count == p_capacity) {
+			flush();
+			p_texture = texture;
+			p_colorFilter = filter;
+			p_xfermode = xfermode;
+		}
+
+		// quad corners in sprite space, then through its transform
+		float w = sprite.getWidth();
+		float h = sprite.getHeight();
+		float[] c = p_corners;
+		c[0] = 0;
+		c[1] = 0;
+		c[2] = w;
+		c[3] = 0;
+		c[4] = w;
+		c[5] = h;
+		c[6] = 0;
+		c[7] = h;
+		int v = p_count * 8;
+		sprite.getDrawMatrix().mapPoints(p_vertices, v, c, 0, 4);
+
+		// texture coordinates in bitmap pixels
+		Rect src = sprite.getSourceRect();
+		float[] t = p_texCoords;
+		t[v] = src.left;
+		t[v + 1] = src.top;
+		t[v + 2] = src.right;
+		t[v + 3] = src.top;
+		t[v + 4] = src.right;
+		t[v + 5] = src.bottom;
+		t[v + 6] = src.left;
+		t[v + 7] = src.bottom;
+
+		// white at the sprite's alpha, modulated with the texture
+		int color = (sprite.getAlpha() & 0xff) << 24 | 0xffffff;
+		int ci = p_count * 4;
+		p_colors[ci] = color;
+		p_colors[ci + 1] = color;
+		p_colors[ci + 2] = color;
+		p_colors[ci + 3] = color;
+
+		p_count++;
+		p_spritesDrawn++;
+	}
+
+	/**
+	 * end() Draw whatever is still queued
+	 */
+	public void end() {
+		flush();
+		p_renderer = null;
+		p_texture = null;
+		p_colorFilter = null;
+		p_xfermode = null;
+	}
+
+	private void flush() {
+		if (p_count == 0)
+			return;
+		if (p_texture.getBitmap() != null) {
+			p_paint.setColorFilter(p_colorFilter);
+			p_paint.setXfermode(p_xfermode);
+			p_renderer.drawQuads(p_texture, p_vertices, p_texCoords, p_colors,
+					p_count, p_paint);
+			p_drawCalls++;
+		}
+		p_count = 0;
+	}
+
+	/**
+	 * getDrawCalls() Batches drawn since resetStats()
+	 */
+	public int getDrawCalls() {
+		return p_drawCalls;
+	}
+
+	public int getSpritesDrawn() {
+		return p_spritesDrawn;
+	}
+
+	public void resetStats() {
+		p_drawCalls = 0;
+		p_spritesDrawn = 0;
+	}
+
+	public int getCapacity() {
+		return p_capacity;
+	}
+}
@@ -0,0 +1,63 @@
+/** 
+ * SpritePool Class
+ * @author PistolBear
+ * 
+ * Pool of same-sized sprites.  Sprites obtained here go back to the pool
+ * by themselves once they are inactive and the engine takes them out of the
+ * group, so a projectile only needs setActive(false) to be recycled.  A
+ * recycled sprite keeps its texture, width, height and columns; everything
+ * else is back to the constructor defaults (see Sprite.reset()).
+ */
+package pbgames.pbgengine;
+
+public class SpritePool extends Pool<Sprite> {
+	private PBGEngine p_engine;
+	private int p_width, p_height, p_columns;
+
+	public SpritePool(PBGEngine engine) {
+		this(engine, 0, 0, 1);
+	}
+
+	public SpritePool(PBGEngine engine, int width, int height, int columns) {
+		this(engine, width, height, columns, 16, Integer.MAX_VALUE);
+	}
+
+	public SpritePool(PBGEngine engine, int width, int height, int columns,
+			int initialCapacity, int max) {
+		super(initialCapacity, max);
+		p_engine = engine;
+		p_width = width;
+		p_height = height;
+		p_columns = columns;
+	}
+
+	@Override
+	protected Sprite newObject() {
+		return new Sprite(p_engine, p_width, p_height, p_columns);
+	}
+
+	@Override
+	protected void reset(Sprite sprite) {
+		sprite.reset();
+	}
+
+	@Override
+	public Sprite obtain() {
+		Sprite sprite = super.obtain();
+		sprite.p_pool = this;
+		return sprite;
+	}
+
+	/**
+	 * free() Sprites that did not come from this pool, or were already
+	 * freed, are ignored. Take the sprite out of the group first, or just
+	 * deactivate it and let the engine free it.
+	 */
+	@Override
+	public void free(Sprite sprite) {
+		if (sprite == null || sprite.p_pool != this)
+			return;
+		sprite.p_pool = null;
+		super.free(sprite);
+	}
+}
@@ -0,0 +1,309 @@
+/** 
+ * SpriteStore Class
+ * @author PistolBear
+ * 
+ * Optional data-oriented storage for sprite state.  Position, velocity,
+ * scale, rotation, alpha, frame, size and flags live in parallel primitive
+ * arrays, densely packed and addressed through stable handles.  A Sprite
+ * added to the store becomes a view over its row, and the movement, bounds
+ * and collision passes run as straight loops over the arrays.
+ * 
+ * The store is also a Broadphase: a sort-and-sweep over its own bounds
+ * columns.  PBGEngine.enableSpriteStore() installs it as such.
+ * 
+ * Sprites in a store should be moved with their setters.  Writes straight to
+ * the public position field (or to the scale and velocity Float2s) reach
+ * the store at the next flushWrites(), which the engine calls every step
+ * right after update(), or at the sprite's next getter or setter call.  A
+ * direct write wins over the row: made in update() it is what integrate()
+ * moves on from; made later in the step it replaces that step's result.
+ */
+package pbgames.pbgengine;
+
+import java.util.Arrays;
+
+public class SpriteStore implements Broadphase {
+	public static final int FLAG_ACTIVE = 1;
+	public static final int FLAG_COLLIDABLE = 2;
+	public static final int FLAG_COLLIDED = 4;
+
+	// dense columns, rows 0 .. p_count-1
+	float[] x, y, vx, vy, scaleX, scaleY, rotation;
+	int[] alpha, frame, flags, width, height;
+	float[] minX, minY, maxX, maxY;
+	private Sprite[] p_sprites;
+	private int p_count;
+
+	// handle <-> row mapping; free handles are reused
+	private int[] p_rowOfHandle, p_handleOfRow, p_freeHandles;
+	private int p_freeCount, p_handleCount;
+
+	// rows ordered by minX for the sweep, kept between frames; removals leave
+	// stale entries that compactOrder() drops before the next add or sweep
+	private int[] p_order;
+	private int p_orderCount;
+	private boolean p_orderStale;
+
+	private boolean p_integrateVelocity;
+
+	public SpriteStore() {
+		this(256);
+	}
+
+	/**
+	 * SpriteStore
+	 * @param capacity : rows to preallocate; the store grows past this
+	 */
+	public SpriteStore(int capacity) {
+		if (capacity < 16)
+			capacity = 16;
+		allocate(capacity);
+		p_count = 0;
+		p_rowOfHandle = new int[capacity];
+		p_freeHandles = new int[capacity];
+		p_freeCount = 0;
+		p_handleCount = 0;
+		p_orderCount = 0;
+		p_orderStale = false;
+		p_integrateVelocity = false;
+	}
+
+	private void allocate(int size) {
+		x = new float[size];
+		y = new float[size];
+		vx = new float[size];
+		vy = new float[size];
+		scaleX = new float[size];
+		scaleY = new float[size];
+		rotation = new float[size];
+		alpha = new int[size];
+		frame = new int[size];
+		flags = new int[size];
+		width = new int[size];
+		height = new int[size];
+		minX = new float[size];
+		minY = new float[size];
+		maxX = new float[size];
+		maxY = new float[size];
+		p_sprites = new Sprite[size];
+		p_handleOfRow = new int[size];
+		p_order = new int[size];
+	}
+
+	private void grow() {
+		int size = x.length * 2;
+		x = Arrays.copyOf(x, size);
+		y = Arrays.copyOf(y, size);
+		vx = Arrays.copyOf(vx, size);
+		vy = Arrays.copyOf(vy, size);
+		scaleX = Arrays.copyOf(scaleX, size);
+		scaleY = Arrays.copyOf(scaleY, size);
+		rotation = Arrays.copyOf(rotation, size);
+		alpha = Arrays.copyOf(alpha, size);
+		frame = Arrays.copyOf(frame, size);
+		flags = Arrays.copyOf(flags, size);
+		width = Arrays.copyOf(width, size);
+		height = Arrays.copyOf(height, size);
+		minX = Arrays.copyOf(minX, size);
+		minY = Arrays.copyOf(minY, size);
+		maxX = Arrays.copyOf(maxX, size);
+		maxY = Arrays.copyOf(maxY, size);
+		p_sprites = Arrays.copyOf(p_sprites, size);
+		p_handleOfRow = Arrays.copyOf(p_handleOfRow, size);
+		p_order = Arrays.copyOf(p_order, size);
+	}
+
+	/**
+	 * add() Move a sprite's state into the store; the sprite reads and writes
+	 * its row from now on.
+	 * @return the sprite's handle
+	 */
+	public int add(Sprite sprite) {
+		if (sprite.getStore() != null)
+			return sprite.getHandle();
+		if (p_count == x.length)
+			grow();
+
+		int handle;
+		if (p_freeCount > 0) {
+			handle = p_freeHandles[--p_freeCount];
+		} else {
+			if (p_handleCount == p_rowOfHandle.length) {
+				p_rowOfHandle = Arrays.copyOf(p_rowOfHandle,
+						p_rowOfHandle.length * 2);
+				p_freeHandles = Arrays.copyOf(p_freeHandles,
+						p_freeHandles.length * 2);
+			}
+			handle = p_handleCount++;
+		}
+
+		compactOrder();
+		int row = p_count++;
+		p_rowOfHandle[handle] = row;
+		p_handleOfRow[row] = handle;
+		p_sprites[row] = sprite;
+		p_order[p_orderCount++] = row;
+		sprite.attach(this, handle);
+		updateBounds(row);
+		return handle;
+	}
+
+	/**
+	 * remove() Copy the row back into the sprite and free it. The last row
+	 * is swapped into the hole, so this is O(1).
+	 */
+	public void remove(Sprite sprite) {
+		if (sprite.getStore() != this)
+			return;
+		int handle = sprite.getHandle();
+		int row = p_rowOfHandle[handle];
+		sprite.detach();
+
+		int last = --p_count;
+		if (row != last) {
+			x[row] = x[last];
+			y[row] = y[last];
+			vx[row] = vx[last];
+			vy[row] = vy[last];
+			scaleX[row] = scaleX[last];
+			scaleY[row] = scaleY[last];
+			rotation[row] = rotation[last];
+			alpha[row] = alpha[last];
+			frame[row] = frame[last];
+			flags[row] = flags[last];
+			width[row] = width[last];
+			height[row] = height[last];
+			minX[row] = minX[last];
+			minY[row] = minY[last];
+			maxX[row] = maxX[last];
+			maxY[row] = maxY[last];
+			p_sprites[row] = p_sprites[last];
+			p_handleOfRow[row] = p_handleOfRow[last];
+			p_rowOfHandle[p_handleOfRow[row]] = row;
+		}
+		p_sprites[last] = null;
+		p_rowOfHandle[handle] = -1;
+		p_freeHandles[p_freeCount++] = handle;
+		p_orderStale = true;
+	}
+
+	/**
+	 * Drop sweep order entries for rows past the end. Each live row is still
+	 * listed exactly once; rows that received swapped data are merely out of
+	 * place and the next insertion sort moves them.
+	 */
+	private void compactOrder() {
+		if (!p_orderStale)
+			return;
+		int n = 0;
+		for (int i = 0; i < p_orderCount; i++) {
+			if (p_order[i] < p_count)
+				p_order[n++] = p_order[i];
+		}
+		p_orderCount = n;
+		p_orderStale = false;
+	}
+
+	/**
+	 * row() Dense row of a handle, -1 if the handle is not in use
+	 */
+	public int row(int handle) {
+		return p_rowOfHandle[handle];
+	}
+
+	public int getCount() {
+		return p_count;
+	}
+
+	public Sprite getSprite(int row) {
+		return p_sprites[row];
+	}
+
+	/**
+	 * flushWrites() Copy Float2 fields written straight to the sprites since
+	 * their last exchange with the store into its rows
+	 */
+	public void flushWrites() {
+		for (int i = 0; i < p_count; i++)
+			p_sprites[i].flushWrites();
+	}
+
+	/**
+	 * integrate() Movement pass: add velocity to position for every active
+	 * row. Runs each simulation step once setIntegrateVelocity(true) is set.
+	 */
+	public void integrate() {
+		for (int i = 0; i < p_count; i++) {
+			if ((flags[i] & FLAG_ACTIVE) == 0)
+				continue;
+			x[i] += vx[i];
+			y[i] += vy[i];
+		}
+	}
+
+	/**
+	 * updateBounds() Bounds pass: scaled rect of every row, matching
+	 * Sprite.getBoundsScaledF().
+	 */
+	public void updateBounds() {
+		for (int i = 0; i < p_count; i++)
+			updateBounds(i);
+	}
+
+	private void updateBounds(int i) {
+		minX[i] = x[i];
+		minY[i] = y[i];
+		maxX[i] = (int) (x[i] + width[i] * scaleX[i]);
+		maxY[i] = (int) (y[i] + height[i] * scaleY[i]);
+	}
+
+	/**
+	 * Broadphase.findPairs() Collision pass over the bounds columns. The group
+	 * is ignored; every active, collidable row in the store is considered.
+	 */
+	@Override
+	public void findPairs(EntityGroup group, PairHandler handler) {
+		updateBounds();
+		compactOrder();
+
+		// insertion sort of the persistent order by minX
+		for (int i = 1; i < p_count; i++) {
+			int row = p_order[i];
+			float key = minX[row];
+			int j = i - 1;
+			while (j >= 0 && minX[p_order[j]] > key) {
+				p_order[j + 1] = p_order[j];
+				j--;
+			}
+			p_order[j + 1] = row;
+		}
+
+		int mask = FLAG_ACTIVE | FLAG_COLLIDABLE;
+		for (int i = 0; i < p_count; i++) {
+			int a = p_order[i];
+			if ((flags[a] & mask) != mask)
+				continue;
+			for (int j = i + 1; j < p_count; j++) {
+				int b = p_order[j];
+				if (minX[b] >= maxX[a])
+					break;
+				if ((flags[b] & mask) != mask)
+					continue;
+				if (minY[b] < maxY[a] && minY[a] < maxY[b])
+					handler.pair(p_sprites[a], p_sprites[b]);
+			}
+		}
+	}
+
+	public boolean getIntegrateVelocity() {
+		return p_integrateVelocity;
+	}
+
+	/**
+	 * setIntegrateVelocity() Let the engine move sprites by their velocity
+	 * every simulation step.
+	 */
+	public void setIntegrateVelocity(boolean value) {
+		p_integrateVelocity = value;
+	}
+}
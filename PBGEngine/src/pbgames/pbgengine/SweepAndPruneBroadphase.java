@@ -0,0 +1,142 @@
+/** 
+ * SweepAndPruneBroadphase Class
+ * @author PistolBear
+ * 
+ * Broadphase for scenes where most sprites only move a little each frame.
+ * Sprites are kept in persistent arrays sorted by the left edge of their
+ * bounds; an insertion sort re-sorts them each frame, so the cost follows how
+ * far things moved.  The sweep then reports every pair overlapping on both
+ * axes.
+ */
+package pbgames.pbgengine;
+
+import java.util.Arrays;
+
+import android.graphics.RectF;
+
+public class SweepAndPruneBroadphase implements Broadphase {
+	// kept sorted by p_minX between frames
+	private Sprite[] p_sprites;
+	private float[] p_minX, p_maxX, p_minY, p_maxY;
+	private int p_count;
+	private RectF p_bounds;
+
+	// frame stamp used to find sprites that left the group
+	private int p_stamp;
+
+	public SweepAndPruneBroadphase() {
+		p_sprites = new Sprite[64];
+		p_minX = new float[64];
+		p_maxX = new float[64];
+		p_minY = new float[64];
+		p_maxY = new float[64];
+		p_count = 0;
+		p_bounds = new RectF();
+		p_stamp = 0;
+	}
+
+	@Override
+	public void findPairs(EntityGroup group, PairHandler handler) {
+		p_stamp++;
+
+		// stamp current members; newcomers go on the end and get sorted in
+		int size = group.size();
+		for (int g = 0; g < size; g++) {
+			Sprite spr = group.get(g);
+			if (!spr.getActive())
+				continue;
+			if (!spr.getCollidable())
+				continue;
+
+			spr.p_broadphaseStamp = p_stamp;
+			if (spr.p_broadphaseOwner != this) {
+				spr.p_broadphaseOwner = this;
+				if (p_count == p_sprites.length)
+					grow();
+				p_sprites[p_count++] = spr;
+			}
+		}
+
+		/*
+		 * Drop sprites that were not stamped and refresh bounds for the rest.
+		 * Compacting in place keeps the previous order.
+		 */
+		int n = 0;
+		for (int i = 0; i < p_count; i++) {
+			Sprite spr = p_sprites[i];
+			if (spr.p_broadphaseStamp != p_stamp) {
+				spr.p_broadphaseOwner = null;
+				continue;
+			}
+			RectF r = spr.getBoundsScaledF(p_bounds);
+			p_sprites[n] = spr;
+			p_minX[n] = r.left;
+			p_maxX[n] = r.right;
+			p_minY[n] = r.top;
+			p_maxY[n] = r.bottom;
+			n++;
+		}
+		Arrays.fill(p_sprites, n, p_count, null);
+		p_count = n;
+
+		sort();
+
+		// sweep along X, checking Y for every interval that overlaps
+		for (int i = 0; i < p_count; i++) {
+			float maxX = p_maxX[i];
+			for (int j = i + 1; j < p_count; j++) {
+				if (p_minX[j] >= maxX)
+					break;
+				if (p_minY[j] < p_maxY[i] && p_minY[i] < p_maxY[j])
+					handler.pair(p_sprites[i], p_sprites[j]);
+			}
+		}
+	}
+
+	/**
+	 * Insertion sort on p_minX; nearly sorted input costs close to O(n).
+	 */
+	private void sort() {
+		for (int i = 1; i < p_count; i++) {
+			float minX = p_minX[i];
+			if (p_minX[i - 1] <= minX)
+				continue;
+
+			Sprite spr = p_sprites[i];
+			float maxX = p_maxX[i];
+			float minY = p_minY[i];
+			float maxY = p_maxY[i];
+
+			int j = i - 1;
+			while (j >= 0 && p_minX[j] > minX) {
+				p_sprites[j + 1] = p_sprites[j];
+				p_minX[j + 1] = p_minX[j];
+				p_maxX[j + 1] = p_maxX[j];
+				p_minY[j + 1] = p_minY[j];
+				p_maxY[j + 1] = p_maxY[j];
+				j--;
+			}
+			p_sprites[j + 1] = spr;
+			p_minX[j + 1] = minX;
+			p_maxX[j + 1] = maxX;
+			p_minY[j + 1] = minY;
+			p_maxY[j + 1] = maxY;
+		}
+	}
+
+	private void grow() {
+		int size = p_sprites.length * 2;
+		p_sprites = Arrays.copyOf(p_sprites, size);
+		p_minX = Arrays.copyOf(p_minX, size);
+		p_maxX = Arrays.copyOf(p_maxX, size);
+		p_minY = Arrays.copyOf(p_minY, size);
+		p_maxY = Arrays.copyOf(p_maxY, size);
+	}
+
+	/**
+	 * getCount() Number of sprites tracked after the last findPairs()
+	 */
+	public int getCount() {
+		return p_count;
+	}
+}
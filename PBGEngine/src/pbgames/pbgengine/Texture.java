@@ -11,21 +11,60 @@ import java.io.InputStream;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapShader;
+import android.graphics.Shader;
+import android.os.Build;
 
 public class Texture {
 
     private Context p_context;
-    private Bitmap p_bitmap;
+    private volatile Bitmap p_bitmap; // may be decoded on a loader thread
+    private int p_sampleSize;
+    private BitmapShader p_shader;
+    private Bitmap p_shaderBitmap;
     
     public Texture(Context context) {
         p_context = context;
         p_bitmap = null;
+        p_sampleSize = 1;
     }
     
     public Bitmap getBitmap() {
         return p_bitmap;
     }
     
+    /**
+     * getByteCount() Bytes used by the decoded bitmap, 0 if not loaded
+     */
+    public int getByteCount() {
+        if (p_bitmap == null)
+            return 0;
+        return p_bitmap.getRowBytes() * p_bitmap.getHeight();
+    }
+    
+    /**
+     * getShader() Clamped shader over the bitmap, used by SpriteBatch.
+     * Rebuilt only when the bitmap changes; null if not loaded.
+     */
+    public BitmapShader getShader() {
+        Bitmap bitmap = getBitmap();
+        if (bitmap == null)
+            return null;
+        if (p_shader == null || p_shaderBitmap != bitmap) {
+            p_shader = new BitmapShader(bitmap, Shader.TileMode.CLAMP,
+                    Shader.TileMode.CLAMP);
+            p_shaderBitmap = bitmap;
+        }
+        return p_shader;
+    }
+    
+    /**
+     * getSampleSize() Power of two the image was subsampled by, 1 for full size
+     */
+    public int getSampleSize() {
+        return p_sampleSize;
+    }
+    
     public boolean loadFromAsset(String filename) {
         InputStream istream=null;
         BitmapFactory.Options options = new BitmapFactory.Options();
@@ -37,8 +76,116 @@ public class Texture {
         } catch (IOException e) {
             return false;
         }
+        p_sampleSize = 1;
+        return true;
+    }
+    
+    /**
+     * loadFromAsset with decode options: target size subsampling, RGB_565
+     * for opaque assets and bitmap reuse. A null options decodes like
+     * loadFromAsset(String).
+     */
+    public boolean loadFromAsset(String filename, TextureOptions options) {
+        if (options == null)
+            return loadFromAsset(filename);
+        
+        BitmapFactory.Options decode = new BitmapFactory.Options();
+        decode.inPreferredConfig = options.getOpaque() ? Bitmap.Config.RGB_565
+                : Bitmap.Config.ARGB_8888;
+        decode.inSampleSize = 1;
+        
+        Bitmap reuse = options.getReuseBitmap();
+        boolean sized = options.getTargetWidth() > 0
+                || options.getTargetHeight() > 0;
+        try {
+            if (sized || reuse != null) {
+                // read the dimensions only, no pixels are allocated
+                decode.inJustDecodeBounds = true;
+                decodeAsset(filename, decode);
+                decode.inJustDecodeBounds = false;
+                if (decode.outWidth <= 0 || decode.outHeight <= 0)
+                    return false;
+                if (sized)
+                    decode.inSampleSize = calculateSampleSize(decode.outWidth,
+                            decode.outHeight, options.getTargetWidth(),
+                            options.getTargetHeight());
+            }
+            
+            Bitmap bitmap = null;
+            if (reuse != null && canReuse(reuse, decode)) {
+                decode.inBitmap = reuse;
+                decode.inMutable = true;
+                try {
+                    bitmap = decodeAsset(filename, decode);
+                } catch (IllegalArgumentException e) {
+                    // the decoder refused the bitmap, fall through to a new one
+                    bitmap = null;
+                }
+                decode.inBitmap = null;
+                decode.inMutable = false;
+            }
+            if (bitmap == null)
+                bitmap = decodeAsset(filename, decode);
+            if (bitmap == null)
+                return false;
+            
+            p_bitmap = bitmap;
+            p_sampleSize = decode.inSampleSize;
+        } catch (IOException e) {
+            return false;
+        }
         return true;
     }
     
+    private Bitmap decodeAsset(String filename, BitmapFactory.Options decode)
+            throws IOException {
+        InputStream istream = p_context.getAssets().open(filename);
+        try {
+            return BitmapFactory.decodeStream(istream, null, decode);
+        } finally {
+            istream.close();
+        }
+    }
+    
+    /**
+     * Largest power of two that keeps the image at or above the target size.
+     * A target of 0 leaves that dimension unconstrained.
+     */
+    static int calculateSampleSize(int width, int height, int targetWidth,
+            int targetHeight) {
+        if (targetWidth <= 0 && targetHeight <= 0)
+            return 1;
+        int sample = 1;
+        while (true) {
+            int next = sample * 2;
+            if (targetWidth > 0 && width / next < targetWidth)
+                break;
+            if (targetHeight > 0 && height / next < targetHeight)
+                break;
+            sample = next;
+        }
+        return sample;
+    }
+    
+    /**
+     * KitKat can decode into any large enough mutable bitmap; earlier
+     * versions need an unsampled image of exactly the same size.
+     */
+    private static boolean canReuse(Bitmap reuse, BitmapFactory.Options decode) {
+        if (reuse.isRecycled() || !reuse.isMutable())
+            return false;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            int width = (decode.outWidth + decode.inSampleSize - 1)
+                    / decode.inSampleSize;
+            int height = (decode.outHeight + decode.inSampleSize - 1)
+                    / decode.inSampleSize;
+            int bytesPerPixel = decode.inPreferredConfig == Bitmap.Config.RGB_565 ? 2
+                    : 4;
+            return width * height * bytesPerPixel <= reuse.getAllocationByteCount();
+        }
+        return decode.inSampleSize == 1 && reuse.getWidth() == decode.outWidth
+                && reuse.getHeight() == decode.outHeight;
+    }
+    
 }
 
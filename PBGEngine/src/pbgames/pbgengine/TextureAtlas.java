@@ -0,0 +1,117 @@
+/** 
+ * TextureAtlas Class
+ * @author PistolBear
+ * 
+ * A packed sprite sheet: one shared Texture from the TextureCache plus named
+ * sub-regions.  Regions can be added in code or read from a text asset with
+ * one region per line:
+ * 
+ *     # name x y width height
+ *     asteroid_big 0 0 128 128
+ *     asteroid_small 128 0 32 32
+ */
+package pbgames.pbgengine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.util.Log;
+
+public class TextureAtlas {
+	private TextureCache p_cache;
+	private String p_path;
+	private Texture p_texture;
+	private HashMap<String, Rect> p_regions;
+
+	/**
+	 * TextureAtlas
+	 * @param cache : cache the sheet is acquired from
+	 * @param path : asset path of the sheet image
+	 */
+	public TextureAtlas(TextureCache cache, String path) {
+		p_cache = cache;
+		p_path = path;
+		p_texture = cache.acquire(path);
+		p_regions = new HashMap<String, Rect>();
+	}
+
+	/**
+	 * loadRegions() Read region definitions from a text asset.
+	 * @return false if the asset could not be read
+	 */
+	public boolean loadRegions(Context context, String filename) {
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(context
+					.getAssets().open(filename)));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#"))
+					continue;
+				String[] parts = line.split("\\s+");
+				if (parts.length != 5) {
+					Log.w("TextureAtlas", "loadRegions: skipping '" + line
+							+ "' in " + filename);
+					continue;
+				}
+				addRegion(parts[0], Integer.parseInt(parts[1]),
+						Integer.parseInt(parts[2]),
+						Integer.parseInt(parts[3]),
+						Integer.parseInt(parts[4]));
+			}
+		} catch (IOException e) {
+			Log.e("TextureAtlas", "loadRegions: could not read " + filename);
+			return false;
+		} catch (NumberFormatException e) {
+			Log.e("TextureAtlas", "loadRegions: bad number in " + filename);
+			return false;
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+		return true;
+	}
+
+	public void addRegion(String name, int x, int y, int width, int height) {
+		p_regions.put(name, new Rect(x, y, x + width, y + height));
+	}
+
+	/**
+	 * getRegion() Source rect of a named region, or null if unknown.
+	 */
+	public Rect getRegion(String name) {
+		return p_regions.get(name);
+	}
+
+	public boolean hasRegion(String name) {
+		return p_regions.containsKey(name);
+	}
+
+	public Texture getTexture() {
+		return p_texture;
+	}
+
+	public String getPath() {
+		return p_path;
+	}
+
+	/**
+	 * release() Give the sheet back to the cache once no sprite draws from
+	 * this atlas any more.
+	 */
+	public void release() {
+		if (p_texture == null)
+			return;
+		p_cache.release(p_path);
+		p_texture = null;
+	}
+}
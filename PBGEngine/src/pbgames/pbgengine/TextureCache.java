@@ -0,0 +1,225 @@
+/** 
+ * TextureCache Class
+ * @author PistolBear
+ * 
+ * Shares one decoded Texture per asset path.  acquire() hands out the shared
+ * instance and bumps its reference count, release() drops it again.  Textures
+ * nobody references stay cached until the byte budget is exceeded, then the
+ * least recently used ones are dropped first and handed to the
+ * EvictionListener, if any.  Evicted bitmaps are not recycle()d, since a
+ * frame still being presented may draw them; the collector frees them.
+ * 
+ * Shared textures must not be reloaded with Texture.loadFromAsset() by game
+ * code, every sprite using them would change.
+ */
+package pbgames.pbgengine;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import android.content.Context;
+import android.util.Log;
+
+public class TextureCache {
+	private Context p_context;
+	private long p_byteBudget, p_byteCount;
+
+	// least recently used first: acquire() and the release() that drops
+	// the last reference move an entry to the end; lookups leave it alone
+	private LinkedHashMap<String, Entry> p_entries;
+	private EvictionListener p_evictionListener;
+
+	/**
+	 * EvictionListener
+	 * Told about each texture the cache drops, with the cache locked.
+	 */
+	public interface EvictionListener {
+		public void evicted(Texture texture);
+	}
+
+	private static class Entry {
+		String path;
+		Texture texture;
+		int refCount;
+		long bytes;
+
+		Entry(String path, Texture texture) {
+			this.path = path;
+			this.texture = texture;
+			refCount = 0;
+			bytes = 0;
+		}
+	}
+
+	/**
+	 * TextureCache with a budget of one eighth of the VM heap
+	 */
+	public TextureCache(Context context) {
+		this(context, Runtime.getRuntime().maxMemory() / 8);
+	}
+
+	/**
+	 * TextureCache
+	 * @param context : used to open assets
+	 * @param byteBudget : bytes of bitmap data to keep before evicting
+	 *            unreferenced textures
+	 */
+	public TextureCache(Context context, long byteBudget) {
+		p_context = context;
+		p_byteBudget = byteBudget;
+		p_byteCount = 0;
+		p_entries = new LinkedHashMap<String, Entry>();
+		p_evictionListener = null;
+	}
+
+	/**
+	 * setEvictionListener() Who to tell when a texture is dropped, e.g. so a
+	 * renderer can free its copy of the pixels; null for nobody.
+	 */
+	public synchronized void setEvictionListener(EvictionListener listener) {
+		p_evictionListener = listener;
+	}
+
+	/**
+	 * acquire() Return the shared Texture for an asset path, decoding it the
+	 * first time. Every successful acquire() needs a matching release().
+	 * @return Texture, or null if the asset could not be decoded
+	 */
+	public Texture acquire(String path) {
+		return acquire(path, null);
+	}
+
+	/**
+	 * acquire() with decode options. Options only apply to the first decode
+	 * of a path; later callers share whatever was decoded then.
+	 */
+	public Texture acquire(String path, TextureOptions options) {
+		Entry entry;
+		synchronized (this) {
+			// reinserting makes this the most recently used
+			entry = p_entries.remove(path);
+			if (entry == null)
+				entry = new Entry(path, new Texture(p_context));
+			p_entries.put(path, entry);
+			entry.refCount++;
+		}
+
+		// decode outside the cache lock; callers for the same path wait here
+		synchronized (entry) {
+			if (entry.texture.getBitmap() == null) {
+				if (!entry.texture.loadFromAsset(path, options)) {
+					Log.e("TextureCache", "acquire: could not load " + path);
+					synchronized (this) {
+						entry.refCount--;
+						if (entry.refCount == 0 && p_entries.get(path) == entry)
+							p_entries.remove(path);
+					}
+					return null;
+				}
+				synchronized (this) {
+					entry.bytes = entry.texture.getByteCount();
+					p_byteCount += entry.bytes;
+				}
+			}
+		}
+
+		trim();
+		return entry.texture;
+	}
+
+	/**
+	 * release() Drop one reference taken by acquire().
+	 */
+	public synchronized void release(String path) {
+		Entry entry = p_entries.get(path);
+		if (entry == null || entry.refCount == 0) {
+			Log.w("TextureCache", "release: " + path + " was not acquired");
+			return;
+		}
+		entry.refCount--;
+		if (entry.refCount == 0) {
+			// in use until just now, so the last to go
+			p_entries.remove(path);
+			p_entries.put(path, entry);
+			trim();
+		}
+	}
+
+	/**
+	 * release() Drop one reference to a texture handed out by acquire().
+	 */
+	public synchronized void release(Texture texture) {
+		Iterator<Entry> iter = p_entries.values().iterator();
+		while (iter.hasNext()) {
+			Entry entry = iter.next();
+			if (entry.texture == texture) {
+				release(entry.path);
+				return;
+			}
+		}
+		Log.w("TextureCache", "release: texture is not cached");
+	}
+
+	/**
+	 * trim() Forget unreferenced textures, least recently used first, until
+	 * the cache fits its byte budget. Referenced textures are never dropped.
+	 */
+	public synchronized void trim() {
+		if (p_byteCount <= p_byteBudget)
+			return;
+		Iterator<Entry> iter = p_entries.values().iterator();
+		while (iter.hasNext() && p_byteCount > p_byteBudget) {
+			Entry entry = iter.next();
+			if (entry.refCount > 0)
+				continue;
+			iter.remove();
+			evicted(entry);
+		}
+	}
+
+	/**
+	 * evictAll() Forget every unreferenced texture.
+	 */
+	public synchronized void evictAll() {
+		Iterator<Entry> iter = p_entries.values().iterator();
+		while (iter.hasNext()) {
+			Entry entry = iter.next();
+			if (entry.refCount > 0)
+				continue;
+			iter.remove();
+			evicted(entry);
+		}
+	}
+
+	private void evicted(Entry entry) {
+		p_byteCount -= entry.bytes;
+		if (p_evictionListener != null && entry.texture.getBitmap() != null)
+			p_evictionListener.evicted(entry.texture);
+	}
+
+	public synchronized int getRefCount(String path) {
+		Entry entry = p_entries.get(path);
+		return entry == null ? 0 : entry.refCount;
+	}
+
+	public synchronized boolean contains(String path) {
+		return p_entries.containsKey(path);
+	}
+
+	public synchronized int getSize() {
+		return p_entries.size();
+	}
+
+	public synchronized long getByteCount() {
+		return p_byteCount;
+	}
+
+	public synchronized long getByteBudget() {
+		return p_byteBudget;
+	}
+
+	public synchronized void setByteBudget(long bytes) {
+		p_byteBudget = bytes;
+		trim();
+	}
+}
@@ -0,0 +1,85 @@
+/** 
+ * TextureOptions Class
+ * @author PistolBear
+ * 
+ * Decode settings for Texture.loadFromAsset().  The defaults decode the full
+ * image as ARGB_8888, exactly like loadFromAsset(String).
+ * 
+ * A target size makes the decoder subsample by the largest power of two that
+ * keeps the image at least that big, so frame sizes given to Sprite must
+ * match the decoded bitmap (see Texture.getSampleSize()).
+ */
+package pbgames.pbgengine;
+
+import android.graphics.Bitmap;
+
+public class TextureOptions {
+	private int p_targetWidth, p_targetHeight;
+	private boolean p_opaque;
+	private Bitmap p_reuseBitmap;
+
+	public TextureOptions() {
+		p_targetWidth = 0;
+		p_targetHeight = 0;
+		p_opaque = false;
+		p_reuseBitmap = null;
+	}
+
+	/**
+	 * TextureOptions
+	 * @param targetWidth : smallest width needed, 0 for no limit
+	 * @param targetHeight : smallest height needed, 0 for no limit
+	 * @param opaque : decode as RGB_565, half the memory, no alpha
+	 */
+	public TextureOptions(int targetWidth, int targetHeight, boolean opaque) {
+		this();
+		p_targetWidth = targetWidth;
+		p_targetHeight = targetHeight;
+		p_opaque = opaque;
+	}
+
+	public int getTargetWidth() {
+		return p_targetWidth;
+	}
+
+	public void setTargetWidth(int width) {
+		p_targetWidth = width;
+	}
+
+	public int getTargetHeight() {
+		return p_targetHeight;
+	}
+
+	public void setTargetHeight(int height) {
+		p_targetHeight = height;
+	}
+
+	public void setTargetSize(int width, int height) {
+		p_targetWidth = width;
+		p_targetHeight = height;
+	}
+
+	public boolean getOpaque() {
+		return p_opaque;
+	}
+
+	/**
+	 * setOpaque() Decode as RGB_565 for backgrounds and other assets without
+	 * transparency.
+	 */
+	public void setOpaque(boolean value) {
+		p_opaque = value;
+	}
+
+	public Bitmap getReuseBitmap() {
+		return p_reuseBitmap;
+	}
+
+	/**
+	 * setReuseBitmap() Decode into an existing mutable bitmap (inBitmap)
+	 * instead of allocating. Ignored if the bitmap cannot hold the image.
+	 */
+	public void setReuseBitmap(Bitmap bitmap) {
+		p_reuseBitmap = bitmap;
+	}
+}
@@ -0,0 +1,442 @@
+/**
+ * TileMap Class
+ * @author PistolBear
+ *
+ * Grid of tile ids over a sprite-sheet Texture, for level geometry that
+ * would otherwise take thousands of sprites.
+ * - one short per cell; EMPTY cells are not drawn and never solid
+ * - drawn in chunks of CHUNK_TILES x CHUNK_TILES cells, each rendered once
+ *   into a cached bitmap and redrawn only when one of its tiles changes;
+ *   only the chunks in view are drawn, and the least recently drawn are
+ *   reused when the cache is full; a chunk that finds no bitmap free is
+ *   drawn tile by tile that frame
+ * - solid tiles are looked up by cell, so testing a sprite costs the
+ *   cells under its bounds, not the size of the map
+ * Attach a map to a Layer with Layer.setTileMap(); the engine draws it
+ * under the layer's sprites and reports sprites touching solid tiles to
+ * PBGEngine.collision(Sprite, TileMap).
+ */
+package pbgames.pbgengine;
+
+import java.util.Arrays;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+public class TileMap {
+	public static final short EMPTY = -1;
+	public static final int CHUNK_TILES = 16;
+
+	private Texture p_tileset;
+	private int p_tileWidth, p_tileHeight;
+	private int p_columns, p_rows;
+	private short[] p_tiles;
+	private boolean[] p_solid;
+	private float p_x, p_y;
+	private boolean p_changed;
+
+	// chunk cache
+	private int p_chunkColumns, p_chunkRows;
+	private Bitmap[] p_chunkBitmaps;
+	private Canvas[] p_chunkCanvases;
+	private boolean[] p_chunkStale;
+	private int[] p_chunkUsed;
+	private int p_cachedCount, p_maxCached, p_autoCached, p_frame;
+	private Rect p_src, p_dst;
+	private Matrix p_matrix;
+
+	// last solid cell found by overlapsSolid()
+	private int p_hitColumn, p_hitRow;
+
+	/**
+	 * TileMap
+	 * @param tileset : sheet of equally sized tiles, numbered from 0 left to
+	 *        right and top to bottom
+	 * @param tileWidth, tileHeight : size of one tile in pixels
+	 * @param columns, rows : size of the map in tiles; all cells start EMPTY
+	 */
+	public TileMap(Texture tileset, int tileWidth, int tileHeight,
+			int columns, int rows) {
+		if (tileWidth <= 0 || tileHeight <= 0 || columns <= 0 || rows <= 0)
+			throw new IllegalArgumentException("empty tile map");
+		p_tileset = tileset;
+		p_tileWidth = tileWidth;
+		p_tileHeight = tileHeight;
+		p_columns = columns;
+		p_rows = rows;
+		p_tiles = new short[columns * rows];
+		Arrays.fill(p_tiles, EMPTY);
+		p_solid = new boolean[64];
+		p_x = p_y = 0;
+		p_changed = true;
+
+		p_chunkColumns = (columns + CHUNK_TILES - 1) / CHUNK_TILES;
+		p_chunkRows = (rows + CHUNK_TILES - 1) / CHUNK_TILES;
+		int chunks = p_chunkColumns * p_chunkRows;
+		p_chunkBitmaps = new Bitmap[chunks];
+		p_chunkCanvases = new Canvas[chunks];
+		p_chunkStale = new boolean[chunks];
+		p_chunkUsed = new int[chunks];
+		p_cachedCount = 0;
+		p_maxCached = p_autoCached = 0;
+		p_frame = 0;
+		p_src = new Rect();
+		p_dst = new Rect();
+		p_matrix = new Matrix();
+		p_hitColumn = p_hitRow = -1;
+	}
+
+	public int getColumns() {
+		return p_columns;
+	}
+
+	public int getRows() {
+		return p_rows;
+	}
+
+	public int getTileWidth() {
+		return p_tileWidth;
+	}
+
+	public int getTileHeight() {
+		return p_tileHeight;
+	}
+
+	public Texture getTileset() {
+		return p_tileset;
+	}
+
+	/**
+	 * setPosition() Where the top left corner of the map is, in the world
+	 * space of its layer
+	 */
+	public void setPosition(float x, float y) {
+		p_x = x;
+		p_y = y;
+		p_changed = true;
+	}
+
+	public float getX() {
+		return p_x;
+	}
+
+	public float getY() {
+		return p_y;
+	}
+
+	/**
+	 * setTile() Change one cell; its chunk is redrawn next time it is in
+	 * view.
+	 * @param id : EMPTY or 0 to Short.MAX_VALUE
+	 */
+	public void setTile(int column, int row, int id) {
+		if (id < EMPTY || id > Short.MAX_VALUE)
+			throw new IllegalArgumentException("tile id out of range: " + id);
+		if (column < 0 || row < 0 || column >= p_columns || row >= p_rows)
+			return;
+		int cell = row * p_columns + column;
+		if (p_tiles[cell] == id)
+			return;
+		p_tiles[cell] = (short) id;
+		p_chunkStale[(row / CHUNK_TILES) * p_chunkColumns + column
+				/ CHUNK_TILES] = true;
+		p_changed = true;
+	}
+
+	/**
+	 * getTile() Tile id of a cell, EMPTY outside the map
+	 */
+	public int getTile(int column, int row) {
+		if (column < 0 || row < 0 || column >= p_columns || row >= p_rows)
+			return EMPTY;
+		return p_tiles[row * p_columns + column];
+	}
+
+	/**
+	 * setTiles() Load the whole map from row-major tile ids
+	 */
+	public void setTiles(short[] tiles) {
+		if (tiles.length != p_tiles.length)
+			throw new IllegalArgumentException("expected " + p_tiles.length
+					+ " tiles, got " + tiles.length);
+		System.arraycopy(tiles, 0, p_tiles, 0, tiles.length);
+		Arrays.fill(p_chunkStale, true);
+		p_changed = true;
+	}
+
+	/**
+	 * setSolid() Mark a tile id as solid (or not) for the collision queries
+	 */
+	public void setSolid(int id, boolean value) {
+		if (id < 0)
+			return;
+		if (id >= p_solid.length)
+			p_solid = Arrays.copyOf(p_solid, Math.max(id + 1,
+					p_solid.length * 2));
+		p_solid[id] = value;
+	}
+
+	public boolean getSolid(int id) {
+		return id >= 0 && id < p_solid.length && p_solid[id];
+	}
+
+	/**
+	 * Collision queries, in the world space of the map's layer
+	 */
+
+	/**
+	 * getColumn(), getRow() Cell under a world coordinate; may be outside
+	 * the map
+	 */
+	public int getColumn(float x) {
+		return (int) Math.floor((x - p_x) / p_tileWidth);
+	}
+
+	public int getRow(float y) {
+		return (int) Math.floor((y - p_y) / p_tileHeight);
+	}
+
+	/**
+	 * getTileAt() Tile id under a world point, EMPTY outside the map
+	 */
+	public int getTileAt(float x, float y) {
+		return getTile(getColumn(x), getRow(y));
+	}
+
+	public boolean isSolidAt(float x, float y) {
+		return getSolid(getTileAt(x, y));
+	}
+
+	/**
+	 * overlapsSolid() Whether any solid tile lies under a rectangle, such as
+	 * a sprite's getBoundsScaledF(). Only the cells under the rectangle are
+	 * read. The first solid cell found is kept, see getHitColumn().
+	 */
+	public boolean overlapsSolid(RectF bounds) {
+		if (bounds.isEmpty())
+			return false;
+		int left = Math.max(getColumn(bounds.left), 0);
+		int top = Math.max(getRow(bounds.top), 0);
+		// right and bottom edges are exclusive
+		int right = Math.min(
+				(int) Math.ceil((bounds.right - p_x) / p_tileWidth) - 1,
+				p_columns - 1);
+		int bottom = Math.min(
+				(int) Math.ceil((bounds.bottom - p_y) / p_tileHeight) - 1,
+				p_rows - 1);
+		for (int row = top; row <= bottom; row++) {
+			int cell = row * p_columns;
+			for (int column = left; column <= right; column++) {
+				if (getSolid(p_tiles[cell + column])) {
+					p_hitColumn = column;
+					p_hitRow = row;
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * getHitColumn(), getHitRow() Solid cell found by the last successful
+	 * overlapsSolid()
+	 */
+	public int getHitColumn() {
+		return p_hitColumn;
+	}
+
+	public int getHitRow() {
+		return p_hitRow;
+	}
+
+	/**
+	 * getCellBounds() World rectangle of a cell, to push a sprite out of it
+	 */
+	public RectF getCellBounds(int column, int row, RectF out) {
+		float x = p_x + column * p_tileWidth;
+		float y = p_y + row * p_tileHeight;
+		out.set(x, y, x + p_tileWidth, y + p_tileHeight);
+		return out;
+	}
+
+	/**
+	 * Drawing
+	 */
+
+	/**
+	 * setMaxCachedChunks() Chunk bitmaps kept at most; each holds
+	 * CHUNK_TILES x CHUNK_TILES tiles. The default, 0, keeps as many as the
+	 * visible area can overlap plus one ring of chunks around them, worked
+	 * out from the area passed to draw(). Fewer than the view needs costs
+	 * speed, not tiles: chunks left without a bitmap are drawn tile by tile.
+	 */
+	public void setMaxCachedChunks(int max) {
+		p_maxCached = Math.max(0, max);
+	}
+
+	public int getMaxCachedChunks() {
+		return p_maxCached > 0 ? p_maxCached : p_autoCached;
+	}
+
+	/**
+	 * getChanged() Whether tiles or the position changed since the last
+	 * draw()
+	 */
+	public boolean getChanged() {
+		return p_changed;
+	}
+
+	/**
+	 * draw() Draw the chunks that overlap the visible area, building or
+	 * refreshing their bitmaps as needed
+	 * @param visible : area in view, in the world space of the map's layer
+	 */
+	public void draw(Renderer renderer, RectF visible) {
+		p_changed = false;
+		p_frame++;
+		Bitmap tiles = p_tileset != null ? p_tileset.getBitmap() : null;
+		if (tiles == null)
+			return;
+
+		int chunkWidth = CHUNK_TILES * p_tileWidth;
+		int chunkHeight = CHUNK_TILES * p_tileHeight;
+		if (p_maxCached == 0) {
+			// chunks a view this size can straddle, plus the ring around
+			int across = (int) Math.ceil(visible.width() / chunkWidth) + 3;
+			int down = (int) Math.ceil(visible.height() / chunkHeight) + 3;
+			p_autoCached = Math.min(across, p_chunkColumns)
+					* Math.min(down, p_chunkRows);
+		}
+		int left = Math.max((int) Math.floor((visible.left - p_x) / chunkWidth), 0);
+		int top = Math.max((int) Math.floor((visible.top - p_y) / chunkHeight), 0);
+		int right = Math.min((int) Math.floor((visible.right - p_x) / chunkWidth),
+				p_chunkColumns - 1);
+		int bottom = Math.min(
+				(int) Math.floor((visible.bottom - p_y) / chunkHeight),
+				p_chunkRows - 1);
+
+		for (int cy = top; cy <= bottom; cy++) {
+			for (int cx = left; cx <= right; cx++) {
+				int chunk = cy * p_chunkColumns + cx;
+				p_chunkUsed[chunk] = p_frame;
+				if (p_chunkBitmaps[chunk] == null) {
+					if (!allocateChunk(chunk, chunkWidth, chunkHeight)) {
+						drawTiles(renderer, cx, cy, tiles);
+						continue;
+					}
+				} else if (!p_chunkStale[chunk]) {
+					drawChunk(renderer, chunk, cx, cy);
+					continue;
+				}
+				renderChunk(chunk, cx, cy, tiles);
+				drawChunk(renderer, chunk, cx, cy);
+			}
+		}
+	}
+
+	private void drawChunk(Renderer renderer, int chunk, int cx, int cy) {
+		p_matrix.setTranslate(p_x + cx * CHUNK_TILES * p_tileWidth, p_y + cy
+				* CHUNK_TILES * p_tileHeight);
+		renderer.drawBitmap(p_chunkBitmaps[chunk], null, p_matrix, null);
+	}
+
+	/**
+	 * A bitmap for a chunk: a new one while the cache has room, otherwise
+	 * the one of the chunk drawn longest ago, if that was not this frame.
+	 */
+	private boolean allocateChunk(int chunk, int width, int height) {
+		if (p_cachedCount < getMaxCachedChunks()) {
+			p_chunkBitmaps[chunk] = Bitmap.createBitmap(width, height,
+					Config.ARGB_8888);
+			p_chunkCanvases[chunk] = new Canvas(p_chunkBitmaps[chunk]);
+			p_cachedCount++;
+			return true;
+		}
+		int oldest = -1;
+		for (int n = 0; n < p_chunkBitmaps.length; n++) {
+			if (p_chunkBitmaps[n] != null && p_chunkUsed[n] != p_frame
+					&& (oldest < 0 || p_chunkUsed[n] < p_chunkUsed[oldest]))
+				oldest = n;
+		}
+		if (oldest < 0)
+			return false; // the cache is too small for the view
+		p_chunkBitmaps[chunk] = p_chunkBitmaps[oldest];
+		p_chunkCanvases[chunk] = p_chunkCanvases[oldest];
+		p_chunkBitmaps[oldest] = null;
+		p_chunkCanvases[oldest] = null;
+		return true;
+	}
+
+	/**
+	 * Draw a chunk's tiles straight onto the renderer, for a view that
+	 * needs more chunks than the cache may hold.
+	 */
+	private void drawTiles(Renderer renderer, int cx, int cy, Bitmap tiles) {
+		int sheetColumns = Math.max(tiles.getWidth() / p_tileWidth, 1);
+		int firstColumn = cx * CHUNK_TILES;
+		int firstRow = cy * CHUNK_TILES;
+		int lastColumn = Math.min(firstColumn + CHUNK_TILES, p_columns);
+		int lastRow = Math.min(firstRow + CHUNK_TILES, p_rows);
+		for (int row = firstRow; row < lastRow; row++) {
+			for (int column = firstColumn; column < lastColumn; column++) {
+				int id = p_tiles[row * p_columns + column];
+				if (id < 0)
+					continue;
+				int u = (id % sheetColumns) * p_tileWidth;
+				int v = (id / sheetColumns) * p_tileHeight;
+				p_src.set(u, v, u + p_tileWidth, v + p_tileHeight);
+				p_matrix.setTranslate(p_x + column * p_tileWidth, p_y + row
+						* p_tileHeight);
+				renderer.drawBitmap(tiles, p_src, p_matrix, null);
+			}
+		}
+	}
+
+	private void renderChunk(int chunk, int cx, int cy, Bitmap tiles) {
+		int sheetColumns = Math.max(tiles.getWidth() / p_tileWidth, 1);
+		Bitmap bitmap = p_chunkBitmaps[chunk];
+		Canvas canvas = p_chunkCanvases[chunk];
+		bitmap.eraseColor(Color.TRANSPARENT);
+
+		int firstColumn = cx * CHUNK_TILES;
+		int firstRow = cy * CHUNK_TILES;
+		int lastColumn = Math.min(firstColumn + CHUNK_TILES, p_columns);
+		int lastRow = Math.min(firstRow + CHUNK_TILES, p_rows);
+		for (int row = firstRow; row < lastRow; row++) {
+			for (int column = firstColumn; column < lastColumn; column++) {
+				int id = p_tiles[row * p_columns + column];
+				if (id < 0)
+					continue;
+				int u = (id % sheetColumns) * p_tileWidth;
+				int v = (id / sheetColumns) * p_tileHeight;
+				p_src.set(u, v, u + p_tileWidth, v + p_tileHeight);
+				int x = (column - firstColumn) * p_tileWidth;
+				int y = (row - firstRow) * p_tileHeight;
+				p_dst.set(x, y, x + p_tileWidth, y + p_tileHeight);
+				canvas.drawBitmap(tiles, p_src, p_dst, null);
+			}
+		}
+		p_chunkStale[chunk] = false;
+	}
+
+	/**
+	 * releaseCache() Drop the chunk bitmaps, e.g. when leaving a level; they
+	 * are rebuilt as needed. Like Layer.releaseCache() it leaves freeing them
+	 * to the collector, as recorded frames may still draw them.
+	 */
+	public void releaseCache() {
+		for (int n = 0; n < p_chunkBitmaps.length; n++) {
+			if (p_chunkBitmaps[n] != null) {
+				p_chunkBitmaps[n] = null;
+				p_chunkCanvases[n] = null;
+			}
+		}
+		p_cachedCount = 0;
+		p_changed = true;
+	}
+}
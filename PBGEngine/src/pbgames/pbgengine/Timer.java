@@ -19,6 +19,14 @@ public class Timer {
         return System.currentTimeMillis() - p_start;
     }
     
+    /**
+     * reset() Start timing again from now, as if newly constructed
+     */
+    public void reset() {
+        p_start = System.currentTimeMillis();
+        p_stopwatchStart = 0;
+    }
+    
     public void rest(int ms) {
         long start = getElapsed();
         while (start + ms > getElapsed()) {
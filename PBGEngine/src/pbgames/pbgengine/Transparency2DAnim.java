@@ -19,6 +19,11 @@ public class Transparency2DAnim extends Animation {
      * @param change
      */
     public Transparency2DAnim(int minAlpha, int maxAlpha, int change) {
+        reset(minAlpha, maxAlpha, change);
+    }
+    
+    // reuse as if newly constructed
+    public void reset(int minAlpha, int maxAlpha, int change) {
         this.p_minAlpha = minAlpha;
         this.p_maxAlpha = maxAlpha;
         this.p_change = change;
@@ -40,4 +45,16 @@ public class Transparency2DAnim extends Animation {
         return modified;
     }
 
+    // only touches its own fields
+    @Override
+    public boolean isParallelSafe() {
+        return true;
+    }
+
+    // changes the sprite's looks only
+    @Override
+    public boolean isCosmetic() {
+        return true;
+    }
+
 }
@@ -0,0 +1,208 @@
+/** 
+ * UniformGridBroadphase Class
+ * @author PistolBear
+ * 
+ * Default Broadphase for PBGEngine.  Every frame each active, collidable
+ * sprite is bucketed into a uniform spatial hash grid by its
+ * getBoundsScaledF() rect, and only sprites sharing a cell are reported.
+ * All storage is primitive arrays that grow as needed and are then reused.
+ */
+package pbgames.pbgengine;
+
+import java.util.Arrays;
+
+import android.graphics.RectF;
+
+public class UniformGridBroadphase implements Broadphase {
+	public static final float DEFAULT_CELL_SIZE = 64.0f;
+
+	private float p_cellSize;
+
+	// collidable sprites gathered this frame, with their bounds
+	private Sprite[] p_sprites;
+	private float[] p_minX, p_minY, p_maxX, p_maxY;
+	private int p_spriteCount;
+	private RectF p_bounds;
+
+	// hash buckets hold the first entry; entries chain through p_entryNext
+	private int[] p_buckets;
+	private int p_bucketMask;
+	private int[] p_entryNext, p_entrySprite, p_entryCellX, p_entryCellY;
+	private int p_entryCount;
+
+	public UniformGridBroadphase() {
+		this(DEFAULT_CELL_SIZE);
+	}
+
+	/**
+	 * UniformGridBroadphase
+	 * @param cellSize : cell edge in pixels, roughly the size of a typical
+	 *            sprite works best
+	 */
+	public UniformGridBroadphase(float cellSize) {
+		setCellSize(cellSize);
+		p_sprites = new Sprite[64];
+		p_minX = new float[64];
+		p_minY = new float[64];
+		p_maxX = new float[64];
+		p_maxY = new float[64];
+		p_spriteCount = 0;
+		p_bounds = new RectF();
+		p_buckets = new int[256];
+		p_bucketMask = p_buckets.length - 1;
+		p_entryNext = new int[256];
+		p_entrySprite = new int[256];
+		p_entryCellX = new int[256];
+		p_entryCellY = new int[256];
+		p_entryCount = 0;
+	}
+
+	@Override
+	public void findPairs(EntityGroup group, PairHandler handler) {
+		gather(group);
+		if (p_spriteCount < 2) {
+			clearSprites();
+			return;
+		}
+		build();
+
+		for (int b = 0; b < p_buckets.length; b++) {
+			for (int e = p_buckets[b]; e != -1; e = p_entryNext[e]) {
+				for (int f = p_entryNext[e]; f != -1; f = p_entryNext[f]) {
+					// different cells can land in the same bucket
+					if (p_entryCellX[e] != p_entryCellX[f]
+							|| p_entryCellY[e] != p_entryCellY[f])
+						continue;
+
+					int a = p_entrySprite[e];
+					int c = p_entrySprite[f];
+
+					/*
+					 * Sprites spanning several cells meet in each of them;
+					 * only report the pair from the cell holding the top-left
+					 * corner of their overlap.
+					 */
+					if (cell(Math.max(p_minX[a], p_minX[c])) != p_entryCellX[e])
+						continue;
+					if (cell(Math.max(p_minY[a], p_minY[c])) != p_entryCellY[e])
+						continue;
+
+					if (a < c)
+						handler.pair(p_sprites[a], p_sprites[c]);
+					else
+						handler.pair(p_sprites[c], p_sprites[a]);
+				}
+			}
+		}
+		clearSprites();
+	}
+
+	/**
+	 * Copy the active, collidable sprites and their bounds into the arrays.
+	 */
+	private void gather(EntityGroup group) {
+		p_spriteCount = 0;
+		int size = group.size();
+		for (int i = 0; i < size; i++) {
+			Sprite spr = group.get(i);
+			if (!spr.getActive())
+				continue;
+			if (!spr.getCollidable())
+				continue;
+
+			if (p_spriteCount == p_sprites.length)
+				growSprites();
+
+			RectF r = spr.getBoundsScaledF(p_bounds);
+			p_sprites[p_spriteCount] = spr;
+			p_minX[p_spriteCount] = r.left;
+			p_minY[p_spriteCount] = r.top;
+			p_maxX[p_spriteCount] = r.right;
+			p_maxY[p_spriteCount] = r.bottom;
+			p_spriteCount++;
+		}
+	}
+
+	/**
+	 * Insert one entry per covered cell for every gathered sprite.
+	 */
+	private void build() {
+		int total = 0;
+		for (int i = 0; i < p_spriteCount; i++) {
+			total += (cell(p_maxX[i]) - cell(p_minX[i]) + 1)
+					* (cell(p_maxY[i]) - cell(p_minY[i]) + 1);
+		}
+		if (total > p_entryNext.length)
+			growEntries(total);
+
+		// keep the load factor at or below one half
+		int buckets = p_buckets.length;
+		while (buckets < total * 2)
+			buckets <<= 1;
+		if (buckets != p_buckets.length) {
+			p_buckets = new int[buckets];
+			p_bucketMask = buckets - 1;
+		}
+		Arrays.fill(p_buckets, -1);
+
+		p_entryCount = 0;
+		for (int i = 0; i < p_spriteCount; i++) {
+			int x0 = cell(p_minX[i]), x1 = cell(p_maxX[i]);
+			int y0 = cell(p_minY[i]), y1 = cell(p_maxY[i]);
+			for (int cy = y0; cy <= y1; cy++) {
+				for (int cx = x0; cx <= x1; cx++) {
+					int bucket = hash(cx, cy);
+					int e = p_entryCount++;
+					p_entrySprite[e] = i;
+					p_entryCellX[e] = cx;
+					p_entryCellY[e] = cy;
+					p_entryNext[e] = p_buckets[bucket];
+					p_buckets[bucket] = e;
+				}
+			}
+		}
+	}
+
+	// drop sprite references so dead sprites can be collected
+	private void clearSprites() {
+		Arrays.fill(p_sprites, 0, p_spriteCount, null);
+		p_spriteCount = 0;
+	}
+
+	private int cell(float value) {
+		return (int) Math.floor(value / p_cellSize);
+	}
+
+	private int hash(int cx, int cy) {
+		return ((cx * 73856093) ^ (cy * 19349663)) & p_bucketMask;
+	}
+
+	private void growSprites() {
+		int size = p_sprites.length * 2;
+		p_sprites = Arrays.copyOf(p_sprites, size);
+		p_minX = Arrays.copyOf(p_minX, size);
+		p_minY = Arrays.copyOf(p_minY, size);
+		p_maxX = Arrays.copyOf(p_maxX, size);
+		p_maxY = Arrays.copyOf(p_maxY, size);
+	}
+
+	private void growEntries(int needed) {
+		int size = p_entryNext.length;
+		while (size < needed)
+			size *= 2;
+		p_entryNext = new int[size];
+		p_entrySprite = new int[size];
+		p_entryCellX = new int[size];
+		p_entryCellY = new int[size];
+	}
+
+	public float getCellSize() {
+		return p_cellSize;
+	}
+
+	public void setCellSize(float size) {
+		if (size <= 0)
+			size = DEFAULT_CELL_SIZE;
+		p_cellSize = size;
+	}
+}
@@ -16,9 +16,19 @@ public class VelocityBehavior extends Animation {
     
     public VelocityBehavior(double angleDegrees, float speedMultiplier, 
             int lifetime) {
+        p_timer = new Timer();
+        reset(angleDegrees, speedMultiplier, lifetime);
+    }
+    
+    /**
+     * reset() Reuse this behavior as if newly constructed; the lifetime
+     * starts counting again from now.
+     */
+    public void reset(double angleDegrees, float speedMultiplier, 
+            int lifetime) {
         animating = true;
         p_lifetime = lifetime;
-        p_timer = new Timer();
+        p_timer.reset();
         p_angle = angleDegrees;
         p_multiplier = speedMultiplier;
         double angleRadians = Math.toRadians(p_angle);
@@ -28,12 +38,12 @@ public class VelocityBehavior extends Animation {
         p_velY = Math.sin(angleRadians) * p_multiplier;
     }
     
+    // moves the sprite's own position in place, no Float2 per step
     @Override
     public Float2 adjustPosition(Float2 original) {
-        Float2 modified = new Float2(original.x,original.y);
-        modified.x +=  p_velX;
-        modified.y += p_velY;
-        return modified;
+        original.x += p_velX;
+        original.y += p_velY;
+        return original;
     }
 
     @Override
@@ -48,5 +58,11 @@ public class VelocityBehavior extends Animation {
         }
         return modified;
     }
+
+    // writes its own fields, its timer and the sprite's own position
+    @Override
+    public boolean isParallelSafe() {
+        return true;
+    }
 }
 
@@ -0,0 +1,37 @@
+/**
+ * CountingCanvas Class
+ * @author PistolBear
+ *
+ * Canvas over a bitmap that counts the drawVertices() calls reaching it,
+ * for tests that draw quads through a real CanvasRenderer.
+ */
+package pbgames.pbgengine;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+public class CountingCanvas extends Canvas {
+	private int p_vertexCalls;
+
+	public CountingCanvas(int width, int height) {
+		super(Bitmap.createBitmap(width, height, Config.ARGB_8888));
+		p_vertexCalls = 0;
+	}
+
+	@Override
+	public void drawVertices(VertexMode mode, int vertexCount, float[] verts,
+			int vertOffset, float[] texs, int texOffset, int[] colors,
+			int colorOffset, short[] indices, int indexOffset,
+			int indexCount, Paint paint) {
+		super.drawVertices(mode, vertexCount, verts, vertOffset, texs,
+				texOffset, colors, colorOffset, indices, indexOffset,
+				indexCount, paint);
+		p_vertexCalls++;
+	}
+
+	public int getVertexCalls() {
+		return p_vertexCalls;
+	}
+}
@@ -0,0 +1,76 @@
+/**
+ * EntityGroupTest Class
+ * @author PistolBear
+ *
+ * Bulk removal and the name index, with and without order preservation.
+ */
+package pbgames.pbgengine;
+
+import junit.framework.TestCase;
+
+public class EntityGroupTest extends TestCase {
+	private static final int BULLETS = 1000;
+
+	private TestEngine p_engine;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		p_engine = TestEngine.create();
+	}
+
+	public void testBulkDespawnByName() {
+		bulkDespawn(true);
+		bulkDespawn(false);
+	}
+
+	public void testNameIndexFollowsRemovalsAndRenames() {
+		EntityGroup group = new EntityGroup();
+		Sprite[] sprites = new Sprite[10];
+		for (int n = 0; n < sprites.length; n++) {
+			sprites[n] = sprite(n % 2 == 0 ? "even" : "odd");
+			group.add(sprites[n]);
+		}
+		group.remove(sprites[0]);
+		group.remove(sprites[4]);
+		group.flush(null);
+		assertEquals(3, group.countByName("even"));
+		sprites[2].setName("odd");
+		assertEquals(2, group.countByName("even"));
+		assertEquals(6, group.countByName("odd"));
+		assertEquals(2, group.removeAll("even"));
+		group.flush(null);
+		assertEquals(0, group.countByName("even"));
+		assertNull(group.getByName("even"));
+
+		// an emptied name comes back like a new one
+		Sprite again = sprite("even");
+		group.add(again);
+		assertSame(again, group.getByName("even"));
+		assertEquals("odd", group.getByName("odd").getName());
+	}
+
+	private void bulkDespawn(boolean preserveOrder) {
+		EntityGroup group = new EntityGroup();
+		group.setPreserveOrder(preserveOrder);
+		Sprite ship = sprite("ship");
+		group.add(ship);
+		for (int n = 0; n < BULLETS; n++)
+			group.add(sprite("bullet"));
+		assertEquals(BULLETS, group.countByName("bullet"));
+
+		assertEquals(BULLETS, group.removeAll("bullet"));
+		group.flush(null);
+		assertEquals(1, group.size());
+		assertSame(ship, group.get(0));
+		assertEquals(0, group.countByName("bullet"));
+		assertNull(group.getByName("bullet"));
+		assertSame(ship, group.getByName("ship"));
+	}
+
+	private Sprite sprite(String name) {
+		Sprite spr = new Sprite(p_engine, 4, 4, 1);
+		spr.setName(name);
+		return spr;
+	}
+}
@@ -0,0 +1,192 @@
+/**
+ * GestureRecognizerTest Class
+ * @author PistolBear
+ *
+ * Taps, double taps, drags, flings, pinches and rotations from scripted
+ * touch events, around each threshold.
+ */
+package pbgames.pbgengine;
+
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+public class GestureRecognizerTest extends TestCase {
+	private static final long MS = 1000000L;
+
+	private GestureRecognizer p_recognizer;
+	private InputEvent p_event;
+	private ArrayList<Integer> p_types;
+	private GestureEvent p_last;
+	private float p_velocityX, p_scale, p_rotation, p_dx;
+
+	private GestureRecognizer.Listener p_listener = new GestureRecognizer.Listener() {
+		@Override
+		public void gesture(GestureEvent event) {
+			p_types.add(event.getType());
+			p_last = event;
+			switch (event.getType()) {
+			case GestureEvent.DRAG:
+				p_dx += event.getDX();
+				break;
+			case GestureEvent.FLING:
+				p_velocityX = event.getVelocityX();
+				break;
+			case GestureEvent.PINCH:
+				p_scale *= event.getScale();
+				break;
+			case GestureEvent.ROTATE:
+				p_rotation += event.getRotation();
+				break;
+			}
+		}
+	};
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		p_recognizer = new GestureRecognizer();
+		p_recognizer.setTouchSlop(16);
+		p_recognizer.setDoubleTapSlop(100);
+		p_recognizer.setMinFlingVelocity(100);
+		p_recognizer.setTapTimeout(500);
+		p_recognizer.setDoubleTapTimeout(300);
+		p_event = new InputEvent();
+		p_types = new ArrayList<Integer>();
+		p_scale = 1;
+		p_rotation = p_dx = p_velocityX = 0;
+	}
+
+	public void testTap() {
+		touch(0, InputEvent.DOWN, 10, 10, 1000);
+		touch(0, InputEvent.MOVE, 20, 10, 1050); // within the slop
+		touch(0, InputEvent.UP, 20, 10, 1100);
+		expect(GestureEvent.TAP);
+		assertEquals(20, p_last.getX(), 0);
+	}
+
+	public void testLongPressIsNoTap() {
+		touch(0, InputEvent.DOWN, 10, 10, 1000);
+		touch(0, InputEvent.UP, 10, 10, 1501);
+		expect();
+	}
+
+	public void testDoubleTap() {
+		tap(10, 10, 1000);
+		tap(60, 10, 1300); // 250 ms from the first release
+		expect(GestureEvent.TAP, GestureEvent.DOUBLE_TAP);
+		// a third tap starts a new pair
+		tap(60, 10, 1500);
+		expect(GestureEvent.TAP);
+	}
+
+	public void testSlowSecondTapIsSingle() {
+		tap(10, 10, 1000);
+		tap(10, 10, 1400); // 350 ms from the first release
+		expect(GestureEvent.TAP, GestureEvent.TAP);
+	}
+
+	public void testDistantSecondTapIsSingle() {
+		tap(10, 10, 1000);
+		tap(120, 10, 1200); // 110 px from the first
+		expect(GestureEvent.TAP, GestureEvent.TAP);
+	}
+
+	public void testDragPastSlop() {
+		touch(0, InputEvent.DOWN, 0, 0, 1000);
+		touch(0, InputEvent.MOVE, 10, 0, 1100);
+		expect();
+		touch(0, InputEvent.MOVE, 30, 0, 1200);
+		touch(0, InputEvent.MOVE, 40, 0, 1300);
+		expect(GestureEvent.DRAG, GestureEvent.DRAG);
+		assertEquals(40, p_dx, 0); // measured from the press
+		touch(0, InputEvent.UP, 40, 0, 1400);
+		expect(GestureEvent.DRAG_END);
+	}
+
+	public void testFlingUsesBatchedSamples() {
+		// 10 px every 5 ms, as historical samples of a fast swipe: 2000 px/s
+		touch(0, InputEvent.DOWN, 0, 0, 1000);
+		for (int n = 1; n <= 10; n++)
+			touch(0, InputEvent.MOVE, n * 10, 0, 1000 + n * 5);
+		touch(0, InputEvent.UP, 100, 0, 1050);
+		assertEquals(GestureEvent.FLING, (int) p_types.get(p_types.size() - 1));
+		assertEquals(GestureEvent.DRAG_END,
+				(int) p_types.get(p_types.size() - 2));
+		assertEquals(2000, p_velocityX, 1);
+	}
+
+	public void testSlowReleaseDoesNotFling() {
+		// 1 px every 20 ms after the drag started: 50 px/s
+		touch(0, InputEvent.DOWN, 0, 0, 1000);
+		touch(0, InputEvent.MOVE, 20, 0, 1100);
+		for (int n = 1; n <= 10; n++)
+			touch(0, InputEvent.MOVE, 20 + n, 0, 1100 + n * 20);
+		touch(0, InputEvent.UP, 30, 0, 1300);
+		assertEquals(GestureEvent.DRAG_END,
+				(int) p_types.get(p_types.size() - 1));
+		assertFalse(p_types.contains(GestureEvent.FLING));
+	}
+
+	public void testPinchAndRotate() {
+		touch(0, InputEvent.DOWN, 0, 0, 1000);
+		touch(1, InputEvent.DOWN, 100, 0, 1010);
+		expect();
+		touch(1, InputEvent.MOVE, 200, 0, 1020);
+		expect(GestureEvent.PINCH);
+		assertEquals(2, p_scale, 0.001f);
+		assertEquals(100, p_last.getX(), 0); // halfway between the fingers
+		touch(1, InputEvent.MOVE, 0, 200, 1030);
+		expect(GestureEvent.ROTATE);
+		assertEquals(90, p_rotation, 0.001f);
+
+		// no tap or fling from what is left of a two finger touch
+		touch(1, InputEvent.UP, 0, 200, 1040);
+		touch(0, InputEvent.MOVE, 300, 0, 1050);
+		touch(0, InputEvent.UP, 300, 0, 1060);
+		expect();
+	}
+
+	public void testSecondFingerEndsDrag() {
+		touch(0, InputEvent.DOWN, 0, 0, 1000);
+		touch(0, InputEvent.MOVE, 50, 0, 1100);
+		touch(1, InputEvent.DOWN, 200, 0, 1200);
+		expect(GestureEvent.DRAG, GestureEvent.DRAG_END);
+	}
+
+	public void testCancelEndsDragAndForgetsFingers() {
+		touch(0, InputEvent.DOWN, 0, 0, 1000);
+		touch(0, InputEvent.MOVE, 50, 0, 1100);
+		touch(-1, InputEvent.CANCEL, 0, 0, 1200);
+		expect(GestureEvent.DRAG, GestureEvent.DRAG_END);
+		touch(0, InputEvent.MOVE, 100, 0, 1300);
+		touch(0, InputEvent.UP, 100, 0, 1400);
+		expect();
+		tap(10, 10, 2000);
+		expect(GestureEvent.TAP);
+	}
+
+	public void testEventIsReused() {
+		tap(10, 10, 1000);
+		GestureEvent first = p_last;
+		tap(300, 10, 2000);
+		assertSame(first, p_last);
+	}
+
+	private void tap(float x, float y, long ms) {
+		touch(0, InputEvent.DOWN, x, y, ms - 50);
+		touch(0, InputEvent.UP, x, y, ms);
+	}
+
+	private void touch(int id, int action, float x, float y, long ms) {
+		p_event.set(id, action, x, y, ms * MS);
+		p_recognizer.process(p_event, p_listener);
+	}
+
+	private void expect(int... types) {
+		assertEquals(types.length, p_types.size());
+		for (int n = 0; n < types.length; n++)
+			assertEquals("gesture " + n, types[n], (int) p_types.get(n));
+		p_types.clear();
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * InputQueueTest Class
+ * @author PistolBear
+ *
+ * Ordering, wraparound and overflow of the touch input ring, on one thread
+ * and across a producer and a consumer thread.
+ */
+package pbgames.pbgengine;
+
+import junit.framework.TestCase;
+
+public class InputQueueTest extends TestCase {
+	private InputEvent p_event = new InputEvent();
+
+	public void testCapacityIsPowerOfTwo() {
+		assertEquals(128, new InputQueue(100).getCapacity());
+		assertEquals(64, new InputQueue(64).getCapacity());
+		assertEquals(4, new InputQueue(1).getCapacity());
+	}
+
+	public void testEventFieldsArriveUnchanged() {
+		InputQueue queue = new InputQueue(8);
+		assertTrue(queue.offer(3, InputEvent.DOWN, 1.5f, -2.5f, 123456789L));
+		assertTrue(queue.poll(p_event));
+		assertEquals(3, p_event.getPointerId());
+		assertEquals(InputEvent.DOWN, p_event.getAction());
+		assertEquals(1.5f, p_event.getX(), 0);
+		assertEquals(-2.5f, p_event.getY(), 0);
+		assertEquals(123456789L, p_event.getTime());
+		assertFalse(queue.poll(p_event));
+	}
+
+	public void testOrderAcrossWraparound() {
+		InputQueue queue = new InputQueue(16);
+		int next = 0, expected = 0;
+		for (int round = 0; round < 100; round++) {
+			// uneven batches so the indices wrap at every offset
+			for (int n = 0; n < 1 + round % 6; n++)
+				assertTrue(queue.offer(next++, InputEvent.MOVE, 0, 0, 0));
+			for (int n = 0; n < 1 + (round + 3) % 6 && queue.poll(p_event); n++)
+				assertEquals(expected++, p_event.getPointerId());
+		}
+		while (queue.poll(p_event))
+			assertEquals(expected++, p_event.getPointerId());
+		assertEquals(next, expected);
+		assertEquals(0, queue.getDropped());
+	}
+
+	public void testMovesLeaveRoomForUpAndDown() {
+		InputQueue queue = new InputQueue(16);
+		int accepted = 0;
+		for (int n = 0; n < 20; n++) {
+			if (queue.offer(0, InputEvent.MOVE, n, 0, n))
+				accepted++;
+		}
+		assertEquals(12, accepted);
+		assertEquals(8, queue.getDropped());
+		assertTrue(queue.offer(0, InputEvent.UP, 0, 0, 20));
+		assertTrue(queue.offer(1, InputEvent.DOWN, 0, 0, 21));
+
+		for (int n = 0; n < 12; n++) {
+			assertTrue(queue.poll(p_event));
+			assertEquals(InputEvent.MOVE, p_event.getAction());
+		}
+		assertTrue(queue.poll(p_event));
+		assertEquals(InputEvent.UP, p_event.getAction());
+		assertTrue(queue.poll(p_event));
+		assertEquals(InputEvent.DOWN, p_event.getAction());
+	}
+
+	public void testLostUpTurnsIntoCancel() {
+		InputQueue queue = new InputQueue(4);
+		for (int n = 0; n < 4; n++)
+			assertTrue(queue.offer(n, InputEvent.DOWN, 0, 0, n));
+		assertFalse(queue.offer(0, InputEvent.UP, 0, 0, 4));
+
+		for (int n = 0; n < 4; n++) {
+			assertTrue(queue.poll(p_event));
+			assertEquals(InputEvent.DOWN, p_event.getAction());
+		}
+		// the next event is preceded by a CANCEL standing in for the lost UP
+		assertTrue(queue.offer(5, InputEvent.DOWN, 0, 0, 5));
+		assertTrue(queue.poll(p_event));
+		assertEquals(InputEvent.CANCEL, p_event.getAction());
+		assertTrue(queue.poll(p_event));
+		assertEquals(InputEvent.DOWN, p_event.getAction());
+		assertEquals(5, p_event.getPointerId());
+		assertFalse(queue.poll(p_event));
+	}
+
+	public void testClearDropsWaitingEvents() {
+		InputQueue queue = new InputQueue(8);
+		queue.offer(0, InputEvent.DOWN, 0, 0, 0);
+		queue.offer(0, InputEvent.MOVE, 0, 0, 1);
+		queue.clear();
+		assertEquals(0, queue.size());
+		assertFalse(queue.poll(p_event));
+	}
+
+	public void testOrderBetweenThreads() throws Exception {
+		final InputQueue queue = new InputQueue(32);
+		final int events = 100000;
+		Thread producer = new Thread() {
+			@Override
+			public void run() {
+				for (int n = 0; n < events;) {
+					if (queue.offer(n, InputEvent.MOVE, n, -n, n))
+						n++;
+					else
+						Thread.yield();
+				}
+			}
+		};
+		producer.start();
+		for (int n = 0; n < events;) {
+			if (queue.poll(p_event)) {
+				assertEquals(n, p_event.getPointerId());
+				assertEquals((float) n, p_event.getX(), 0);
+				assertEquals((long) n, p_event.getTime());
+				n++;
+			} else {
+				Thread.yield();
+			}
+		}
+		producer.join();
+		assertFalse(queue.poll(p_event));
+	}
+}
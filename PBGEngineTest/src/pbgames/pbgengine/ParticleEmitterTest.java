@@ -0,0 +1,77 @@
+/**
+ * ParticleEmitterTest Class
+ * @author PistolBear
+ *
+ * Large particle counts drawn through a real CanvasRenderer, one
+ * drawQuads() per SpriteBatch.MAX_SPRITES visible particles.
+ */
+package pbgames.pbgengine;
+
+import junit.framework.TestCase;
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.graphics.RectF;
+
+public class ParticleEmitterTest extends TestCase {
+	private TestEngine p_engine;
+	private Texture p_texture;
+	private CountingCanvas p_canvas;
+	private CanvasRenderer p_renderer;
+	private RectF p_visible;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		p_engine = TestEngine.create();
+		final Bitmap dot = Bitmap.createBitmap(8, 8, Config.ARGB_8888);
+		p_texture = new Texture(p_engine) {
+			@Override
+			public Bitmap getBitmap() {
+				return dot;
+			}
+		};
+		p_canvas = new CountingCanvas(TestEngine.WIDTH, TestEngine.HEIGHT);
+		p_renderer = new CanvasRenderer(p_canvas);
+		p_visible = new RectF(0, 0, TestEngine.WIDTH, TestEngine.HEIGHT);
+	}
+
+	public void testMoreThanHalfTheCapacity() {
+		int capacity = 1000;
+		ParticleEmitter emitter = emitter(capacity);
+		assertEquals(capacity / 2 + 1, emitter.emit(400, 240,
+				capacity / 2 + 1));
+		draw(emitter);
+		assertEquals(1, p_canvas.getVertexCalls());
+	}
+
+	public void testTenThousandParticles() {
+		ParticleEmitter emitter = emitter(10000);
+		assertEquals(10000, emitter.emit(400, 240, 10000));
+		draw(emitter);
+		assertEquals(1, p_canvas.getVertexCalls());
+	}
+
+	public void testSplitAtMaxSprites() {
+		int count = SpriteBatch.MAX_SPRITES + 1;
+		ParticleEmitter emitter = emitter(count);
+		assertEquals(count, emitter.emit(400, 240, count));
+		draw(emitter);
+		assertEquals(2, p_canvas.getVertexCalls());
+	}
+
+	private ParticleEmitter emitter(int capacity) {
+		ParticleEmitter emitter = new ParticleEmitter(p_texture, 8, 8, 1,
+				capacity);
+		emitter.setVelocity(0, 360, 10, 50);
+		emitter.setLife(2, 2);
+		emitter.setAlpha(1, 1);
+		return emitter;
+	}
+
+	private void draw(ParticleEmitter emitter) {
+		emitter.update(0.1f);
+		p_renderer.beginFrame();
+		emitter.draw(p_renderer, p_visible, 1.0f);
+		p_renderer.endFrame();
+	}
+}
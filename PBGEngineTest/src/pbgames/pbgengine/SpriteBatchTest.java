@@ -0,0 +1,103 @@
+/**
+ * SpriteBatchTest Class
+ * @author PistolBear
+ *
+ * Long runs of sprites through a real CanvasRenderer.  Before API 29
+ * Canvas.drawVertices() checks the colors against the float count, so a
+ * run of more than half a batch used to throw.
+ */
+package pbgames.pbgengine;
+
+import junit.framework.TestCase;
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+
+public class SpriteBatchTest extends TestCase {
+	private static final int CAPACITY = 1024;
+
+	private TestEngine p_engine;
+	private Texture p_texture;
+	private CountingCanvas p_canvas;
+	private CanvasRenderer p_renderer;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		p_engine = TestEngine.create();
+		final Bitmap sheet = Bitmap.createBitmap(64, 64, Config.ARGB_8888);
+		p_texture = new Texture(p_engine) {
+			@Override
+			public Bitmap getBitmap() {
+				return sheet;
+			}
+		};
+		p_canvas = new CountingCanvas(TestEngine.WIDTH, TestEngine.HEIGHT);
+		p_renderer = new CanvasRenderer(p_canvas);
+	}
+
+	public void testRunOfMoreThanHalfABatch() {
+		drawSprites(CAPACITY / 2 + 1, false);
+		assertEquals(1, p_canvas.getVertexCalls());
+	}
+
+	public void testFullBatches() {
+		drawSprites(CAPACITY * 2 + 1, false);
+		assertEquals(3, p_canvas.getVertexCalls());
+	}
+
+	public void testRecordedRunReplaysOntoCanvas() {
+		RecordingRenderer recorder = new RecordingRenderer(TestEngine.WIDTH,
+				TestEngine.HEIGHT);
+		SpriteBatch batch = new SpriteBatch(CAPACITY);
+		recorder.beginFrame();
+		batch.begin(recorder);
+		for (int n = 0; n < CAPACITY; n++)
+			batch.draw(sprite(n, false));
+		batch.end();
+		recorder.endFrame();
+
+		p_renderer.beginFrame();
+		recorder.replay(p_renderer);
+		p_renderer.endFrame();
+		assertEquals(1, p_canvas.getVertexCalls());
+	}
+
+	public void testBackBufferSpriteGoesToTheBatchRenderer() {
+		RecordingRenderer engineFrame = p_engine.getRecorder();
+		engineFrame.beginFrame();
+		RecordingRenderer recorder = new RecordingRenderer(TestEngine.WIDTH,
+				TestEngine.HEIGHT);
+		recorder.beginFrame();
+		SpriteBatch batch = new SpriteBatch(CAPACITY);
+		batch.begin(recorder);
+		batch.draw(sprite(0, true));
+		batch.end();
+		recorder.endFrame();
+		engineFrame.endFrame();
+
+		assertEquals(1, recorder.getCommandCount());
+		assertEquals(RecordingRenderer.BITMAP, recorder.getCommandType(0));
+		assertEquals(0, engineFrame.getCommandCount());
+	}
+
+	private void drawSprites(int count, boolean backBuffer) {
+		SpriteBatch batch = new SpriteBatch(CAPACITY);
+		p_renderer.beginFrame();
+		batch.begin(p_renderer);
+		for (int n = 0; n < count; n++)
+			batch.draw(sprite(n, backBuffer));
+		batch.end();
+		p_renderer.endFrame();
+		assertEquals(count, batch.getSpritesDrawn());
+	}
+
+	private Sprite sprite(int n, boolean backBuffer) {
+		Sprite spr = new Sprite(p_engine, 16, 16, 4);
+		spr.setTexture(p_texture);
+		spr.position.x = n % 40 * 20;
+		spr.position.y = n / 40 % 24 * 20;
+		spr.setAlpha(55 + n % 200);
+		spr.setBackBufferEnabled(backBuffer);
+		return spr;
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ * SpriteDrawTest Class
+ * @author PistolBear
+ *
+ * Sprite.draw() reuses its scratch rects and matrix, so once warmed up a
+ * frame of sprites allocates nothing.  Counted with Debug's per-thread
+ * allocation counter; run on a device or emulator.
+ */
+package pbgames.pbgengine;
+
+import junit.framework.TestCase;
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.os.Debug;
+
+public class SpriteDrawTest extends TestCase {
+	private static final int SPRITES = 200;
+	private static final int FRAMES = 50;
+
+	private TestEngine p_engine;
+	private Sprite[] p_sprites;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		p_engine = TestEngine.create();
+		final Bitmap sheet = Bitmap.createBitmap(128, 64, Config.ARGB_8888);
+		Texture texture = new Texture(p_engine) {
+			@Override
+			public Bitmap getBitmap() {
+				return sheet;
+			}
+		};
+		p_sprites = new Sprite[SPRITES];
+		for (int n = 0; n < SPRITES; n++) {
+			Sprite spr = new Sprite(p_engine, 32, 32, 4);
+			spr.setTexture(texture);
+			spr.position.x = n % 20 * 40;
+			spr.position.y = n / 20 * 40;
+			spr.setScale(0.5f + n % 3);
+			spr.setRotation(n * 0.1f);
+			spr.setAlpha(55 + n % 200);
+			p_sprites[n] = spr;
+		}
+	}
+
+	public void testDrawDoesNotAllocate() {
+		// the first frames size the recorder and the sprites' scratch state
+		drawFrames(3);
+
+		Debug.resetThreadAllocCount();
+		Debug.startAllocCounting();
+		drawFrames(FRAMES);
+		Debug.stopAllocCounting();
+		assertEquals("objects allocated in " + FRAMES + " frames", 0,
+				Debug.getThreadAllocCount());
+	}
+
+	public void testDrawRecordsOneBlitPerSprite() {
+		drawFrames(1);
+		RecordingRenderer recorder = p_engine.getRecorder();
+		assertEquals(SPRITES, recorder.getCommandCount());
+		for (int n = 0; n < SPRITES; n++)
+			assertEquals(RecordingRenderer.BITMAP, recorder.getCommandType(n));
+	}
+
+	public void testBackBufferRefusedWhenThreaded() {
+		p_engine.setThreadedRendering(true);
+		try {
+			p_sprites[0].setBackBufferEnabled(true);
+			fail("back buffer enabled with threaded rendering");
+		} catch (IllegalStateException e) {
+		}
+		assertFalse(p_sprites[0].getBackBufferEnabled());
+	}
+
+	public void testBackBufferBypassedWhenThreaded() {
+		Sprite spr = p_sprites[0];
+		spr.setBackBufferEnabled(true);
+		p_engine.setThreadedRendering(true);
+
+		// the recorded blit must be of the texture, not of a bitmap the
+		// next frame erases while this one is replayed
+		RecordingRenderer recorder = p_engine.getRecorder();
+		recorder.beginFrame();
+		spr.draw(recorder);
+		recorder.endFrame();
+		assertEquals(1, recorder.getCommandCount());
+		assertSame(spr.getTexture().getBitmap(), recorder.getCommandObject(0));
+	}
+
+	/**
+	 * Move, turn and animate every sprite, then draw it through the
+	 * engine's renderer, as a frame of the game loop would
+	 */
+	private void drawFrames(int frames) {
+		RecordingRenderer recorder = p_engine.getRecorder();
+		for (int f = 0; f < frames; f++) {
+			recorder.beginFrame();
+			for (int n = 0; n < SPRITES; n++) {
+				Sprite spr = p_sprites[n];
+				spr.savePrevious();
+				spr.position.x += 1;
+				spr.setRotation(spr.getRotation() + 0.05f);
+				spr.setFrame((spr.getFrame() + 1) % 8);
+				spr.draw();
+			}
+			recorder.endFrame();
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ * SpriteVectorTest Class
+ * @author PistolBear
+ *
+ * A sprite owns its position, scale and velocity: handing one sprite's
+ * vector to another copies it, so behaviors that move a sprite in place
+ * never move a second one.
+ */
+package pbgames.pbgengine;
+
+import junit.framework.TestCase;
+import android.renderscript.Float2;
+
+public class SpriteVectorTest extends TestCase {
+	private TestEngine p_engine;
+	private Sprite p_ship, p_bullet;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		p_engine = TestEngine.create();
+		p_ship = new Sprite(p_engine, 16, 16, 1);
+		p_ship.position.x = 100;
+		p_ship.position.y = 50;
+		p_bullet = new Sprite(p_engine, 4, 4, 1);
+	}
+
+	public void testSetPositionCopies() {
+		p_bullet.setPosition(p_ship.getPosition());
+		p_bullet.addAnimation(new VelocityBehavior(0, 10, 0));
+		for (int n = 0; n < 5; n++) {
+			p_bullet.savePrevious();
+			p_bullet.animate();
+		}
+		assertEquals(150, p_bullet.getPosition().x, 0.001f);
+		assertEquals(100, p_ship.getPosition().x, 0.001f);
+		assertNotSame(p_ship.getPosition(), p_bullet.getPosition());
+	}
+
+	public void testAssignedPositionIsTakenBack() {
+		p_bullet.position = p_ship.position;
+		assertFalse(p_bullet.isParallelSafe());
+		p_bullet.addAnimation(new VelocityBehavior(90, 10, 0));
+		p_bullet.savePrevious();
+		p_bullet.animate();
+		assertEquals(60, p_bullet.position.y, 0.001f);
+		assertEquals(50, p_ship.position.y, 0.001f);
+		assertTrue(p_bullet.isParallelSafe());
+	}
+
+	public void testScaleAndVelocityCopy() {
+		Float2 shared = new Float2(2, 3);
+		p_ship.setScale(shared);
+		p_bullet.setScale(shared);
+		p_ship.setVelocity(shared);
+		p_bullet.setVelocity(shared);
+		p_bullet.addAnimation(new PulseAnimation(1, 4, 0.5f));
+		p_bullet.animate();
+		assertEquals(2, p_ship.getScale().x, 0);
+		assertEquals(2, shared.x, 0);
+		p_bullet.getVelocity().x = 7;
+		assertEquals(2, p_ship.getVelocity().x, 0);
+		assertEquals(2, shared.x, 0);
+	}
+
+	public void testAnimationReturningNewVectorKeepsOwnership() {
+		Float2 scale = p_bullet.getScale();
+		Float2 position = p_bullet.getPosition();
+		p_bullet.addAnimation(new Animation() {
+			{
+				animating = true;
+			}
+
+			@Override
+			public Float2 adjustPosition(Float2 original) {
+				return new Float2(original.x + 1, original.y);
+			}
+
+			@Override
+			public Float2 adjustScale(Float2 original) {
+				return new Float2(3, 3);
+			}
+		});
+		p_bullet.animate();
+		assertSame(position, p_bullet.getPosition());
+		assertSame(scale, p_bullet.getScale());
+		assertEquals(1, position.x, 0);
+		assertEquals(3, scale.x, 0);
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * TestEngine Class
+ * @author PistolBear
+ *
+ * Engine with empty game callbacks for tests.  It is never created as an
+ * activity, so the screen size is fixed and a RecordingRenderer stands in
+ * for the display.
+ */
+package pbgames.pbgengine;
+
+import android.os.Looper;
+
+public class TestEngine extends PBGEngine {
+	public static final int WIDTH = 800;
+	public static final int HEIGHT = 480;
+
+	private RecordingRenderer p_recorder;
+
+	/**
+	 * create() The Activity base needs a Looper on the calling thread
+	 */
+	public static TestEngine create() {
+		if (Looper.myLooper() == null)
+			Looper.prepare();
+		return new TestEngine();
+	}
+
+	private TestEngine() {
+		p_recorder = new RecordingRenderer(WIDTH, HEIGHT);
+		setRenderer(p_recorder);
+	}
+
+	public RecordingRenderer getRecorder() {
+		return p_recorder;
+	}
+
+	@Override
+	public void init() {
+	}
+
+	@Override
+	public void load() {
+	}
+
+	@Override
+	public void draw() {
+	}
+
+	@Override
+	public void update() {
+	}
+
+	@Override
+	public void collision(Sprite sprite) {
+	}
+
+	@Override
+	public int getScreenWidth() {
+		return WIDTH;
+	}
+
+	@Override
+	public int getScreenHeight() {
+		return HEIGHT;
+	}
+}
@@ -0,0 +1,71 @@
+/**
+ * TileMapTest Class
+ * @author PistolBear
+ *
+ * Chunked drawing: each chunk in view is one blit from its cached bitmap,
+ * and a view with more chunks than the cache holds still shows every tile.
+ */
+package pbgames.pbgengine;
+
+import junit.framework.TestCase;
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.graphics.RectF;
+
+public class TileMapTest extends TestCase {
+	private static final int TILE = 16;
+	private static final int CHUNK = TileMap.CHUNK_TILES * TILE;
+
+	private TileMap p_map;
+	private RecordingRenderer p_renderer;
+	private RectF p_view;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestEngine engine = TestEngine.create();
+		final Bitmap sheet = Bitmap.createBitmap(64, 64, Config.ARGB_8888);
+		Texture tileset = new Texture(engine) {
+			@Override
+			public Bitmap getBitmap() {
+				return sheet;
+			}
+		};
+		p_map = new TileMap(tileset, TILE, TILE, 100, 40);
+		p_renderer = new RecordingRenderer(TestEngine.WIDTH,
+				TestEngine.HEIGHT);
+		// four chunks across, two down
+		p_view = new RectF(0, 0, CHUNK * 4 - 1, CHUNK * 2 - 1);
+	}
+
+	public void testOneBlitPerChunk() {
+		assertEquals(8, draw());
+		assertEquals(8, draw());
+	}
+
+	public void testSmallCacheDrawsTheRestTileByTile() {
+		p_map.setMaxCachedChunks(2);
+		// one tile in a cached chunk, three in chunks that get no bitmap
+		p_map.setTile(0, 0, 1);
+		p_map.setTile(TileMap.CHUNK_TILES * 3 + 2, 5, 2);
+		p_map.setTile(TileMap.CHUNK_TILES * 3 + 3, 5, 2);
+		p_map.setTile(5, TileMap.CHUNK_TILES + 1, 3);
+
+		// the first two chunks from the cache, the other six tile by tile:
+		// two tiles in chunk (3, 0) and one in chunk (0, 1)
+		assertEquals(2 + 3, draw());
+		assertEquals(2 + 3, draw());
+	}
+
+	public void testDefaultCacheCoversTheView() {
+		draw();
+		assertTrue(p_map.getMaxCachedChunks() >= 8);
+	}
+
+	private int draw() {
+		p_renderer.beginFrame();
+		p_map.draw(p_renderer, p_view);
+		p_renderer.endFrame();
+		return p_renderer.getCommandCount();
+	}
+}